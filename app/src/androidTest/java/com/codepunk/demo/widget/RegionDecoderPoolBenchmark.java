@@ -0,0 +1,145 @@
+package com.codepunk.demo.widget;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.codepunk.demo.R;
+import com.codepunk.demo.core.decode.DecodeScheduler;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures aggregate tile decode throughput for the bundled images, with a single region decoder
+ * and with a {@link RegionDecoderPool} sized for the device. Every tile of each image is decoded
+ * at full resolution through a {@link DecodeScheduler} with as many threads as the pool has
+ * decoders. Results are logged under {@link #LOG_TAG} and reported as instrumentation status
+ * (megapixels per second), e.g. {@code adb shell am instrument -w -e class
+ * com.codepunk.demo.widget.RegionDecoderPoolBenchmark
+ * com.codepunk.demo.test/android.support.test.runner.AndroidJUnitRunner}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RegionDecoderPoolBenchmark {
+
+    private static final String LOG_TAG = RegionDecoderPoolBenchmark.class.getSimpleName();
+
+    private static final int[] IMAGES = {
+            R.drawable.new_york_city,
+            R.drawable.nyc_subway_map,
+            R.drawable.united_states_at_night
+    };
+
+    private static final int TILE_SIZE = TiledDrawable.DEFAULT_TILE_SIZE;
+    private static final int WARMUP_RUNS = 1;
+    private static final int RUNS = 3;
+
+    @Test
+    public void decodeThroughput() throws Exception {
+        final Resources resources = InstrumentationRegistry.getTargetContext().getResources();
+        final Bundle results = new Bundle();
+        for (final int resId : IMAGES) {
+            final ImageSource source = ImageSource.fromResource(resources, resId);
+            final String name = resources.getResourceEntryName(resId);
+            final RegionDecoderPool sizingPool = RegionDecoderPool.newInstance(source);
+            final int maxSize = sizingPool.getMaxSize();
+            sizingPool.recycle();
+            final double serial = measure(source, 1);
+            final double parallel = measure(source, maxSize);
+            Log.i(LOG_TAG, String.format(
+                    "%s: %.1f MP/s with 1 decoder, %.1f MP/s with %d (%.2fx)",
+                    name,
+                    serial,
+                    parallel,
+                    maxSize,
+                    parallel / serial));
+            results.putDouble(name + "_serial_mpps", serial);
+            results.putDouble(name + "_parallel_mpps", parallel);
+            results.putInt(name + "_decoders", maxSize);
+        }
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+
+    /**
+     * Returns the best throughput, in megapixels per second, of decoding every tile of
+     * {@code source} with a pool of {@code poolSize} decoders.
+     */
+    private static double measure(ImageSource source, int poolSize) throws Exception {
+        final RegionDecoderPool pool = RegionDecoderPool.newInstance(source, poolSize);
+        final ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        try {
+            final DecodeScheduler scheduler = new DecodeScheduler(executor, poolSize);
+            double best = 0.0;
+            for (int run = 0; run < WARMUP_RUNS + RUNS; run++) {
+                final double throughput = decodeAllTiles(pool, scheduler);
+                if (run >= WARMUP_RUNS) {
+                    best = Math.max(best, throughput);
+                }
+            }
+            return best;
+        } finally {
+            executor.shutdown();
+            pool.recycle();
+        }
+    }
+
+    private static double decodeAllTiles(
+            final RegionDecoderPool pool,
+            DecodeScheduler scheduler) throws InterruptedException {
+        final int columns = (pool.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+        final int rows = (pool.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+        final CountDownLatch latch = new CountDownLatch(columns * rows);
+        final AtomicInteger failures = new AtomicInteger();
+        final DecodeScheduler.Group group = scheduler.newGroup();
+
+        final long start = System.nanoTime();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                final Rect rect = new Rect(
+                        column * TILE_SIZE,
+                        row * TILE_SIZE,
+                        Math.min((column + 1) * TILE_SIZE, pool.getWidth()),
+                        Math.min((row + 1) * TILE_SIZE, pool.getHeight()));
+                group.submit(
+                        DecodeScheduler.PRIORITY_VISIBLE,
+                        rect.left,
+                        rect.top,
+                        rect.right,
+                        rect.bottom,
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                final Bitmap bitmap =
+                                        pool.decodeRegion(rect, new BitmapFactory.Options());
+                                if (bitmap == null) {
+                                    failures.incrementAndGet();
+                                } else {
+                                    bitmap.recycle();
+                                }
+                                latch.countDown();
+                            }
+                        });
+            }
+        }
+        assertTrue(latch.await(2, TimeUnit.MINUTES));
+        final long elapsed = System.nanoTime() - start;
+        assertEquals(0, failures.get());
+
+        final double megapixels = (double) pool.getWidth() * pool.getHeight() / 1000000.0;
+        return megapixels / (elapsed / 1000000000.0);
+    }
+}
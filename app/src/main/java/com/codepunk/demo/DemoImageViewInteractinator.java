@@ -1,16 +1,9 @@
 package com.codepunk.demo;
 
 import android.content.Context;
-import android.graphics.Canvas;
 import android.util.AttributeSet;
-import android.view.GestureDetector;
-import android.view.GestureDetector.OnGestureListener;
-import android.view.GestureDetector.SimpleOnGestureListener;
-import android.view.MotionEvent;
-import android.view.ScaleGestureDetector;
-import android.view.ScaleGestureDetector.OnScaleGestureListener;
-import android.view.ScaleGestureDetector.SimpleOnScaleGestureListener;
 
+import com.codepunk.demo.core.input.GestureRecognizer;
 import com.codepunk.demo.widget.ImageViewInteractinator;
 
 public class DemoImageViewInteractinator extends ImageViewInteractinator {
@@ -18,7 +11,6 @@ public class DemoImageViewInteractinator extends ImageViewInteractinator {
     //region Nested classes
 
     public interface DemoInteractiveImageViewListener {
-        void onDraw(ImageViewInteractinator view, Canvas canvas);
         void onInteractionBegin(ImageViewInteractinator view);
         void onInteractionEnd(ImageViewInteractinator view);
     }
@@ -34,60 +26,20 @@ public class DemoImageViewInteractinator extends ImageViewInteractinator {
     private DemoInteractiveImageViewListener mDemoInteractiveImageViewListener;
     private boolean mInteracting = false;
 
-    private GestureDetector mGestureDetector;
-    private ScaleGestureDetector mScaleGestureDetector;
-
-    private final OnGestureListener mOnGestureListener =
-            new SimpleOnGestureListener() {
-                @Override
-                public boolean onDown(MotionEvent e) {
-                    return true;
-                }
-
-                @Override
-                public boolean onScroll(
-                        MotionEvent e1,
-                        MotionEvent e2,
-                        float distanceX,
-                        float distanceY) {
-                    if (!mInteracting) {
-                        onInteractionBegin();
-                    }
-                    return true;
-                }
-            };
-
-    private final OnScaleGestureListener mOnScaleGestureListener =
-            new SimpleOnScaleGestureListener() {
-                @Override
-                public boolean onScale(ScaleGestureDetector detector) {
-                    if (!mInteracting) {
-                        onInteractionBegin();
-                    }
-                    return true;
-                }
-            };
-
     //endregion Fields
 
     //region Constructors
 
     public DemoImageViewInteractinator(Context context) {
         super(context);
-        mGestureDetector = new GestureDetector(context, mOnGestureListener);
-        mScaleGestureDetector = new ScaleGestureDetector(context, mOnScaleGestureListener);
     }
 
     public DemoImageViewInteractinator(Context context, AttributeSet attrs) {
         super(context, attrs);
-        mGestureDetector = new GestureDetector(context, mOnGestureListener);
-        mScaleGestureDetector = new ScaleGestureDetector(context, mOnScaleGestureListener);
     }
 
     public DemoImageViewInteractinator(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        mGestureDetector = new GestureDetector(context, mOnGestureListener);
-        mScaleGestureDetector = new ScaleGestureDetector(context, mOnScaleGestureListener);
     }
 
     //endregion Constructors
@@ -95,22 +47,17 @@ public class DemoImageViewInteractinator extends ImageViewInteractinator {
     //region Inherited methods
 
     @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
-        if (mDemoInteractiveImageViewListener != null) {
-            mDemoInteractiveImageViewListener.onDraw(this, canvas);
-        }
+    protected void onGestureEnd(GestureRecognizer recognizer) {
+        super.onGestureEnd(recognizer);
+        onInteractionEnd();
     }
 
     @Override
-    public boolean onTouchEvent(MotionEvent event) {
-        boolean retVal = super.onTouchEvent(event);
-        retVal = mGestureDetector.onTouchEvent(event) || retVal;
-        retVal = mScaleGestureDetector.onTouchEvent(event) || retVal;
-        if (event.getAction() == MotionEvent.ACTION_UP) {
-            onInteractionEnd();
+    protected void onGestureUpdate(GestureRecognizer recognizer) {
+        super.onGestureUpdate(recognizer);
+        if (!mInteracting) {
+            onInteractionBegin();
         }
-        return retVal;
     }
 
     //endregion Inherited methods
@@ -3,12 +3,12 @@ package com.codepunk.demo;
 import android.annotation.SuppressLint;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
-import android.graphics.Canvas;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
+import android.util.TypedValue;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
@@ -18,8 +18,10 @@ import android.widget.ImageView.ScaleType;
 import android.widget.Spinner;
 import android.widget.ToggleButton;
 
+import com.codepunk.demo.widget.ImageSource;
 import com.codepunk.demo.widget.ImageViewInteractinator;
 import com.codepunk.demo.widget.ImageViewInteractinator.Transform;
+import com.codepunk.demo.widget.ImageViewInteractinator.TransformSnapshot;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -30,6 +32,8 @@ public class InteractinatorControlsFragment extends Fragment
         implements AbsSeekBarLayout.OnSeekBarChangeListener<Float>,
                 AdapterView.OnItemSelectedListener,
                 DemoImageViewInteractinator.DemoInteractiveImageViewListener,
+                ImageViewInteractinator.OnImageLoadListener,
+                ImageViewInteractinator.OnTransformChangedListener,
                 View.OnClickListener,
                 View.OnTouchListener {
 
@@ -60,6 +64,7 @@ public class InteractinatorControlsFragment extends Fragment
     private FloatSeekBarLayout mImagePivotYSeekBarLayout;
     private DemoImageViewInteractinator mImageView;
     private final Transform mTransform = new Transform();
+    private TransformSnapshot mSnapshot;
 
     private boolean mDisallowUpdatingSeekBars = false;
 
@@ -126,6 +131,10 @@ public class InteractinatorControlsFragment extends Fragment
         // Initialize image pivot seek bars
         mImagePivotXSeekBarLayout.setMinValue(0.0f);
         mImagePivotYSeekBarLayout.setMinValue(0.0f);
+
+        if (mImageView != null) {
+            mImageView.addOnTransformChangedListener(this);
+        }
     }
 
     @Override
@@ -133,9 +142,9 @@ public class InteractinatorControlsFragment extends Fragment
         super.onViewStateRestored(savedInstanceState);
 
         if (savedInstanceState == null) {
-            mImageView.setImageResource(DEFAULT_DRAWABLE_RES_ID);
             final int position = mImageEntryValues.indexOf(DEFAULT_DRAWABLE_RES_ID);
             mImageSpinner.setSelection(position, false);
+            setImageResourceByPosition(position);
         } else {
             // This prevents onItemSelected from being fired immediately after calling
             // setOnItemSelected listener below
@@ -172,6 +181,16 @@ public class InteractinatorControlsFragment extends Fragment
         super.onSaveInstanceState(outState);
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+
+        // The listener updates this fragment's views, which are gone now
+        if (mImageView != null) {
+            mImageView.removeOnTransformChangedListener(this);
+        }
+    }
+
     //endregion Lifecycle methods
 
     //region Implemented methods
@@ -233,7 +252,9 @@ public class InteractinatorControlsFragment extends Fragment
                     transformImage = false;
             }
             if (transformImage) {
+                // Seek bars can report several changes per frame; apply only the last
                 mTransform.recycle()
+                        .deferred(true)
                         .pivot(px, py)
                         .scale(sx, sy)
                         .transform(mImageView);
@@ -271,16 +292,55 @@ public class InteractinatorControlsFragment extends Fragment
     }
 
     @Override // DemoInteractiveImageView.DemoInteractiveImageViewListener
-    public void onDraw(ImageViewInteractinator view, Canvas canvas) {
-        final int position = mScaleTypeEntryValues.indexOf(mImageView.getScaleType().name());
-        if (position != mScaleTypeSpinner.getSelectedItemPosition()) {
-            mScaleTypeSpinner.setSelection(position, false);
+    public void onInteractionBegin(ImageViewInteractinator view) {
+        final View mainView = getView();
+        if (mainView != null) {
+            mainView.setAlpha(0.5f);
+        }
+    }
+
+    @Override // DemoInteractiveImageView.DemoInteractiveImageViewListener
+    public void onInteractionEnd(ImageViewInteractinator view) {
+        final View mainView = getView();
+        if (mainView != null) {
+            mainView.setAlpha(1.0f);
         }
+    }
 
-        final float imageScaleX = mImageView.getImageScaleX();
-        final float imageScaleY = mImageView.getImageScaleY();
-        final float imagePivotX = mImageView.getImagePivotX();
-        final float imagePivotY = mImageView.getImagePivotY();
+    @Override // ImageViewInteractinator.OnImageLoadListener
+    public void onImagePreviewLoaded(
+            ImageViewInteractinator view,
+            ImageSource source,
+            Drawable drawable) {
+        mPendingResetClamps = true;
+    }
+
+    @Override // ImageViewInteractinator.OnImageLoadListener
+    public void onImageLoaded(
+            ImageViewInteractinator view,
+            ImageSource source,
+            Drawable drawable) {
+        mPendingResetClamps = true;
+        updateControlsEnabled();
+    }
+
+    @Override // ImageViewInteractinator.OnImageLoadListener
+    public void onImageLoadFailed(
+            ImageViewInteractinator view,
+            ImageSource source,
+            Exception e) {
+        updateControlsEnabled();
+    }
+
+    @Override // ImageViewInteractinator.OnTransformChangedListener
+    public void onTransformChanged(ImageViewInteractinator view, TransformSnapshot snapshot) {
+        if (mSnapshot == null || mSnapshot.getScaleType() != snapshot.getScaleType()) {
+            final int position = mScaleTypeEntryValues.indexOf(snapshot.getScaleType().name());
+            if (position != mScaleTypeSpinner.getSelectedItemPosition()) {
+                mScaleTypeSpinner.setSelection(position, false);
+            }
+        }
+        mSnapshot = snapshot;
 
         if (mPendingResetClamps) {
             mImageScaleXSeekBarLayout.setClampedMin(Integer.MIN_VALUE);
@@ -289,33 +349,30 @@ public class InteractinatorControlsFragment extends Fragment
             mImageScaleYSeekBarLayout.setClampedMax(Integer.MAX_VALUE);
         }
 
-        final Drawable d = mImageView.getDrawable();
-        final int width = (d == null ? 0 : d.getIntrinsicWidth());
-        final int height = (d == null ? 0 : d.getIntrinsicHeight());
         updateRange(
                 mImageScaleXSeekBarLayout,
-                mImageView.getImageMinScaleX(),
-                mImageView.getImageMaxScaleX());
+                snapshot.getMinScaleX(),
+                snapshot.getMaxScaleX());
         updateRange(
                 mImageScaleYSeekBarLayout,
-                mImageView.getImageMinScaleY(),
-                mImageView.getImageMaxScaleY());
+                snapshot.getMinScaleY(),
+                snapshot.getMaxScaleY());
         updateRange(
                 mImagePivotXSeekBarLayout,
                 0.0f,
-                (float) width);
+                (float) snapshot.getImageWidth());
         updateRange(
                 mImagePivotYSeekBarLayout,
                 0.0f,
-                (float) height);
+                (float) snapshot.getImageHeight());
 
         if (mDisallowUpdatingSeekBars) {
             mDisallowUpdatingSeekBars = false;
         } else {
-            mImageScaleXSeekBarLayout.setValue(imageScaleX, false);
-            mImageScaleYSeekBarLayout.setValue(imageScaleY, false);
-            mImagePivotXSeekBarLayout.setValue(imagePivotX, false);
-            mImagePivotYSeekBarLayout.setValue(imagePivotY, false);
+            mImageScaleXSeekBarLayout.setValue(snapshot.getScaleX(), false);
+            mImageScaleYSeekBarLayout.setValue(snapshot.getScaleY(), false);
+            mImagePivotXSeekBarLayout.setValue(snapshot.getPivotX(), false);
+            mImagePivotYSeekBarLayout.setValue(snapshot.getPivotY(), false);
         }
 
         if (mPendingResetClamps) {
@@ -324,22 +381,6 @@ public class InteractinatorControlsFragment extends Fragment
         }
     }
 
-    @Override // DemoInteractiveImageView.DemoInteractiveImageViewListener
-    public void onInteractionBegin(ImageViewInteractinator view) {
-        final View mainView = getView();
-        if (mainView != null) {
-            mainView.setAlpha(0.5f);
-        }
-    }
-
-    @Override // DemoInteractiveImageView.DemoInteractiveImageViewListener
-    public void onInteractionEnd(ImageViewInteractinator view) {
-        final View mainView = getView();
-        if (mainView != null) {
-            mainView.setAlpha(1.0f);
-        }
-    }
-
     @Override
     public void onClick(View view) {
         final int id = view.getId();
@@ -364,6 +405,9 @@ public class InteractinatorControlsFragment extends Fragment
     public void setImageView(DemoImageViewInteractinator imageView) {
         mImageView = imageView;
         mImageView.setDemoInteractiveImageViewListener(this);
+        if (getView() != null) {
+            mImageView.addOnTransformChangedListener(this);
+        }
         mTransform.target(mImageView);
     }
 
@@ -415,21 +459,27 @@ public class InteractinatorControlsFragment extends Fragment
         mImageScaleYSeekBarLayout.setClampedMax(scaleYClampedMax);
     }
 
+    private boolean isBitmapResource(@DrawableRes int resId) {
+        if (resId == 0) {
+            return false;
+        }
+        final TypedValue value = new TypedValue();
+        getResources().getValue(resId, value, true);
+        return (value.string != null && !value.string.toString().endsWith(".xml"));
+    }
+
     private boolean setImageResourceByPosition(int position) {
         if (mImageView != null && position >= 0 && position < mImageEntryValues.size()) {
             final @DrawableRes int drawableResId = mImageEntryValues.get(position);
-            mImageView.setImageResource(drawableResId);
-
-            Drawable d = mImageView.getDrawable();
-            final boolean canInteract =
-                    !(d == null || d.getIntrinsicWidth() < 1 || d.getIntrinsicHeight() < 1);
-            mScaleTypeSpinner.setEnabled(canInteract);
-            mImagePivotXSeekBarLayout.setEnabled(canInteract);
-            mImagePivotYSeekBarLayout.setEnabled(canInteract);
-            mImageScaleXSeekBarLayout.setEnabled(canInteract);
-            mImageScaleYSeekBarLayout.setEnabled(canInteract);
-            mLockButton.setEnabled(canInteract);
-
+            if (isBitmapResource(drawableResId)) {
+                // Large bitmaps are decoded off the main thread and displayed in tiled mode
+                mImageView.loadImage(
+                        ImageSource.fromResource(getResources(), drawableResId),
+                        this);
+            } else {
+                mImageView.setImageResource(drawableResId);
+            }
+            updateControlsEnabled();
             return true;
         }
         return false;
@@ -446,6 +496,18 @@ public class InteractinatorControlsFragment extends Fragment
         return false;
     }
 
+    private void updateControlsEnabled() {
+        final Drawable d = mImageView.getDrawable();
+        final boolean canInteract = !mImageView.isImageLoading() &&
+                !(d == null || d.getIntrinsicWidth() < 1 || d.getIntrinsicHeight() < 1);
+        mScaleTypeSpinner.setEnabled(canInteract);
+        mImagePivotXSeekBarLayout.setEnabled(canInteract);
+        mImagePivotYSeekBarLayout.setEnabled(canInteract);
+        mImageScaleXSeekBarLayout.setEnabled(canInteract);
+        mImageScaleYSeekBarLayout.setEnabled(canInteract);
+        mLockButton.setEnabled(canInteract);
+    }
+
     private void updateRange(FloatSeekBarLayout layout, float min, float max) {
         if (Float.compare(layout.getMinValue(), min) != 0) {
             layout.setMinValue(min);
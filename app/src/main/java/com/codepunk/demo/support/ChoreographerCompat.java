@@ -0,0 +1,151 @@
+package com.codepunk.demo.support;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * A utility class for using {@link android.view.Choreographer} in a backward-compatible fashion.
+ * Before Jelly Bean, frame callbacks are approximated with a main-thread Handler and
+ * {@link System#nanoTime()}, which shares Choreographer's time base.
+ */
+public class ChoreographerCompat {
+
+    //region Nested classes
+
+    /**
+     * Called when a new display frame is being rendered.
+     *
+     * @see android.view.Choreographer.FrameCallback
+     */
+    public static abstract class FrameCallback {
+
+        //region Fields
+
+        private Runnable mRunnable;
+        private Object mFrameCallback;
+
+        //endregion Fields
+
+        //region Methods
+
+        /**
+         * @param frameTimeNanos The time, in the {@link System#nanoTime()} time base, at which
+         * the frame started rendering (i.e. its vsync)
+         * @see android.view.Choreographer.FrameCallback#doFrame(long)
+         */
+        public abstract void doFrame(long frameTimeNanos);
+
+        //endregion Methods
+    }
+
+    private interface ChoreographerCompatImpl {
+        void postFrameCallback(FrameCallback callback);
+        void removeFrameCallback(FrameCallback callback);
+    }
+
+    private static class BaseChoreographerCompatImpl implements ChoreographerCompatImpl {
+
+        private static final long FRAME_DELAY_MILLIS = 16L;
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void postFrameCallback(FrameCallback callback) {
+            mHandler.postDelayed(getRunnable(callback), FRAME_DELAY_MILLIS);
+        }
+
+        @Override
+        public void removeFrameCallback(FrameCallback callback) {
+            mHandler.removeCallbacks(getRunnable(callback));
+        }
+
+        private static Runnable getRunnable(final FrameCallback callback) {
+            if (callback.mRunnable == null) {
+                callback.mRunnable = new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.doFrame(System.nanoTime());
+                    }
+                };
+            }
+            return callback.mRunnable;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class JellyBeanChoreographerCompatImpl implements ChoreographerCompatImpl {
+
+        @Override
+        public void postFrameCallback(FrameCallback callback) {
+            Choreographer.getInstance().postFrameCallback(getFrameCallback(callback));
+        }
+
+        @Override
+        public void removeFrameCallback(FrameCallback callback) {
+            Choreographer.getInstance().removeFrameCallback(getFrameCallback(callback));
+        }
+
+        private static Choreographer.FrameCallback getFrameCallback(
+                final FrameCallback callback) {
+            if (callback.mFrameCallback == null) {
+                callback.mFrameCallback = new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        callback.doFrame(frameTimeNanos);
+                    }
+                };
+            }
+            return (Choreographer.FrameCallback) callback.mFrameCallback;
+        }
+    }
+
+    //endregion Nested classes
+
+    //region Constants
+
+    private static final ChoreographerCompatImpl IMPL;
+    static {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            IMPL = new JellyBeanChoreographerCompatImpl();
+        } else {
+            IMPL = new BaseChoreographerCompatImpl();
+        }
+    }
+
+    //endregion Constants
+
+    //region Constructors
+
+    /**
+     * Disallow instantiation.
+     */
+    private ChoreographerCompat() {
+    }
+
+    //endregion Constructors
+
+    //region Methods
+
+    /**
+     * Posts a frame callback to run on the next frame. Must be called on the main thread.
+     *
+     * @see android.view.Choreographer#postFrameCallback(Choreographer.FrameCallback)
+     */
+    public static void postFrameCallback(FrameCallback callback) {
+        IMPL.postFrameCallback(callback);
+    }
+
+    /**
+     * Removes a previously posted frame callback. Must be called on the main thread.
+     *
+     * @see android.view.Choreographer#removeFrameCallback(Choreographer.FrameCallback)
+     */
+    public static void removeFrameCallback(FrameCallback callback) {
+        IMPL.removeFrameCallback(callback);
+    }
+
+    //endregion Methods
+}
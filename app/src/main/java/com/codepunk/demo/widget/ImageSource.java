@@ -0,0 +1,183 @@
+package com.codepunk.demo.widget;
+
+import android.content.ContentResolver;
+import android.content.res.Resources;
+import android.net.Uri;
+import android.support.annotation.DrawableRes;
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A source of encoded image data that can be opened more than once. Unlike a {@link
+ * android.graphics.drawable.Drawable}, an ImageSource does not hold any decoded pixels, which
+ * allows {@link ImageViewInteractinator} to decode only the parts of an image it actually needs.
+ */
+public abstract class ImageSource {
+
+    //region Nested classes
+
+    private static class ResourceImageSource extends ImageSource {
+
+        //region Fields
+
+        private final Resources mResources;
+        private final @DrawableRes int mResId;
+
+        //endregion Fields
+
+        //region Constructors
+
+        ResourceImageSource(Resources resources, @DrawableRes int resId) {
+            super("res:" + resId);
+            mResources = resources;
+            mResId = resId;
+        }
+
+        //endregion Constructors
+
+        //region Inherited methods
+
+        @Override
+        public InputStream openStream() throws IOException {
+            try {
+                return mResources.openRawResource(mResId);
+            } catch (Resources.NotFoundException e) {
+                throw new FileNotFoundException(e.getMessage());
+            }
+        }
+
+        //endregion Inherited methods
+    }
+
+    private static class FileImageSource extends ImageSource {
+
+        //region Fields
+
+        private final File mFile;
+
+        //endregion Fields
+
+        //region Constructors
+
+        FileImageSource(File file) {
+            super("file:" + file.getAbsolutePath());
+            mFile = file;
+        }
+
+        //endregion Constructors
+
+        //region Inherited methods
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return new FileInputStream(mFile);
+        }
+
+        //endregion Inherited methods
+    }
+
+    private static class UriImageSource extends ImageSource {
+
+        //region Fields
+
+        private final ContentResolver mContentResolver;
+        private final Uri mUri;
+
+        //endregion Fields
+
+        //region Constructors
+
+        UriImageSource(ContentResolver contentResolver, Uri uri) {
+            super(uri.toString());
+            mContentResolver = contentResolver;
+            mUri = uri;
+        }
+
+        //endregion Constructors
+
+        //region Inherited methods
+
+        @Override
+        public InputStream openStream() throws IOException {
+            final InputStream stream = mContentResolver.openInputStream(mUri);
+            if (stream == null) {
+                throw new FileNotFoundException("Unable to open " + mUri);
+            }
+            return stream;
+        }
+
+        //endregion Inherited methods
+    }
+
+    //endregion Nested classes
+
+    //region Fields
+
+    private final String mKey;
+
+    //endregion Fields
+
+    //region Constructors
+
+    protected ImageSource(@NonNull String key) {
+        mKey = key;
+    }
+
+    //endregion Constructors
+
+    //region Inherited methods
+
+    @Override
+    public boolean equals(Object obj) {
+        return (obj instanceof ImageSource) && mKey.equals(((ImageSource) obj).mKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return mKey.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mKey;
+    }
+
+    //endregion Inherited methods
+
+    //region Methods
+
+    /**
+     * Returns a key that uniquely identifies the image data described by this source.
+     */
+    public String getKey() {
+        return mKey;
+    }
+
+    /**
+     * Opens a new stream of encoded image data. The caller is responsible for closing it.
+     */
+    public abstract InputStream openStream() throws IOException;
+
+    public static ImageSource fromFile(@NonNull File file) {
+        return new FileImageSource(file);
+    }
+
+    public static ImageSource fromResource(
+            @NonNull Resources resources,
+            @DrawableRes int resId) {
+        return new ResourceImageSource(resources, resId);
+    }
+
+    public static ImageSource fromUri(
+            @NonNull ContentResolver contentResolver,
+            @NonNull Uri uri) {
+        return new UriImageSource(contentResolver, uri);
+    }
+
+    //endregion Methods
+}
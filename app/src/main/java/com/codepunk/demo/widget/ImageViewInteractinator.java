@@ -2,48 +2,410 @@ package com.codepunk.demo.widget;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.PointF;
+import android.graphics.Rect;
 import android.graphics.RectF;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.os.SystemClock;
 import android.support.annotation.ArrayRes;
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.media.ExifInterface;
 import android.support.v4.math.MathUtils;
-import android.support.v4.view.GestureDetectorCompat;
 import android.support.v4.view.ViewCompat;
 import android.support.v4.widget.EdgeEffectCompat;
 import android.support.v7.widget.AppCompatImageView;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
+import android.util.Log;
 import android.util.SparseArray;
-import android.view.GestureDetector.SimpleOnGestureListener;
 import android.view.Gravity;
 import android.view.MotionEvent;
-import android.view.ScaleGestureDetector;
-import android.view.ScaleGestureDetector.SimpleOnScaleGestureListener;
+import android.view.ViewConfiguration;
 import android.view.WindowManager;
-import android.view.animation.DecelerateInterpolator;
-import android.view.animation.Interpolator;
 import android.widget.EdgeEffect;
 import android.widget.OverScroller;
 
 import com.codepunk.demo.R;
+import com.codepunk.demo.core.animation.FrameClock;
+import com.codepunk.demo.core.animation.ScaleFling;
+import com.codepunk.demo.core.animation.TransformSpring;
+import com.codepunk.demo.core.decode.DecodeScheduler;
+import com.codepunk.demo.core.decode.UploadQueue;
+import com.codepunk.demo.core.input.GestureRecognizer;
+import com.codepunk.demo.core.input.PointerPredictor;
+import com.codepunk.demo.core.input.TouchEvent;
+import com.codepunk.demo.core.transform.Matrices;
+import com.codepunk.demo.core.transform.ScaleMode;
+import com.codepunk.demo.core.transform.TransformEngine;
+import com.codepunk.demo.core.transform.TransformQueue;
+import com.codepunk.demo.core.transform.TransformValues;
+import com.codepunk.demo.support.ChoreographerCompat;
 import com.codepunk.demo.support.DisplayCompat;
 import com.codepunk.demo.support.ImageViewCompat;
 import com.codepunk.demo.support.OverScrollerCompat;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class ImageViewInteractinator extends AppCompatImageView {
 
     //region Nested classes
 
+    /**
+     * Interface definition for callbacks to be invoked when an image requested with
+     * {@link #loadImage(ImageSource, OnImageLoadListener)} has been loaded. Callbacks are always
+     * invoked on the main thread, and are not invoked at all if the load is cancelled.
+     */
+    public interface OnImageLoadListener {
+        void onImagePreviewLoaded(
+                ImageViewInteractinator view,
+                ImageSource source,
+                Drawable drawable);
+        void onImageLoaded(ImageViewInteractinator view, ImageSource source, Drawable drawable);
+        void onImageLoadFailed(ImageViewInteractinator view, ImageSource source, Exception e);
+    }
+
+    /**
+     * Interface definition for a callback to be invoked each time an ImageViewInteractinator
+     * draws a frame, with the quality tier that frame was drawn at.
+     */
+    public interface OnQualityTierListener {
+        void onQualityTier(ImageViewInteractinator view, @QualityTier int tier);
+    }
+
+    /**
+     * Interface definition for a callback to be invoked each time an ImageViewInteractinator
+     * draws a frame that shows newly decoded tiles for the first time.
+     */
+    public interface OnTileUploadListener {
+        /**
+         * @param stats The tiles the frame uploaded and how long they waited for it; only valid
+         *              for the duration of the call
+         * @param pendingCount The number of decoded tiles still waiting for a later frame
+         */
+        void onTileUpload(ImageViewInteractinator view, UploadQueue.Stats stats, int pendingCount);
+    }
+
+    /**
+     * Interface definition for a callback to be invoked when the transform state of an
+     * ImageViewInteractinator changes. The callback is invoked on the main thread at most once
+     * per frame, however many times the state changed during that frame, and not at all on
+     * frames where it did not change.
+     */
+    public interface OnTransformChangedListener {
+        void onTransformChanged(ImageViewInteractinator view, TransformSnapshot snapshot);
+    }
+
+    /**
+     * Chooses the quality tier each frame is drawn at. The policy is consulted once per frame,
+     * before the frame is drawn, and again whenever the image may have come to rest so that a
+     * frame drawn at a cheaper tier can be redrawn at a better one.
+     */
+    public interface QualityPolicy {
+        /**
+         * @param motion What is moving the image this frame, as a combination of the
+         *               {@code MOTION_*} flags, or 0 if the image is at rest
+         */
+        @QualityTier int getQualityTier(ImageViewInteractinator view, @Motion int motion);
+    }
+
+    /**
+     * Loads an {@link ImageSource} into a drawable on a background thread and delivers it on the
+     * main thread. Holds only a weak reference to the view so that an abandoned view can be
+     * collected while its load is still running.
+     */
+    private static class ImageLoadTask implements Runnable {
+
+        //region Fields
+
+        private final WeakReference<ImageViewInteractinator> mViewRef;
+        private final Resources mResources;
+        private final ImageSource mSource;
+        private final OnImageLoadListener mListener;
+        private final TileCache mTileCache;
+
+        // Decode-to-fit parameters, captured on the main thread
+        private final boolean mDecodeToFit;
+        private final ScaleType mFitScaleType;
+        private final int mFitWidth;
+        private final int mFitHeight;
+        private final Matrix mFitImageMatrix;
+
+        private final boolean mProgressive;
+        private final long mStartTime = SystemClock.uptimeMillis();
+
+        private DecodeScheduler.Task mTask;
+        private volatile boolean mCancelled;
+        private boolean mPreviewDisplayed;
+
+        //endregion Fields
+
+        //region Constructors
+
+        ImageLoadTask(
+                ImageViewInteractinator view,
+                ImageSource source,
+                OnImageLoadListener listener) {
+            mViewRef = new WeakReference<>(view);
+            mResources = view.getResources();
+            mSource = source;
+            mListener = listener;
+            mTileCache = view.getTileCache();
+            mDecodeToFit = view.mDecodeToFit;
+            mFitScaleType = view.mScaleType;
+            if (ViewCompat.isLaidOut(view)) {
+                mFitWidth = view.getContentWidth();
+                mFitHeight = view.getContentHeight();
+            } else {
+                // Assume the view will fill the screen
+                final DisplayMetrics dm = mResources.getDisplayMetrics();
+                mFitWidth = dm.widthPixels;
+                mFitHeight = dm.heightPixels;
+            }
+            mFitImageMatrix = new Matrix(view.getImageMatrix());
+            mProgressive = view.mProgressiveLoading;
+        }
+
+        //endregion Constructors
+
+        //region Implemented methods
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+
+            if (mProgressive) {
+                final Drawable preview = decodePreview();
+                if (preview != null) {
+                    MAIN_HANDLER.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            final ImageViewInteractinator view = mViewRef.get();
+                            if (!mCancelled &&
+                                    view != null &&
+                                    view.mImageLoadTask == ImageLoadTask.this) {
+                                view.onImagePreviewLoaded(ImageLoadTask.this, preview);
+                            }
+                        }
+                    });
+                }
+            }
+
+            Drawable drawable = null;
+            Exception exception = null;
+            try {
+                drawable = decode();
+            } catch (IOException e) {
+                exception = e;
+            }
+
+            final Drawable result = drawable;
+            final Exception error = exception;
+            MAIN_HANDLER.post(new Runnable() {
+                @Override
+                public void run() {
+                    final ImageViewInteractinator view = mViewRef.get();
+                    if (mCancelled || view == null || view.mImageLoadTask != ImageLoadTask.this) {
+                        releaseDrawable(result);
+                    } else if (result == null) {
+                        view.onImageLoadFailed(ImageLoadTask.this, error);
+                    } else {
+                        view.onImageLoaded(ImageLoadTask.this, result);
+                    }
+                }
+            });
+        }
+
+        //endregion Implemented methods
+
+        //region Methods
+
+        void cancel() {
+            mCancelled = true;
+            if (mTask != null) {
+                mTask.cancel();
+            }
+        }
+
+        void start() {
+            mTask = DecodeScheduler.getDefault()
+                    .newGroup()
+                    .submit(DecodeScheduler.PRIORITY_VISIBLE, this);
+        }
+
+        //endregion Methods
+
+        //region Private methods
+
+        private Drawable decode() throws IOException {
+            try {
+                final TiledDrawable drawable = TiledDrawable.newInstance(mSource);
+                drawable.setTileCache(mTileCache);
+                if (mDecodeToFit) {
+                    drawable.setBaseSampleSize(computeFitSampleSize(
+                            drawable.getIntrinsicWidth(),
+                            drawable.getIntrinsicHeight()));
+                }
+                drawable.prepareBaseLayer();
+                return drawable;
+            } catch (IOException e) {
+                // Not a format that supports region decoding; fall back to decoding it whole
+                final InputStream stream = mSource.openStream();
+                try {
+                    final Bitmap bitmap = BitmapFactory.decodeStream(stream);
+                    if (bitmap == null) {
+                        throw new IOException("Unable to decode " + mSource);
+                    }
+                    return new BitmapDrawable(mResources, bitmap);
+                } finally {
+                    stream.close();
+                }
+            }
+        }
+
+        /**
+         * Returns the sample size that decodes an image of the given size at (no less than) the
+         * resolution at which it will appear at its baseline (minimum) scale, without the
+         * decoded image being larger than the content area.
+         */
+        private int computeFitSampleSize(int width, int height) {
+            final Matrix matrix = new Matrix();
+            getBaselineImageMatrix(
+                    mFitScaleType,
+                    width,
+                    height,
+                    mFitWidth,
+                    mFitHeight,
+                    mFitImageMatrix,
+                    matrix,
+                    new float[Matrices.SIZE]);
+            final float[] values = new float[9];
+            matrix.getValues(values);
+            int sampleSize = TiledDrawable.computeSampleSize(Math.max(
+                    Math.abs(values[Matrix.MSCALE_X]),
+                    Math.abs(values[Matrix.MSCALE_Y])));
+
+            // Scale types that crop (i.e. CENTER) would otherwise decode far more than is shown
+            final int maxSize = Math.max(mFitWidth, mFitHeight);
+            while (Math.max(width, height) / sampleSize > maxSize) {
+                sampleSize *= 2;
+            }
+            return sampleSize;
+        }
+
+        /**
+         * Decodes a small preview of the image: the embedded EXIF thumbnail if there is one with
+         * the right aspect ratio, or a heavily subsampled decode otherwise.
+         */
+        @Nullable
+        private Drawable decodePreview() {
+            try {
+                final BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                decodeStream(options);
+                final int width = options.outWidth;
+                final int height = options.outHeight;
+                if (width < 1 || height < 1) {
+                    return null;
+                }
+
+                Bitmap bitmap = decodeExifThumbnail(width, height);
+                if (bitmap == null) {
+                    options.inJustDecodeBounds = false;
+                    options.inSampleSize = 1;
+                    while (Math.max(width, height) / options.inSampleSize > MAX_PREVIEW_SIZE) {
+                        options.inSampleSize *= 2;
+                    }
+                    bitmap = decodeStream(options);
+                }
+                return (bitmap == null ?
+                        null :
+                        new PreviewDrawable(mResources, bitmap, width, height));
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Unable to decode preview for " + mSource, e);
+                return null;
+            }
+        }
+
+        @Nullable
+        private Bitmap decodeExifThumbnail(int width, int height) {
+            try {
+                final InputStream stream = mSource.openStream();
+                try {
+                    final ExifInterface exif = new ExifInterface(stream);
+                    final Bitmap thumbnail =
+                            (exif.hasThumbnail() ? exif.getThumbnailBitmap() : null);
+                    if (thumbnail != null) {
+                        // Some cameras letterbox the thumbnail; don't stretch those
+                        final float aspect = (float) width / height;
+                        final float thumbnailAspect =
+                                (float) thumbnail.getWidth() / thumbnail.getHeight();
+                        if (Math.abs(aspect - thumbnailAspect) <
+                                aspect * MAX_PREVIEW_ASPECT_ERROR) {
+                            return thumbnail;
+                        }
+                    }
+                } finally {
+                    stream.close();
+                }
+            } catch (IOException e) {
+                // Not a format with EXIF data; we'll subsample instead
+            }
+            return null;
+        }
+
+        @Nullable
+        private Bitmap decodeStream(BitmapFactory.Options options) throws IOException {
+            final InputStream stream = mSource.openStream();
+            try {
+                return BitmapFactory.decodeStream(stream, null, options);
+            } finally {
+                stream.close();
+            }
+        }
+
+        private void logTiming(String event) {
+            if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+                Log.d(LOG_TAG, event + " for " + mSource + " in " +
+                        (SystemClock.uptimeMillis() - mStartTime) + "ms");
+            }
+        }
+
+        private static void releaseDrawable(Drawable drawable) {
+            if (drawable instanceof TiledDrawable) {
+                ((TiledDrawable) drawable).recycle();
+            } else if (drawable instanceof BitmapDrawable) {
+                ((BitmapDrawable) drawable).getBitmap().recycle();
+            }
+        }
+
+        //endregion Private methods
+    }
+
     /**
      * Initializer class for {@link ImageViewInteractinator} class. Provides a way to set
      * final fields that require a {@link Context}.
@@ -61,50 +423,112 @@ public class ImageViewInteractinator extends AppCompatImageView {
 
         Initializinator(Context context) {
             overScroller = new OverScroller(context);
-            transformer = new Transforminator(context);
+            transformer = new Transforminator();
         }
 
         //endregion Constructors
     }
 
     /**
-     * The listener that will be notified when gestures occur.
+     * Applies the gestures recognized by the {@link GestureRecognizer}, then passes them on to
+     * the view's protected gesture lifecycle methods.
      */
-    private class OnGestureListener extends SimpleOnGestureListener {
+    private class GestureListener implements GestureRecognizer.Listener {
 
-        //region Inherited methods
+        //region Implemented methods
 
-        @Override
-        public boolean onDown(MotionEvent e) {
+        @Override // GestureRecognizer.Listener
+        public void onGestureBegin(GestureRecognizer recognizer) {
             mOverScroller.forceFinished(true);
+            removeCallbacks(mSingleTapConfirminator);
+            final Drawable drawable = getDrawable();
+            if (drawable instanceof TiledDrawable) {
+                // Wherever a fling or smooth transform was headed, it won't get there now
+                ((TiledDrawable) drawable).cancelPrefetch();
+            }
+            mPrewarming = false;
+
+            // Stop a running smooth transform or zoom momentum but keep its velocity, so that a
+            // transform started by this gesture (such as a double tap) continues the motion
+            // instead of restarting
+            final long frameTimeNanos = mVsyncinator.getFrameTimeNanos();
+            mTransforminator.interrupt(frameTimeNanos);
+            handOffScaleFling(frameTimeNanos, true);
             releaseEdgeGlows();
-            return true;
+
+            mTouchPivotPoint.set(recognizer.getFocusX(), recognizer.getFocusY());
+            viewPointToImagePoint(getImageMatrixInternal(), mTouchPivotPoint);
+
+            ImageViewInteractinator.this.onGestureBegin(recognizer);
         }
 
-        @Override
-        public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
-            if (!mFlingEnabled || !drawableHasFunctionalDimensions()) {
-                return false;
+        @Override // GestureRecognizer.Listener
+        public void onGestureUpdate(GestureRecognizer recognizer) {
+            if (mScrollEnabled || mScaleEnabled) {
+                startCompositing();
+                transformByGesture(recognizer);
+                invalidateQualityTier();
             }
+            ImageViewInteractinator.this.onGestureUpdate(recognizer);
+        }
 
-            releaseEdgeGlows();
-            final Matrix matrix = getImageMatrixInternal();
-            mTempRectSrc.set(
-                    0.0f,
-                    0.0f,
-                    getDrawableFunctionalWidth(),
-                    getDrawableFunctionalHeight());
-            matrix.mapRect(mTempRectDst, mTempRectSrc);
+        @Override // GestureRecognizer.Listener
+        public void onGestureEnd(GestureRecognizer recognizer) {
+            endCompositing(true);
+            if (!recognizer.isCancelled() && drawableHasFunctionalDimensions()) {
+                if (mFlingEnabled && recognizer.isFling()) {
+                    fling(recognizer);
+                }
+                if (mScaleEnabled && recognizer.getScaleVelocity() != 0.0f) {
+                    flingScale(recognizer);
+                }
+            }
+            invalidateQualityTier();
+            ImageViewInteractinator.this.onGestureEnd(recognizer);
+        }
+
+        @Override // GestureRecognizer.Listener
+        public void onTap(GestureRecognizer recognizer) {
+            if (mDoubleTapToScaleEnabled) {
+                // Wait to see if this is the first tap of a double tap
+                postDelayed(mSingleTapConfirminator, ViewConfiguration.getDoubleTapTimeout());
+            } else {
+                performClick();
+            }
+        }
 
-            final float startX = e2.getX();
-            final float startY = e2.getY();
+        @Override // GestureRecognizer.Listener
+        public void onDoubleTap(GestureRecognizer recognizer) {
+            if (!mDoubleTapToScaleEnabled) {
+                return;
+            }
+
+            final float next = getNextScalePreset();
+            final float sx = getImageMinScaleX() * (1.0f - next) + getImageMaxScaleX() * next;
+            final float sy = getImageMinScaleY() * (1.0f - next) + getImageMaxScaleY() * next;
+            mTempTransform.recycle()
+                    .smooth(true)
+                    .pivot(mTouchPivotPoint.x, mTouchPivotPoint.y)
+                    .scale(sx, sy)
+                    .touchEvent(true)
+                    .transform();
+        }
+
+        //endregion Implemented methods
+
+        //region Private methods
+
+        private void fling(GestureRecognizer recognizer) {
+            releaseEdgeGlows();
+            final float startX = recognizer.getFocusX();
+            final float startY = recognizer.getFocusY();
             mTouchPivotPoint.set(startX, startY);
             viewPointToImagePoint(getImageMatrixInternal(), mTouchPivotPoint);
 
-            matrix.getValues(mTempValues);
-            getScrollableInfo(matrix, mTempPoint);
-            final float scrolledX = -Math.min(mTempValues[Matrix.MTRANS_X], 0.0f);
-            final float scrolledY = -Math.min(mTempValues[Matrix.MTRANS_Y], 0.0f);
+            final float[] values = getImageValuesInternal();
+            getScrollableInfo(getImageMatrixInternal(), mTempPoint);
+            final float scrolledX = -Math.min(values[Matrix.MTRANS_X], 0.0f);
+            final float scrolledY = -Math.min(values[Matrix.MTRANS_Y], 0.0f);
             final int overScrollMode = getOverScrollMode();
             final boolean canOverScrollX = (overScrollMode == OVER_SCROLL_ALWAYS ||
                     (overScrollMode == OVER_SCROLL_IF_CONTENT_SCROLLS && mTempPoint.x < 0));
@@ -116,8 +540,8 @@ public class ImageViewInteractinator extends AppCompatImageView {
             mOverScroller.fling(
                     (int) startX,
                     (int) startY,
-                    (int) velocityX,
-                    (int) velocityY,
+                    (int) recognizer.getVelocityX(),
+                    (int) recognizer.getVelocityY(),
                     (int) (startX + scrolledX + Math.min(mTempPoint.x, 0)),
                     (int) (startX + scrolledX),
                     (int) (startY + scrolledY + Math.min(mTempPoint.y, 0)),
@@ -125,150 +549,282 @@ public class ImageViewInteractinator extends AppCompatImageView {
                     overX,
                     overY);
 
+            prefetchFlingTiles();
+            mVsyncinator.start();
             ViewCompat.postInvalidateOnAnimation(ImageViewInteractinator.this);
-            return true;
         }
 
-        @Override
-        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
-            if (!mScrollEnabled) {
-                return false;
+        /**
+         * Continues a pinch that was released while scaling with decaying zoom momentum.
+         */
+        private void flingScale(GestureRecognizer recognizer) {
+            final long frameTimeNanos = mVsyncinator.getFrameTimeNanos();
+            final float sx = getImageScaleX();
+            final float sy = getImageScaleY();
+            final float velocitySx = recognizer.getScaleVelocity() * sx;
+            final float velocitySy = recognizer.getScaleVelocity() * sy;
+            if (mScaleFling.fling(
+                    mScalePivotPoint.x,
+                    mScalePivotPoint.y,
+                    sx,
+                    sy,
+                    velocitySx,
+                    velocitySy,
+                    getImageMinScaleX(),
+                    getImageMinScaleY(),
+                    getImageMaxScaleX(),
+                    getImageMaxScaleY(),
+                    frameTimeNanos)) {
+                mVsyncinator.start();
+                ViewCompat.postInvalidateOnAnimation(ImageViewInteractinator.this);
+            } else {
+                mTransforminator.setVelocity(
+                        mScalePivotPoint.x,
+                        mScalePivotPoint.y,
+                        velocitySx,
+                        velocitySy,
+                        0.0f,
+                        0.0f,
+                        frameTimeNanos);
             }
+        }
 
-            final float x = e2.getX();
-            final float y = e2.getY();
-            boolean needsInvalidate = mTempTransform.recycle()
-                    .pivot(mTouchPivotPoint.x, mTouchPivotPoint.y)
+        /**
+         * Pans and scales the image by one gesture update. The image point under the previous
+         * focus is scaled around and moved to the new focus in a single transform, so a pinch
+         * whose focus drifts pans and scales at once, and nothing jumps when pointers come and
+         * go.
+         */
+        private void transformByGesture(GestureRecognizer recognizer) {
+            final float lastX = recognizer.getFocusX() - recognizer.getPanX();
+            final float lastY = recognizer.getFocusY() - recognizer.getPanY();
+            final float x = (mScrollEnabled ? recognizer.getFocusX() : lastX);
+            final float y = (mScrollEnabled ? recognizer.getFocusY() : lastY);
+            final float scale = (mScaleEnabled ? recognizer.getScaleFactor() : 1.0f);
+
+            mTempPoint.set(lastX, lastY);
+            viewPointToImagePoint(getImageMatrixInternal(), mTempPoint);
+            if (scale != 1.0f) {
+                mScalePivotPoint.set(mTempPoint.x, mTempPoint.y);
+            }
+            // While compositing, the transform moves the layer without a redraw
+            final boolean transformed = mTempTransform.recycle()
+                    .pivot(mTempPoint.x, mTempPoint.y)
+                    .scaleBy(scale, scale)
                     .moveTo(x, y)
                     .touchEvent(true)
                     .transform();
-
-            if (mTempTransform.mClamped) {
-                if (mEdgeGlow != null) {
-                    final int overScrollMode = getOverScrollMode();
-                    final boolean canOverScrollX = (overScrollMode == OVER_SCROLL_ALWAYS ||
-                            (overScrollMode == OVER_SCROLL_IF_CONTENT_SCROLLS && canScrollX()));
-                    if (canOverScrollX) {
-                        final int compare = Float.compare(x, mTempTransform.mX);
-                        EdgeEffect edgeGlow = null;
-                        float deltaDistance = (mTempTransform.mX - x) / getWidth();
-                        float displacement = y / getHeight();
-                        switch (compare) {
-                            case 1:
-                                edgeGlow = mEdgeGlow.get(Gravity.LEFT);
-                                displacement = 1.0f - displacement;
-                                break;
-                            case -1:
-                                edgeGlow = mEdgeGlow.get(Gravity.RIGHT);
-                                break;
-                        }
-                        if (edgeGlow != null) {
-                            EdgeEffectCompat.onPull(edgeGlow, deltaDistance, displacement);
-                            needsInvalidate = true;
-                        }
+            boolean edgeGlowPulled = false;
+
+            if (mTempTransform.mClamped && mScrollEnabled && mEdgeGlow != null) {
+                final int overScrollMode = getOverScrollMode();
+                final boolean canOverScrollX = (overScrollMode == OVER_SCROLL_ALWAYS ||
+                        (overScrollMode == OVER_SCROLL_IF_CONTENT_SCROLLS && canScrollX()));
+                if (canOverScrollX) {
+                    final int compare = Float.compare(x, mTempTransform.mX);
+                    EdgeEffect edgeGlow = null;
+                    float deltaDistance = (mTempTransform.mX - x) / getWidth();
+                    float displacement = y / getHeight();
+                    switch (compare) {
+                        case 1:
+                            edgeGlow = mEdgeGlow.get(Gravity.LEFT);
+                            displacement = 1.0f - displacement;
+                            break;
+                        case -1:
+                            edgeGlow = mEdgeGlow.get(Gravity.RIGHT);
+                            break;
                     }
-
-                    final boolean canOverScrollY = (overScrollMode == OVER_SCROLL_ALWAYS ||
-                            (overScrollMode == OVER_SCROLL_IF_CONTENT_SCROLLS && canScrollY()));
-                    if (canOverScrollY) {
-                        final int compare = Float.compare(y, mTempTransform.mY);
-                        EdgeEffect edgeGlow = null;
-                        float deltaDistance = (mTempTransform.mY - y) / getHeight();
-                        float displacement = x / getWidth();
-                        switch (compare) {
-                            case 1:
-                                edgeGlow = mEdgeGlow.get(Gravity.TOP);
-                                break;
-                            case -1:
-                                edgeGlow = mEdgeGlow.get(Gravity.BOTTOM);
-                                displacement = 1.0f - displacement;
-                                break;
-                        }
-                        if (edgeGlow != null) {
-                            EdgeEffectCompat.onPull(edgeGlow, deltaDistance, displacement);
-                            needsInvalidate = true;
-                        }
+                    if (edgeGlow != null) {
+                        EdgeEffectCompat.onPull(edgeGlow, deltaDistance, displacement);
+                        edgeGlowPulled = true;
                     }
                 }
 
-                mTouchPivotPoint.set(x, y);
-                viewPointToImagePoint(getImageMatrixInternal(), mTouchPivotPoint);
+                final boolean canOverScrollY = (overScrollMode == OVER_SCROLL_ALWAYS ||
+                        (overScrollMode == OVER_SCROLL_IF_CONTENT_SCROLLS && canScrollY()));
+                if (canOverScrollY) {
+                    final int compare = Float.compare(y, mTempTransform.mY);
+                    EdgeEffect edgeGlow = null;
+                    float deltaDistance = (mTempTransform.mY - y) / getHeight();
+                    float displacement = x / getWidth();
+                    switch (compare) {
+                        case 1:
+                            edgeGlow = mEdgeGlow.get(Gravity.TOP);
+                            break;
+                        case -1:
+                            edgeGlow = mEdgeGlow.get(Gravity.BOTTOM);
+                            displacement = 1.0f - displacement;
+                            break;
+                    }
+                    if (edgeGlow != null) {
+                        EdgeEffectCompat.onPull(edgeGlow, deltaDistance, displacement);
+                        edgeGlowPulled = true;
+                    }
+                }
             }
 
-            if (needsInvalidate) {
+            if (edgeGlowPulled && mCompositing) {
+                // The glow is drawn over the image, so it must not be moved with the layer
+                resetCompositedTransform();
+            }
+            if ((transformed && !mCompositing) || edgeGlowPulled) {
                 ViewCompat.postInvalidateOnAnimation(ImageViewInteractinator.this);
             }
-            return true;
         }
 
-        @Override
-        public boolean onSingleTapUp(MotionEvent e) {
-            return (!mDoubleTapToScaleEnabled && performClick());
+        //endregion Private methods
+    }
+
+    /**
+     * Adapts a {@link MotionEvent} to the {@link TouchEvent} that the {@link GestureRecognizer}
+     * consumes, without copying it.
+     */
+    private static class MotionEventinator implements TouchEvent {
+
+        //region Fields
+
+        private MotionEvent mEvent;
+
+        //endregion Fields
+
+        //region Implemented methods
+
+        @Override // TouchEvent
+        public int getActionMasked() {
+            return mEvent.getActionMasked();
         }
 
-        @Override
-        public boolean onSingleTapConfirmed(MotionEvent e) {
-            return (mDoubleTapToScaleEnabled && performClick());
+        @Override // TouchEvent
+        public int getActionIndex() {
+            return mEvent.getActionIndex();
         }
 
-        @Override
-        public boolean onDoubleTap(MotionEvent e) {
-            if (!mDoubleTapToScaleEnabled) {
-                return false;
-            }
+        @Override // TouchEvent
+        public long getEventTimeNanos() {
+            // Event times are uptimeMillis, which shares the monotonic clock of System.nanoTime()
+            return TimeUnit.MILLISECONDS.toNanos(mEvent.getEventTime());
+        }
 
-            mTransforminator.forceFinished(true);
-            final float next = getNextScalePreset();
-            final float sx = getImageMinScaleX() * (1.0f - next) + getImageMaxScaleX() * next;
-            final float sy = getImageMinScaleY() * (1.0f - next) + getImageMaxScaleY() * next;
-            mTempTransform.recycle()
-                    .smooth(true)
-                    .pivot(mTouchPivotPoint.x, mTouchPivotPoint.y)
-                    .scale(sx, sy)
-                    .touchEvent(true)
-                    .transform();
-            return true;
+        @Override // TouchEvent
+        public long getHistoricalEventTimeNanos(int pos) {
+            return TimeUnit.MILLISECONDS.toNanos(mEvent.getHistoricalEventTime(pos));
         }
 
-        //endregion Inherited methods
+        @Override // TouchEvent
+        public float getHistoricalX(int pointerIndex, int pos) {
+            return mEvent.getHistoricalX(pointerIndex, pos);
+        }
+
+        @Override // TouchEvent
+        public float getHistoricalY(int pointerIndex, int pos) {
+            return mEvent.getHistoricalY(pointerIndex, pos);
+        }
+
+        @Override // TouchEvent
+        public int getHistorySize() {
+            return mEvent.getHistorySize();
+        }
+
+        @Override // TouchEvent
+        public int getPointerCount() {
+            return mEvent.getPointerCount();
+        }
+
+        @Override // TouchEvent
+        public float getX(int pointerIndex) {
+            return mEvent.getX(pointerIndex);
+        }
+
+        @Override // TouchEvent
+        public float getY(int pointerIndex) {
+            return mEvent.getY(pointerIndex);
+        }
+
+        //endregion Implemented methods
+
+        //region Methods
+
+        MotionEventinator set(MotionEvent event) {
+            mEvent = event;
+            return this;
+        }
+
+        //endregion Methods
     }
 
     /**
-     * The listener that will be notified when scale gestures occur.
+     * A sequence of transforms applied as one: the transforms are composed into a single image
+     * matrix, which is verified once and set once, so the whole sequence costs one invalidation
+     * and one {@link OnTransformChangedListener} notification. Created with
+     * {@link #beginTransaction()}; a transaction can be committed only once.
      */
-    private class OnScaleGestureListener extends SimpleOnScaleGestureListener {
+    public final class Transaction {
 
-        //region Inherited methods
+        //region Fields
 
-        @Override
-        public boolean onScaleBegin(ScaleGestureDetector detector) {
-            mLastSpan = detector.getCurrentSpan();
-            return true;
+        private final TransformQueue mQueue = new TransformQueue();
+        private final TransformValues mValues = new TransformValues();
+        private final Transform mTransform = new Transform(ImageViewInteractinator.this);
+        private boolean mCommitted;
+
+        //endregion Fields
+
+        //region Constructors
+
+        private Transaction() {
         }
 
-        @Override
-        public boolean onScale(ScaleGestureDetector detector) {
-            mTempPoint.set(detector.getFocusX(), detector.getFocusY());
-            viewPointToImagePoint(getImageMatrixInternal(), mTempPoint);
-            final float px = mTempPoint.x;
-            final float py = mTempPoint.y;
+        //endregion Constructors
 
-            final float currentSpan = detector.getCurrentSpan();
-            final float spanDelta = (currentSpan / mLastSpan);
+        //region Methods
 
-            final boolean transformed =
-                    transformBy(px, py, spanDelta, spanDelta, 0.0f, 0.0f);
+        /**
+         * Adds a transform to the transaction. It is applied to the result of the transforms
+         * added before it. Its smooth, deferred and verify settings are ignored in favor of the
+         * transaction's own.
+         */
+        public Transaction add(Transform t) {
+            checkNotCommitted();
+            readTransformValues(t, mValues);
+            mQueue.add(mValues);
+            return this;
+        }
 
-            if (transformed) {
-                ViewCompat.postInvalidateOnAnimation(ImageViewInteractinator.this);
-            }
+        /**
+         * Applies the transforms in the transaction. If the view is not laid out yet or is
+         * waiting for an image to load, the transaction is applied as soon as it can be.
+         *
+         * @return Whether the image matrix changed (or a smooth transform started)
+         */
+        public boolean commit() {
+            checkNotCommitted();
+            mCommitted = true;
+            return commitTransaction(this);
+        }
 
-            mLastSpan = currentSpan;
-            return true;
+        public Transaction smooth(boolean smooth) {
+            checkNotCommitted();
+            mTransform.smooth(smooth);
+            return this;
         }
 
-        //endregion Inherited methods
+        public Transaction verify(boolean verify) {
+            checkNotCommitted();
+            mTransform.verify(verify);
+            return this;
+        }
+
+        //endregion Methods
+
+        //region Private methods
+
+        private void checkNotCommitted() {
+            if (mCommitted) {
+                throw new IllegalStateException("Transaction has already been committed");
+            }
+        }
 
+        //endregion Private methods
     }
 
     public static class Transform implements Parcelable {
@@ -304,6 +860,7 @@ public class ImageViewInteractinator extends AppCompatImageView {
         private boolean mMoveRelative;
 
         private boolean mSmooth;
+        private boolean mDeferred;
         private boolean mVerify;
         private boolean mTouchEvent;
 
@@ -338,6 +895,7 @@ public class ImageViewInteractinator extends AppCompatImageView {
             mX = src.readFloat();
             mY = src.readFloat();
             mSmooth = (src.readByte() != 0);
+            mDeferred = (src.readByte() != 0);
             mVerify = (src.readByte() != 0);
             mTouchEvent = (src.readByte() != 0);
             mResolved = (src.readByte() != 0);
@@ -365,6 +923,7 @@ public class ImageViewInteractinator extends AppCompatImageView {
             dest.writeFloat(mX);
             dest.writeFloat(mY);
             dest.writeByte((byte) (mSmooth ? 1 : 0));
+            dest.writeByte((byte) (mDeferred ? 1 : 0));
             dest.writeByte((byte) (mVerify ? 1 : 0));
             dest.writeByte((byte) (mTouchEvent ? 1 : 0));
             dest.writeByte((byte) (mResolved ? 1 : 0));
@@ -376,6 +935,18 @@ public class ImageViewInteractinator extends AppCompatImageView {
 
         //region Methods
 
+        /**
+         * Sets whether this transform is applied on the next frame rather than immediately. All
+         * the deferred transforms requested during a frame are merged and cost a single image
+         * matrix update: absolute values overwrite earlier ones and relative values compose with
+         * them. The merged transform is verified once, and is smooth if the last deferred
+         * transform requested was.
+         */
+        public Transform deferred(boolean deferred) {
+            mDeferred = deferred;
+            return this;
+        }
+
         public Transform moveBy(float dx, float dy) {
             mMoveRelative = true;
             mX = dx;
@@ -403,7 +974,7 @@ public class ImageViewInteractinator extends AppCompatImageView {
             mResolved = mVerified = mClamped = false;
             mPx = mPy = mSx = mSy = mX = mY = USE_DEFAULT;
             mVerify = true;
-            mSmooth = mTouchEvent = false;
+            mSmooth = mDeferred = mTouchEvent = false;
             return this;
         }
 
@@ -434,6 +1005,7 @@ public class ImageViewInteractinator extends AppCompatImageView {
             mX = src.mX;
             mY = src.mY;
             mSmooth = src.mSmooth;
+            mDeferred = src.mDeferred;
             mVerify = src.mVerify;
             mTouchEvent = src.mTouchEvent;
             mResolved = src.mResolved;
@@ -503,172 +1075,245 @@ public class ImageViewInteractinator extends AppCompatImageView {
         //endregion Methods
     }
 
-    private static class Transforminator {
-        /**
-         * The interpolator, used for making transforms animate 'naturally.'
-         */
-        private Interpolator mInterpolator;
+    /**
+     * An immutable snapshot of the state that observers of an ImageViewInteractinator's transform
+     * typically display: its scale type, the size of its image, and the current pivot, scale and
+     * scale limits of the image.
+     */
+    public static final class TransformSnapshot {
 
-        /**
-         * The total animation duration for a zoom.
-         */
-        private int mAnimationDurationMillis;
+        //region Fields
 
-        /**
-         * Whether or not the current zoom has finished.
-         */
-        private boolean mFinished = true;
+        private final ScaleType mScaleType;
+        private final int mImageWidth;
+        private final int mImageHeight;
+        private final float mPivotX;
+        private final float mPivotY;
+        private final float mScaleX;
+        private final float mScaleY;
+        private final float mMinScaleX;
+        private final float mMinScaleY;
+        private final float mMaxScaleX;
+        private final float mMaxScaleY;
 
-        /**
-         * The X value of the pivot point.
-         */
-        private float mPx;
+        //endregion Fields
 
-        /**
-         * The Y value of the pivot point.
-         */
-        private float mPy;
+        //region Constructors
 
-        /**
-         * The current scale X value; computed by {@link #computeScroll()}.
-         */
-        private float mCurrentSx;
+        private TransformSnapshot(
+                ScaleType scaleType,
+                int imageWidth,
+                int imageHeight,
+                float pivotX,
+                float pivotY,
+                float scaleX,
+                float scaleY,
+                float minScaleX,
+                float minScaleY,
+                float maxScaleX,
+                float maxScaleY) {
+            mScaleType = scaleType;
+            mImageWidth = imageWidth;
+            mImageHeight = imageHeight;
+            mPivotX = pivotX;
+            mPivotY = pivotY;
+            mScaleX = scaleX;
+            mScaleY = scaleY;
+            mMinScaleX = minScaleX;
+            mMinScaleY = minScaleY;
+            mMaxScaleX = maxScaleX;
+            mMaxScaleY = maxScaleY;
+        }
 
-        /**
-         * The current scale Y value; computed by {@link #computeScroll()}.
-         */
-        private float mCurrentSy;
+        //endregion Constructors
 
-        /**
-         * The current X location of the pivot point; computed by {@link #computeScroll()}.
-         */
-        private float mCurrentX;
+        //region Inherited methods
 
-        /**
-         * The current Y location of the pivot point; computed by {@link #computeScroll()}.
-         */
-        private float mCurrentY;
+        @Override
+        public String toString() {
+            return TransformSnapshot.class.getSimpleName() + "{" +
+                    "scaleType=" + mScaleType +
+                    ", imageSize=" + mImageWidth + "x" + mImageHeight +
+                    ", pivot=(" + mPivotX + ", " + mPivotY + ")" +
+                    ", scale=(" + mScaleX + ", " + mScaleY + ")" +
+                    ", minScale=(" + mMinScaleX + ", " + mMinScaleY + ")" +
+                    ", maxScale=(" + mMaxScaleX + ", " + mMaxScaleY + ")" +
+                    "}";
+        }
 
-        /**
-         * The time the zoom started, computed using {@link SystemClock#elapsedRealtime()}.
-         */
-        private long mStartRTC;
+        //endregion Inherited methods
 
-        private float mStartSx;
+        //region Methods
 
-        private float mStartSy;
+        public int getImageHeight() {
+            return mImageHeight;
+        }
 
-        private float mStartX;
+        public int getImageWidth() {
+            return mImageWidth;
+        }
 
-        private float mStartY;
+        public float getMaxScaleX() {
+            return mMaxScaleX;
+        }
 
-        /**
-         * The destination scale X.
-         */
-        private float mEndSx;
+        public float getMaxScaleY() {
+            return mMaxScaleY;
+        }
 
-        /**
-         * The destination scale Y.
-         */
-        private float mEndSy;
+        public float getMinScaleX() {
+            return mMinScaleX;
+        }
 
-        /**
-         * The destination X location of the pivot point.
-         */
-        private float mEndX;
+        public float getMinScaleY() {
+            return mMinScaleY;
+        }
 
-        /**
-         * The destination Y location of the pivot point.
-         */
-        private float mEndY;
+        public float getPivotX() {
+            return mPivotX;
+        }
 
-        public Transforminator(Context context) {
-            mInterpolator = new DecelerateInterpolator();
-            mAnimationDurationMillis =
-                    context.getResources().getInteger(android.R.integer.config_mediumAnimTime);
+        public float getPivotY() {
+            return mPivotY;
         }
 
-        /**
-         * Aborts the animation, setting the current values to the ending value.
-         *
-         * @see android.widget.Scroller#abortAnimation()
-         */
-        void abortAnimation() {
-            mFinished = true;
-            mCurrentSx = mEndSx;
-            mCurrentSy = mEndSy;
-            mCurrentX = mEndX;
-            mCurrentY = mEndY;
+        public float getScaleX() {
+            return mScaleX;
         }
 
-        /**
-         * Forces the transform finished state to the given value. Unlike
-         * {@link #abortAnimation()}, the current zoom value isn't set to the ending value.
-         *
-         * @see android.widget.Scroller#forceFinished(boolean)
-         */
-        void forceFinished(boolean finished) {
-            mFinished = finished;
+        public float getScaleY() {
+            return mScaleY;
+        }
+
+        public ScaleType getScaleType() {
+            return mScaleType;
+        }
+
+        //endregion Methods
+
+        //region Private methods
+
+        private boolean matches(
+                ScaleType scaleType,
+                int imageWidth,
+                int imageHeight,
+                float pivotX,
+                float pivotY,
+                float scaleX,
+                float scaleY,
+                float minScaleX,
+                float minScaleY,
+                float maxScaleX,
+                float maxScaleY) {
+            return mScaleType == scaleType &&
+                    mImageWidth == imageWidth &&
+                    mImageHeight == imageHeight &&
+                    Float.compare(mPivotX, pivotX) == 0 &&
+                    Float.compare(mPivotY, pivotY) == 0 &&
+                    Float.compare(mScaleX, scaleX) == 0 &&
+                    Float.compare(mScaleY, scaleY) == 0 &&
+                    Float.compare(mMinScaleX, minScaleX) == 0 &&
+                    Float.compare(mMinScaleY, minScaleY) == 0 &&
+                    Float.compare(mMaxScaleX, maxScaleX) == 0 &&
+                    Float.compare(mMaxScaleY, maxScaleY) == 0;
+        }
+
+        //endregion Private methods
+    }
+
+    /**
+     * Animates smooth transforms, such as a double-tap zoom, with a spring. A smooth transform
+     * that starts while another is running, or shortly after one was interrupted by a touch or a
+     * pinch ended, continues with the velocity it had. Momentum is kept for the double-tap
+     * timeout, so that the second tap of a double tap doesn't lose what the first one stopped.
+     */
+    private static class Transforminator extends TransformSpring {
+
+        //region Constructors
+
+        Transforminator() {
+            super(TimeUnit.MILLISECONDS.toNanos(ViewConfiguration.getDoubleTapTimeout()));
+        }
+
+        //endregion Constructors
+    }
+
+    /**
+     * The view's {@link FrameClock}. While an animation is running, it keeps a Choreographer
+     * frame callback posted that records the vsync time of each frame. Since frame callbacks run
+     * before the frame is drawn, computeScroll() can then advance every animation to the time at
+     * which the frame it is drawing will actually be presented, which is one frame interval
+     * after its vsync.
+     */
+    private class Vsyncinator extends ChoreographerCompat.FrameCallback implements FrameClock {
+
+        //region Fields
+
+        private long mFrameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;
+        private long mVsyncNanos;
+        private boolean mPosted;
+
+        //endregion Fields
+
+        //region Inherited methods
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mPosted = false;
+            mVsyncNanos = frameTimeNanos;
+            if (isAnimating()) {
+                start();
+            }
         }
 
-        /**
-         * Starts a transform from the supplied start values to the supplied end values.
-         *
-         * @see android.widget.Scroller#startScroll(int, int, int, int)
-         */
-        void startTransform(
-                float px,
-                float py,
-                float startSx,
-                float startSy,
-                float startX,
-                float startY,
-                float endSx,
-                float endSy,
-                float endX,
-                float endY) {
-            mStartRTC = SystemClock.elapsedRealtime();
-            mPx = px;
-            mPy = py;
-            mCurrentSx = mStartSx = startSx;
-            mCurrentSy = mStartSy = startSy;
-            mCurrentX = mStartX = startX;
-            mCurrentY = mStartY = startY;
-            mEndSx = endSx;
-            mEndSy = endSy;
-            mEndX = endX;
-            mEndY = endY;
-            mFinished = false;
+        //endregion Inherited methods
+
+        //region Implemented methods
+
+        @Override // FrameClock
+        public long getFrameIntervalNanos() {
+            return mFrameIntervalNanos;
+        }
+
+        @Override // FrameClock
+        public long getFrameTimeNanos() {
+            final long nowNanos = System.nanoTime();
+            long vsyncNanos = mVsyncNanos;
+            if (vsyncNanos == 0L) {
+                vsyncNanos = nowNanos;
+            } else if (nowNanos - vsyncNanos >= mFrameIntervalNanos) {
+                // No frame callback has run for this frame (for example, an animation is just
+                // being started), so assume the frame began on the most recent vsync
+                vsyncNanos = nowNanos - (nowNanos - vsyncNanos) % mFrameIntervalNanos;
+            }
+            return vsyncNanos + mFrameIntervalNanos;
+        }
+
+        //endregion Implemented methods
+
+        //region Methods
+
+        void setRefreshRate(float refreshRate) {
+            if (refreshRate >= 1.0f) {
+                mFrameIntervalNanos = Math.round(TimeUnit.SECONDS.toNanos(1) / refreshRate);
+            }
         }
 
-        /**
-         * Computes the current scroll, returning true if the zoom is still active and false if
-         * the scroll has finished.
-         *
-         * @see android.widget.Scroller#computeScrollOffset()
-         */
-        boolean computeTransform() {
-            if (mFinished) {
-                return false;
+        void start() {
+            if (!mPosted) {
+                mPosted = true;
+                ChoreographerCompat.postFrameCallback(this);
             }
+        }
 
-            long tRTC = SystemClock.elapsedRealtime() - mStartRTC;
-            if (tRTC >= mAnimationDurationMillis) {
-                mCurrentSx = mEndSx;
-                mCurrentSy = mEndSy;
-                mCurrentX = mEndX;
-                mCurrentY = mEndY;
-                mFinished = true;
-            } else {
-                float t = tRTC * 1f / mAnimationDurationMillis;
-                float interpolation = mInterpolator.getInterpolation(t);
-                mCurrentSx = mStartSx + (mEndSx - mStartSx) * interpolation;
-                mCurrentSy = mStartSy + (mEndSy - mStartSy) * interpolation;
-                mCurrentX = mStartX + (mEndX - mStartX) * interpolation;
-                mCurrentY = mStartY + (mEndY - mStartY) * interpolation;
+        void stop() {
+            if (mPosted) {
+                mPosted = false;
+                ChoreographerCompat.removeFrameCallback(this);
             }
-            return true;
         }
+
+        //endregion Methods
     }
 
     //endregion Nested classes
@@ -681,6 +1326,11 @@ public class ImageViewInteractinator extends AppCompatImageView {
     private static final float FLOAT_EPSILON = 0.00025f;
     private static final float EDGE_GLOW_SIZE_FACTOR = 1.25f;
 
+    /**
+     * How far, in pixels, a composited layer may fall short of the content it must cover.
+     */
+    private static final float COMPOSITE_EPSILON = 0.5f;
+
     private static final int INVALID_FLAG_BASELINE_IMAGE_MATRIX = 0x00000001;
     private static final int INVALID_FLAG_IMAGE_MAX_SCALE = 0x00000002;
     private static final int INVALID_FLAG_IMAGE_MIN_SCALE = 0x00000004;
@@ -691,21 +1341,154 @@ public class ImageViewInteractinator extends AppCompatImageView {
 
     public static final float USE_DEFAULT = Float.NaN;
 
+    @IntDef({
+            POINTER_PREDICTION_NONE,
+            POINTER_PREDICTION_LINEAR
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface PointerPrediction {}
+
+    /**
+     * Touch gestures follow the latest pointer positions. Use with
+     * {@link #setPointerPrediction(int)}.
+     */
+    public static final int POINTER_PREDICTION_NONE = PointerPredictor.MODE_NONE;
+
+    /**
+     * Touch gestures follow the pointer positions extrapolated to the time the frame will be
+     * presented, along velocities fitted to each event's historical samples. Use with
+     * {@link #setPointerPrediction(int)}.
+     */
+    public static final int POINTER_PREDICTION_LINEAR = PointerPredictor.MODE_LINEAR;
+
+    @IntDef({
+            QUALITY_TIER_FAST,
+            QUALITY_TIER_BALANCED,
+            QUALITY_TIER_FULL
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface QualityTier {}
+
+    /**
+     * Frames are drawn without bitmap filtering, and tiled images make do with the tiles already
+     * decoded instead of refining to a finer level. The cheapest tier, for an image in motion.
+     */
+    public static final int QUALITY_TIER_FAST = 0;
+
+    /**
+     * Frames are drawn with the drawable's own bitmap filtering, but tiled images are not refined
+     * to a finer level.
+     */
+    public static final int QUALITY_TIER_BALANCED = 1;
+
+    /**
+     * Frames are drawn with the drawable's own bitmap filtering, and tiled images are refined to
+     * the level that matches the current scale.
+     */
+    public static final int QUALITY_TIER_FULL = 2;
+
+    @IntDef(flag = true, value = {
+            MOTION_GESTURE,
+            MOTION_FLING,
+            MOTION_ANIMATION
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Motion {}
+
+    /**
+     * A touch gesture is dragging or pinching the image.
+     */
+    public static final int MOTION_GESTURE = 0x00000001;
+
+    /**
+     * The image is being flung, or is scaling under zoom momentum.
+     */
+    public static final int MOTION_FLING = 0x00000002;
+
+    /**
+     * A smooth transform is animating the image.
+     */
+    public static final int MOTION_ANIMATION = 0x00000004;
+
+    /**
+     * The default {@link QualityPolicy}. Frames are drawn at {@link #QUALITY_TIER_FAST} while the
+     * image is flung or animated and at {@link #QUALITY_TIER_FULL} otherwise. Touch gestures get
+     * the full tier, since fingers can hold the image still at a new scale for any length of
+     * time and it should not stay unrefined until they lift.
+     */
+    public static final QualityPolicy DEFAULT_QUALITY_POLICY = new QualityPolicy() {
+        @Override
+        public int getQualityTier(ImageViewInteractinator view, int motion) {
+            return ((motion & (MOTION_FLING | MOTION_ANIMATION)) != 0 ?
+                    QUALITY_TIER_FAST :
+                    QUALITY_TIER_FULL);
+        }
+    };
+
+    /**
+     * The maximum size, in pixels, of the longest side of a subsampled preview.
+     */
+    private static final int MAX_PREVIEW_SIZE = 256;
+
+    /**
+     * How far an EXIF thumbnail's aspect ratio may be from the image's and still be used.
+     */
+    private static final float MAX_PREVIEW_ASPECT_ERROR = 0.02f;
+
+    /**
+     * The frame interval assumed until the display's refresh rate is known (60 Hz).
+     */
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 16666667L;
+
+    /**
+     * How close, as a fraction of its whole motion, a smooth transform must be to its end
+     * before it holds for the tiles it lands on.
+     */
+    private static final float TILE_HOLD_REMAINING_FRACTION = 0.05f;
+
+    /**
+     * The longest a smooth transform holds for the tiles it lands on.
+     */
+    private static final long MAX_TILE_HOLD_NANOS = 100000000L;
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
     //endregion Constants
 
     //region Fields
 
     private final OverScroller mOverScroller;
     private final Transforminator mTransforminator;
+    private final Vsyncinator mVsyncinator = new Vsyncinator();
+    private final ScaleFling mScaleFling = new ScaleFling();
+
+    // The tiles that the running smooth transform lands on
+    private boolean mPrewarming;
+    private final RectF mPrewarmRect = new RectF();
+    private float mPrewarmScale;
+    private boolean mPrewarmInMotion;
+    private final float[] mPrewarmStartValues = new float[4];
+    private long mTileHoldStartNanos = -1L;
+
+    private final GestureRecognizer mGestureRecognizer =
+            new GestureRecognizer(new GestureListener());
+    private final MotionEventinator mMotionEventinator = new MotionEventinator();
+    private @PointerPrediction int mPointerPrediction = POINTER_PREDICTION_NONE;
+    private final Runnable mSingleTapConfirminator = new Runnable() {
+        @Override
+        public void run() {
+            performClick();
+        }
+    };
 
-    private GestureDetectorCompat mGestureDetector;
-    private OnGestureListener mOnGestureListener;
-    private ScaleGestureDetector mScaleGestureDetector;
-
+    protected boolean mCompositedGestures;
+    protected boolean mDecodeToFit;
     protected boolean mDoubleTapToScaleEnabled;
     protected boolean mFlingEnabled;
+    protected boolean mHoldForTiles;
     protected float mMaxScaleBreadthFactor;
     protected float mMaxScaleLengthFactor;
+    protected boolean mProgressiveLoading;
     protected boolean mScaleEnabled;
     protected boolean mScrollEnabled;
     private float[] mScalePresets;
@@ -715,25 +1498,117 @@ public class ImageViewInteractinator extends AppCompatImageView {
 
     private final Matrix mBaselineImageMatrix = new Matrix();
     private final Matrix mImageMatrix = new Matrix();
+    private final Matrix mInverseImageMatrix = new Matrix();
+    private final float[] mInverseImageValues = new float[9];
+    private int mImageMatrixGeneration;
+    private int mInverseImageMatrixGeneration = -1;
+    private boolean mImageMatrixInvertible;
+
+    // State derived from the image matrix, valid as long as its generation is current
+    private final float[] mImageValues = new float[9];
+    private final RectF mImageBounds = new RectF();
+    private final PointF mScrollableInfo = new PointF();
+    private int mImageValuesGeneration = -1;
+    private int mImageBoundsGeneration = -1;
+
     private final PointF mImageMaxScale = new PointF();
     private final PointF mImageMinScale = new PointF();
     private final PointF mTouchPivotPoint = new PointF();
+    private final TransformEngine mTransformEngine = new TransformEngine();
 
     // Avoid allocations...
     private float[] mTempPts = new float[2];
     private float[] mTempValues = new float[9];
+    private float[] mEngineValues = new float[9];
+    private float[] mTempBounds = new float[4];
+    private TransformValues mEngineTransformValues = new TransformValues();
     private Matrix mTempMatrix = new Matrix();
+    private Matrix mTempInverseMatrix = new Matrix();
     private PointF mTempPoint = new PointF();
     private RectF mTempRectSrc = new RectF();
     private RectF mTempRectDst = new RectF();
     private Transform mTempTransform = new Transform(this);
+    private Transform mSwapTransform = new Transform(this);
+
+    // Used while mTempTransform may be in use by a transform in progress
+    private Transform mSettleTransform = new Transform(this);
 
     private Transform mPendingTransform = null;
+    private Transaction mPendingTransaction = null;
+
+    /**
+     * Whether {@link #computeScroll()} is applying a frame of a fling or animation, which moves
+     * the image already on screen and so is never held for an image load.
+     */
+    private boolean mComputingScroll;
+
+    // Deferred transforms, merged and applied on the next frame
+    private final TransformQueue mTransformQueue = new TransformQueue();
+    private final Transform mDeferredTransform = new Transform(this);
+    private boolean mDeferredTransformPosted;
+    private final Runnable mDeferredTransformApplier = new Runnable() {
+        @Override
+        public void run() {
+            mDeferredTransformPosted = false;
+            applyDeferredTransforms();
+        }
+    };
+
+    private ArrayList<OnTransformChangedListener> mOnTransformChangedListeners;
+    private TransformSnapshot mTransformSnapshot;
+    private int mTransformSnapshotGeneration = -1;
+    private boolean mTransformChangePosted;
+    private final Runnable mTransformChangeNotifier = new Runnable() {
+        @Override
+        public void run() {
+            mTransformChangePosted = false;
+            dispatchTransformChanged();
+        }
+    };
+
+    private QualityPolicy mQualityPolicy = DEFAULT_QUALITY_POLICY;
+    private @QualityTier int mQualityTier = QUALITY_TIER_FULL;
+    private OnQualityTierListener mOnQualityTierListener;
+    private Drawable mUnfilteredDrawable;
+    private boolean mSavedFilterBitmap;
+
+    private TiledDrawable mTiledDrawable;
+    private TileCache mTileCache;
+
+    /**
+     * The visible region of the image handed to the tiled drawable. Kept apart from the temp
+     * rects, which computing the scale limits overwrites.
+     */
+    private final RectF mTileViewportRect = new RectF();
+    private long mTileUploadBytesPerFrame = TiledDrawable.DEFAULT_UPLOAD_BYTES_PER_FRAME;
+    private int mTileUploadCountPerFrame;
+    private OnTileUploadListener mOnTileUploadListener;
+    private ImageLoadTask mImageLoadTask;
+    private boolean mDeliveringImageLoad;
+
+    /**
+     * The load whose delivered image has not been drawn yet, and what was delivered, so that
+     * the time to first paint can be logged from the next {@link #onDraw(Canvas)}.
+     */
+    private ImageLoadTask mUnpaintedImageLoad;
+    private String mUnpaintedImageEvent;
 
     private SparseArray<EdgeEffect> mEdgeGlow;
     private Set<EdgeEffect> mAvailableGlows;
 
-    private float mLastSpan;
+    private final PointF mScalePivotPoint = new PointF();
+
+    // Compositor-only gesture transforms
+    private boolean mCompositing;
+    private final Matrix mCompositedImageMatrix = new Matrix();
+    private float mCommittedScaleX;
+    private float mCommittedScaleY;
+    private float mCommittedOriginX;
+    private float mCommittedOriginY;
+    private final float[] mCompositePts = new float[4];
+    private final Rect mCompositeClipBounds = new Rect();
+    private Rect mSavedClipBounds;
+    private int mSavedLayerType;
 
     //endregion Fields
 
@@ -778,7 +1653,11 @@ public class ImageViewInteractinator extends AppCompatImageView {
         super.computeScroll();
 
         boolean needsInvalidate = false;
+        final long frameTimeNanos = mVsyncinator.getFrameTimeNanos();
+        mComputingScroll = true;
 
+        // The fling is timed by OverScroller itself, which reads the animation clock that the
+        // platform locks to this same Choreographer frame (API 24+)
         if (mOverScroller.computeScrollOffset()) {
             final int currX = mOverScroller.getCurrX();
             final int currY = mOverScroller.getCurrY();
@@ -825,25 +1704,92 @@ public class ImageViewInteractinator extends AppCompatImageView {
                     }
                 }
             }
-        } else if (mTransforminator.computeTransform()) {
+        } else if (holdForTiles(frameTimeNanos)) {
+            needsInvalidate = true;
+        } else if (mTransforminator.computeTransform(frameTimeNanos)) {
             mTempTransform.recycle()
-                    .pivot(mTransforminator.mPx, mTransforminator.mPy)
-                    .scale(mTransforminator.mCurrentSx, mTransforminator.mCurrentSy)
-                    .moveTo(mTransforminator.mCurrentX, mTransforminator.mCurrentY)
+                    .pivot(mTransforminator.getPx(), mTransforminator.getPy())
+                    .scale(mTransforminator.getCurrentSx(), mTransforminator.getCurrentSy())
+                    .moveTo(mTransforminator.getCurrentX(), mTransforminator.getCurrentY())
                     .verify(false)
                     .transform();
             needsInvalidate = true;
         }
 
+        // Zoom momentum runs in the same frame as a fling, so that one invalidation per vsync
+        // drives both. While it overshoots a scale limit the transform can't be verified, since
+        // that would clamp the overshoot away; the frame that settles on the limit is verified.
+        if (mScaleFling.computeScale(frameTimeNanos)) {
+            mTempTransform.recycle()
+                    .pivot(mScaleFling.getPx(), mScaleFling.getPy())
+                    .scale(mScaleFling.getCurrentSx(), mScaleFling.getCurrentSy())
+                    .verify(!mScaleFling.isOverScaled())
+                    .transform();
+            needsInvalidate = true;
+        }
+        mComputingScroll = false;
+
         if (needsInvalidate) {
             ViewCompat.postInvalidateOnAnimation(this);
+        } else {
+            invalidateQualityTier();
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        final WindowManager windowManager =
+                (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+        if (windowManager != null) {
+            mVsyncinator.setRefreshRate(windowManager.getDefaultDisplay().getRefreshRate());
+        }
+        if (isAnimating()) {
+            mVsyncinator.start();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        endCompositing(true);
+        mVsyncinator.stop();
+        if (mTiledDrawable != null) {
+            mTiledDrawable.releaseTiles();
         }
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
+        final @QualityTier int tier = resolveQualityTier();
+        final Drawable drawable = getDrawable();
+        if (drawable instanceof TiledDrawable) {
+            updateTiledDrawable((TiledDrawable) drawable, tier != QUALITY_TIER_FULL);
+        }
+
         super.onDraw(canvas);
 
+        if (mUnpaintedImageLoad != null) {
+            mUnpaintedImageLoad.logTiming(mUnpaintedImageEvent);
+            mUnpaintedImageLoad = null;
+            mUnpaintedImageEvent = null;
+        }
+
+        mQualityTier = tier;
+        if (mOnQualityTierListener != null) {
+            mOnQualityTierListener.onQualityTier(this, tier);
+        }
+        if (mOnTileUploadListener != null && drawable instanceof TiledDrawable) {
+            final TiledDrawable tiledDrawable = (TiledDrawable) drawable;
+            final UploadQueue.Stats stats = tiledDrawable.getLastUploadStats();
+            if (stats.getCount() > 0) {
+                mOnTileUploadListener.onTileUpload(
+                        this,
+                        stats,
+                        tiledDrawable.getPendingUploadCount());
+            }
+        }
+
         if (mEdgeGlow != null) {
             // The methods below rotate and translate the canvas as needed before drawing the glow,
             // since EdgeEffect always draws a top-glow at 0,0.
@@ -929,39 +1875,39 @@ public class ImageViewInteractinator extends AppCompatImageView {
     @Override
     public void layout(int l, int t, int r, int b) {
         super.layout(l, t, r, b);
-        if (mPendingTransform != null) {
-            mPendingTransform.transform(this);
-            mPendingTransform = null;
-        }
+        applyPendingTransform();
+    }
+
+    @Override
+    public void onRtlPropertiesChanged(int layoutDirection) {
+        endCompositing(true);
+        super.onRtlPropertiesChanged(layoutDirection);
+        // FIT_START and FIT_END align the image according to the layout direction
+        invalidateImageState(0);
     }
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        endCompositing(true);
         super.onSizeChanged(w, h, oldw, oldh);
-        mInvalidFlags |= INVALID_FLAG_DEFAULT;
+        invalidateImageState(INVALID_FLAG_DEFAULT);
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         boolean retVal = false;
-        if (drawableHasFunctionalDimensions()) {
-            // When # of pointers changes, recycle the touch pivot point to the "primary" pointer
-            final int action = event.getActionMasked();
-            if (action == MotionEvent.ACTION_DOWN ||
-                    action == MotionEvent.ACTION_POINTER_DOWN ||
-                    action == MotionEvent.ACTION_POINTER_UP) {
-                final int primaryIndex = getPrimaryPointerIndex(event);
-                if (primaryIndex >= 0) {
-                    mTouchPivotPoint.set(event.getX(primaryIndex), event.getY(primaryIndex));
-                    viewPointToImagePoint(getImageMatrixInternal(), mTouchPivotPoint);
-                }
-            }
-
-            if (mScaleGestureDetector != null) {
-                retVal = mScaleGestureDetector.onTouchEvent(event);
-            }
-            if (mGestureDetector != null) {
-                retVal = mGestureDetector.onTouchEvent(event) || retVal;
+        if (drawableHasFunctionalDimensions() && (mScrollEnabled || mScaleEnabled ||
+                mFlingEnabled || mDoubleTapToScaleEnabled)) {
+            if (mCompositing) {
+                // The parent maps events through the inverse of the layer's scale and
+                // translation, which move with the gesture; map them back into the view's
+                // unmoved frame so that the gesture doesn't feed back on itself
+                final MotionEvent unmappedEvent = MotionEvent.obtain(event);
+                unmappedEvent.transform(getMatrix());
+                retVal = mGestureRecognizer.onTouchEvent(mMotionEventinator.set(unmappedEvent));
+                unmappedEvent.recycle();
+            } else {
+                retVal = mGestureRecognizer.onTouchEvent(mMotionEventinator.set(event));
             }
         }
         return retVal || super.onTouchEvent(event);
@@ -969,17 +1915,34 @@ public class ImageViewInteractinator extends AppCompatImageView {
 
     @Override
     public void setImageDrawable(@Nullable Drawable drawable) {
+        endCompositing(false);
+        if (!mDeliveringImageLoad) {
+            cancelImageLoad();
+            mUnpaintedImageLoad = null;
+            mUnpaintedImageEvent = null;
+        }
+        if (mUnfilteredDrawable != drawable) {
+            restoreFilterBitmap();
+        }
+        if (mTiledDrawable != null && mTiledDrawable != drawable) {
+            // We created this drawable in setImageSource, so we are responsible for recycling it
+            mTiledDrawable.recycle();
+            mTiledDrawable = null;
+        }
         super.setImageDrawable(drawable);
         setScaleType(mScaleType);
-        mInvalidFlags |= INVALID_FLAG_DEFAULT;
+        invalidateImageState(INVALID_FLAG_DEFAULT);
     }
 
     @Override
     public void setImageMatrix(Matrix matrix) {
+        endCompositing(false);
         super.setImageMatrix(matrix);
         if (ScaleType.MATRIX == mScaleType) {
             mBaselineImageMatrix.set(matrix);
-            mInvalidFlags |= INVALID_FLAG_DEFAULT & ~INVALID_FLAG_BASELINE_IMAGE_MATRIX;
+            invalidateImageState(INVALID_FLAG_DEFAULT & ~INVALID_FLAG_BASELINE_IMAGE_MATRIX);
+        } else {
+            invalidateImageState(0);
         }
     }
 
@@ -1003,66 +1966,89 @@ public class ImageViewInteractinator extends AppCompatImageView {
 
     @Override
     public void setPadding(int left, int top, int right, int bottom) {
+        endCompositing(true);
         super.setPadding(left, top, right, bottom);
-        mInvalidFlags |= INVALID_FLAG_DEFAULT;
+        invalidateImageState(INVALID_FLAG_DEFAULT);
     }
 
     @Override
     public void setPaddingRelative(int start, int top, int end, int bottom) {
+        endCompositing(true);
         super.setPaddingRelative(start, top, end, bottom);
-        mInvalidFlags |= INVALID_FLAG_DEFAULT;
+        invalidateImageState(INVALID_FLAG_DEFAULT);
     }
 
     @Override
     public void setScaleType(ScaleType scaleType) {
+        endCompositing(false);
         mScaleType = scaleType;
         super.setScaleType(mScaleType);
-        mInvalidFlags |= INVALID_FLAG_DEFAULT;
+        invalidateImageState(INVALID_FLAG_DEFAULT);
     }
 
     //endregion Inherited methods
 
     //region Methods
 
+    /**
+     * Adds a listener to be notified, at most once per frame, when the transform state changes.
+     * A newly added listener is notified of the current state on the next frame (along with any
+     * listeners already added, which may then see an unchanged snapshot).
+     */
+    public void addOnTransformChangedListener(@NonNull OnTransformChangedListener listener) {
+        if (mOnTransformChangedListeners == null) {
+            mOnTransformChangedListeners = new ArrayList<>();
+        }
+        if (!mOnTransformChangedListeners.contains(listener)) {
+            mOnTransformChangedListeners.add(listener);
+            mTransformSnapshot = null;
+            mTransformSnapshotGeneration = -1;
+            invalidateImageState(0);
+        }
+    }
+
+    /**
+     * Cancels any load started with {@link #loadImage(ImageSource, OnImageLoadListener)} that
+     * has not completed yet. The listener for that load will not be called.
+     */
+    public void cancelImageLoad() {
+        if (mImageLoadTask != null) {
+            mImageLoadTask.cancel();
+            mImageLoadTask = null;
+        }
+    }
+
     public boolean canScrollDown() {
-        final Matrix matrix = getImageMatrixInternal();
-        getScrollableInfo(matrix, mTempPoint);
+        getScrollableInfo(getImageMatrixInternal(), mTempPoint);
         if (mTempPoint.y < 0) {
-            matrix.getValues(mTempValues);
-            return (Math.round(mTempValues[Matrix.MTRANS_Y]) < getPaddingTop());
+            return (Math.round(getImageValuesInternal()[Matrix.MTRANS_Y]) < getPaddingTop());
         } else {
             return false;
         }
     }
 
     public boolean canScrollLeft() {
-        final Matrix matrix = getImageMatrixInternal();
-        getScrollableInfo(matrix, mTempPoint);
+        getScrollableInfo(getImageMatrixInternal(), mTempPoint);
         if (mTempPoint.x < 0) {
-            matrix.getValues(mTempValues);
-            return (Math.round(mTempValues[Matrix.MTRANS_X]) > mTempPoint.x);
+            return (Math.round(getImageValuesInternal()[Matrix.MTRANS_X]) > mTempPoint.x);
         } else {
             return false;
         }
     }
 
     public boolean canScrollRight() {
-        final Matrix matrix = getImageMatrixInternal();
-        getScrollableInfo(matrix, mTempPoint);
+        getScrollableInfo(getImageMatrixInternal(), mTempPoint);
         if (mTempPoint.x < 0) {
-            matrix.getValues(mTempValues);
-            return (Math.round(mTempValues[Matrix.MTRANS_X]) < getPaddingLeft());
+            return (Math.round(getImageValuesInternal()[Matrix.MTRANS_X]) < getPaddingLeft());
         } else {
             return false;
         }
     }
 
     public boolean canScrollUp() {
-        final Matrix matrix = getImageMatrixInternal();
-        getScrollableInfo(matrix, mTempPoint);
+        getScrollableInfo(getImageMatrixInternal(), mTempPoint);
         if (mTempPoint.y < 0) {
-            matrix.getValues(mTempValues);
-            return (Math.round(mTempValues[Matrix.MTRANS_Y]) > mTempPoint.y);
+            return (Math.round(getImageValuesInternal()[Matrix.MTRANS_Y]) > mTempPoint.y);
         } else {
             return false;
         }
@@ -1130,10 +2116,65 @@ public class ImageViewInteractinator extends AppCompatImageView {
         return mMaxScaleLengthFactor;
     }
 
+    public @PointerPrediction int getPointerPrediction() {
+        return mPointerPrediction;
+    }
+
+    @NonNull
+    public QualityPolicy getQualityPolicy() {
+        return mQualityPolicy;
+    }
+
+    /**
+     * Returns the quality tier that the last frame was drawn at.
+     */
+    public @QualityTier int getQualityTier() {
+        return mQualityTier;
+    }
+
     public float[] getScalePresets() {
         return mScalePresets;
     }
 
+    /**
+     * Returns the cache used to retain decoded tiles that are not currently visible. Unless
+     * a cache was set with {@link #setTileCache(TileCache)}, this is the process-wide default
+     * cache shared by every ImageViewInteractinator.
+     */
+    public TileCache getTileCache() {
+        if (mTileCache == null) {
+            mTileCache = TileCache.getDefault(getContext());
+        }
+        return mTileCache;
+    }
+
+    /**
+     * Returns the most bytes of newly decoded tiles drawn per frame, or 0 for no limit.
+     */
+    public long getTileUploadBytesPerFrame() {
+        return mTileUploadBytesPerFrame;
+    }
+
+    /**
+     * Returns the most newly decoded tiles drawn per frame, or 0 for no limit.
+     */
+    public int getTileUploadCountPerFrame() {
+        return mTileUploadCountPerFrame;
+    }
+
+    /**
+     * Returns the tiles drawn since the current tiled image was set (or since
+     * {@link #resetTileUploadStats()}) and how long they waited between being decoded and being
+     * drawn, or null if the image is not tiled.
+     */
+    @Nullable
+    public UploadQueue.Stats getTileUploadStats() {
+        final Drawable drawable = getDrawable();
+        return (drawable instanceof TiledDrawable ?
+                new UploadQueue.Stats(((TiledDrawable) drawable).getUploadStats()) :
+                null);
+    }
+
     public void getTransform(Transform outTransform) {
         outTransform
                 .recycle()
@@ -1141,6 +2182,18 @@ public class ImageViewInteractinator extends AppCompatImageView {
                 .moveTo(USE_DEFAULT, USE_DEFAULT);
     }
 
+    /**
+     * Returns whether gesture transforms are drawn by the compositor. See
+     * {@link #setCompositedGestures(boolean)}.
+     */
+    public boolean isCompositedGestures() {
+        return mCompositedGestures;
+    }
+
+    public boolean isDecodeToFit() {
+        return mDecodeToFit;
+    }
+
     public boolean isDoubleTapToScaleEnabled() {
         return mDoubleTapToScaleEnabled;
     }
@@ -1149,6 +2202,26 @@ public class ImageViewInteractinator extends AppCompatImageView {
         return mFlingEnabled;
     }
 
+    /**
+     * Returns whether smooth transforms wait for the tiles they land on. See
+     * {@link #setHoldForTiles(boolean)}.
+     */
+    public boolean isHoldForTiles() {
+        return mHoldForTiles;
+    }
+
+    /**
+     * Returns whether an image requested with {@link #loadImage(ImageSource, OnImageLoadListener)}
+     * is still loading.
+     */
+    public boolean isImageLoading() {
+        return (mImageLoadTask != null);
+    }
+
+    public boolean isProgressiveLoading() {
+        return mProgressiveLoading;
+    }
+
     public boolean isScaleEnabled() {
         return mScaleEnabled;
     }
@@ -1158,12 +2231,10 @@ public class ImageViewInteractinator extends AppCompatImageView {
     }
 
     public boolean isTransformed() {
-        final float[] va = new float[9];
-        final float[] vb = new float[9];
-        getImageMatrixInternal().getValues(va);
+        final float[] va = getImageValuesInternal();
+        final float[] vb = mTempValues;
         getBaselineImageMatrix().getValues(vb);
         for (int i = 0; i < 9; i++) {
-            float floatDiff = Math.abs(va[i] - vb[i]);
             if (!almostEqual(va[i], vb[i])) {
                 return true;
             }
@@ -1171,47 +2242,250 @@ public class ImageViewInteractinator extends AppCompatImageView {
         return false;
     }
 
+    /**
+     * Loads an image on a background thread and displays it once it is ready. Images that
+     * support region decoding are displayed in tiled mode (see
+     * {@link #setImageSource(ImageSource)}); anything else is decoded whole. Starting a new load,
+     * or setting an image by any other means, cancels a load that is still in progress.
+     * <p>
+     * The current image stays on screen until the new one arrives. Any transform requested in
+     * the meantime (for example, one being restored from saved state) is held and applied to the
+     * new image once it is displayed.
+     * </p>
+     *
+     * @param source The source of the image to load
+     * @param listener An optional listener to notify when the load completes
+     */
+    public void loadImage(@NonNull ImageSource source, @Nullable OnImageLoadListener listener) {
+        cancelImageLoad();
+        mImageLoadTask = new ImageLoadTask(this, source, listener);
+        mImageLoadTask.start();
+    }
+
+    public void removeOnTransformChangedListener(OnTransformChangedListener listener) {
+        if (mOnTransformChangedListeners != null) {
+            mOnTransformChangedListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Restarts the counts returned by {@link #getTileUploadStats()}.
+     */
+    public void resetTileUploadStats() {
+        final Drawable drawable = getDrawable();
+        if (drawable instanceof TiledDrawable) {
+            ((TiledDrawable) drawable).resetUploadStats();
+        }
+    }
+
     public void setCompatCropToPadding(boolean cropToPadding) {
         ImageViewCompat.setCropToPadding(this, cropToPadding);
     }
 
+    /**
+     * Sets whether images loaded with {@link #loadImage(ImageSource, OnImageLoadListener)} should
+     * be decoded to fit. When enabled, the initial decode uses the content size and scale type
+     * to pick a sample size that matches the size at which the image appears at its baseline
+     * scale, and full-resolution tiles are only decoded once the image is zoomed past that
+     * density. This takes effect on the next load.
+     */
+    public void setDecodeToFit(boolean decodeToFit) {
+        mDecodeToFit = decodeToFit;
+    }
+
+    /**
+     * Sets whether pans and pinches are drawn by the compositor rather than by redrawing the
+     * image. While a gesture is in progress, the view is drawn into a hardware layer that is
+     * scaled and translated to follow the gesture, and the resulting image matrix is only set
+     * once the gesture ends. Whenever the layer would not cover all of the image that should be
+     * visible, or an edge glow is showing, the image is redrawn as usual, so what is shown does
+     * not depend on this setting. This has no effect if the view is not hardware accelerated,
+     * and the view's scale, translation, clip bounds and layer type must not be changed by
+     * others during a gesture.
+     */
+    public void setCompositedGestures(boolean compositedGestures) {
+        mCompositedGestures = compositedGestures;
+        if (!compositedGestures) {
+            endCompositing(true);
+        }
+    }
+
+    /**
+     * Sets whether smooth transforms (such as a double tap to scale) wait for the tiles they land
+     * on. A smooth transform of a tiled image always starts decoding the tiles at its
+     * destination as it begins; when this is enabled, it also holds its last frames, for up to
+     * 100 ms, until those tiles are ready, so that it lands on sharp content rather than
+     * refining a moment later.
+     */
+    public void setHoldForTiles(boolean holdForTiles) {
+        mHoldForTiles = holdForTiles;
+    }
+
+    /**
+     * Sets the image to be displayed in tiled mode. Only the tiles that intersect the visible
+     * portion of the image are decoded, at a resolution that matches the current image scale,
+     * so memory use is bounded by the size of the view rather than the size of the image.
+     * This opens the source on the calling thread; use
+     * {@link #loadImage(ImageSource, OnImageLoadListener)} to avoid blocking the main thread.
+     *
+     * @param source The source of the image, or null to clear the image
+     */
+    public void setImageSource(@Nullable ImageSource source) {
+        TiledDrawable drawable = null;
+        if (source != null) {
+            try {
+                drawable = TiledDrawable.newInstance(source);
+                drawable.setTileCache(getTileCache());
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Unable to open image source " + source, e);
+            }
+        }
+        setImageDrawable(drawable);
+        mTiledDrawable = drawable;
+    }
+
     public void setDoubleTapToScaleEnabled(boolean doubleTapToScaleEnabled) {
         mDoubleTapToScaleEnabled = doubleTapToScaleEnabled;
-        updateGestureDetector();
+        mGestureRecognizer.setDoubleTapEnabled(doubleTapToScaleEnabled);
     }
 
     public void setFlingEnabled(boolean flingEnabled) {
         mFlingEnabled = flingEnabled;
-        updateGestureDetector();
     }
 
     /** Note: Can cause current transform to be "invalid" **/
     public void setMaxScaleBreadthFactor(float maxScaleBreadthFactor) {
         mMaxScaleBreadthFactor = maxScaleBreadthFactor;
+        invalidateImageState(INVALID_FLAG_IMAGE_MAX_SCALE);
     }
 
     /** Note: Can cause current transform to be "invalid" **/
     public void setMaxScaleLengthFactor(float maxScaleLengthFactor) {
         mMaxScaleLengthFactor = maxScaleLengthFactor;
+        invalidateImageState(INVALID_FLAG_IMAGE_MAX_SCALE);
+    }
+
+    /**
+     * Sets a listener to be told the quality tier of every frame this view draws.
+     */
+    public void setOnQualityTierListener(@Nullable OnQualityTierListener listener) {
+        mOnQualityTierListener = listener;
+    }
+
+    /**
+     * Sets a listener to be told about every frame that draws newly decoded tiles, and how
+     * long those tiles waited for it.
+     */
+    public void setOnTileUploadListener(@Nullable OnTileUploadListener listener) {
+        mOnTileUploadListener = listener;
+    }
+
+    /**
+     * Sets how touch gestures track the pointers. Touch events are batched once per frame, and
+     * the frame that handles one is presented a frame or more later, so with
+     * {@link #POINTER_PREDICTION_NONE} the image visibly trails the finger during a drag or
+     * pinch. {@link #POINTER_PREDICTION_LINEAR} moves the image to where the pointers are
+     * expected to be when the frame appears instead.
+     */
+    public void setPointerPrediction(@PointerPrediction int pointerPrediction) {
+        mPointerPrediction = pointerPrediction;
+        mGestureRecognizer.setPredictionMode(pointerPrediction);
+    }
+
+    /**
+     * Sets whether images loaded with {@link #loadImage(ImageSource, OnImageLoadListener)} should
+     * be loaded progressively. When enabled, a small preview (the embedded EXIF thumbnail, or a
+     * heavily subsampled decode) is displayed as soon as it is available and is then seamlessly
+     * swapped for the full image; the image can be transformed while the preview is showing.
+     */
+    public void setProgressiveLoading(boolean progressiveLoading) {
+        mProgressiveLoading = progressiveLoading;
+    }
+
+    /**
+     * Sets the policy that chooses the quality tier each frame is drawn at. Use this to trade
+     * image quality for frame time differently than {@link #DEFAULT_QUALITY_POLICY}; for
+     * instance, to draw at {@link #QUALITY_TIER_BALANCED} during touch gestures.
+     */
+    public void setQualityPolicy(@NonNull QualityPolicy qualityPolicy) {
+        mQualityPolicy = qualityPolicy;
+        invalidateQualityTier();
     }
 
     public void setScaleEnabled(boolean scaleEnabled) {
         mScaleEnabled = scaleEnabled;
-        if (!mScaleEnabled) {
-            mScaleGestureDetector = null;
-        } else if (mScaleGestureDetector == null) {
-            mScaleGestureDetector =
-                    new ScaleGestureDetector(getContext(), new OnScaleGestureListener());
+    }
+
+    public void setScalePresets(float[] scalePresets) {
+        mScalePresets = scalePresets;
+    }
+
+    public void setScrollEnabled(boolean scrollEnabled) {
+        mScrollEnabled = scrollEnabled;
+    }
+
+    /**
+     * Sets the cache used to retain decoded tiles that are not currently visible. Passing the
+     * same cache to several views lets them share decoded tiles and a single memory budget.
+     * The view does not register the cache for memory callbacks; whoever creates it should
+     * register it once with {@link Context#registerComponentCallbacks} so that it trims itself
+     * under memory pressure, as {@link TileCache#getDefault(Context)} does for the default cache.
+     */
+    public void setTileCache(@NonNull TileCache tileCache) {
+        if (tileCache != mTileCache) {
+            mTileCache = tileCache;
+            if (mTiledDrawable != null) {
+                mTiledDrawable.setTileCache(mTileCache);
+            }
         }
     }
 
-    public void setScalePresets(float[] scalePresets) {
-        mScalePresets = scalePresets;
-    }
+    /**
+     * Limits how many newly decoded tiles each frame draws, by size, by number or both. The
+     * first draw of a tile uploads it to the GPU, so drawing a burst of tiles at once makes for
+     * a long frame; tiles beyond the budget are drawn on the following frames instead, nearest
+     * the center of the view first. Each frame draws at least one waiting tile, whatever the
+     * budget. The default is {@link TiledDrawable#DEFAULT_UPLOAD_BYTES_PER_FRAME} bytes.
+     *
+     * @param maxBytesPerFrame The most bytes of new tiles per frame, or 0 for no limit
+     * @param maxCountPerFrame The most new tiles per frame, or 0 for no limit
+     */
+    public void setTileUploadBudget(long maxBytesPerFrame, int maxCountPerFrame) {
+        mTileUploadBytesPerFrame = maxBytesPerFrame;
+        mTileUploadCountPerFrame = maxCountPerFrame;
+        invalidate();
+    }
+
+    /**
+     * Replaces the current drawable without disturbing the current transform. Unlike
+     * {@link #setImageDrawable(Drawable)}, which resets the image to its baseline, this captures
+     * the current transform in image coordinates (scaled by the ratio of the two drawables'
+     * intrinsic sizes, if they differ) and reapplies it to the new drawable, so nothing on
+     * screen jumps.
+     */
+    public void swapImageDrawable(@Nullable Drawable drawable) {
+        final boolean preserveTransform = (drawable != null &&
+                drawableHasFunctionalDimensions() &&
+                ViewCompat.isLaidOut(this) &&
+                isTransformed());
+        final int oldWidth = getDrawableFunctionalWidth();
+        final int oldHeight = getDrawableFunctionalHeight();
+        if (preserveTransform) {
+            getTransform(mSwapTransform);
+        }
 
-    public void setScrollEnabled(boolean scrollEnabled) {
-        mScrollEnabled = scrollEnabled;
-        updateGestureDetector();
+        setImageDrawable(drawable);
+
+        if (preserveTransform && drawableHasFunctionalDimensions()) {
+            final float ratioX = (float) getDrawableFunctionalWidth() / oldWidth;
+            final float ratioY = (float) getDrawableFunctionalHeight() / oldHeight;
+            mSwapTransform.mPx *= ratioX;
+            mSwapTransform.mPy *= ratioY;
+            mSwapTransform.mSx /= ratioX;
+            mSwapTransform.mSy /= ratioY;
+            mTouchPivotPoint.set(mTouchPivotPoint.x * ratioX, mTouchPivotPoint.y * ratioY);
+            mSwapTransform.transform(this);
+        }
     }
 
     public boolean smoothTransformBy(float px, float py, float dSx, float dSy, float dx, float dy) {
@@ -1240,14 +2514,37 @@ public class ImageViewInteractinator extends AppCompatImageView {
                 .transform();
     }
 
+    /**
+     * Begins a {@link Transaction}, which applies a sequence of transforms as one.
+     */
+    public Transaction beginTransaction() {
+        return new Transaction();
+    }
+
     public Transform beginTransform() {
         return new Transform(this);
     }
 
+    /**
+     * Applies a transform to the image.
+     *
+     * @return Whether the image matrix changed (or a smooth transform started). Always false
+     * for a {@link Transform#deferred(boolean) deferred} transform, which is applied on the next
+     * frame.
+     */
     public boolean transform(Transform t) {
-        if (!ViewCompat.isLaidOut(this)) {
+        if (!ViewCompat.isLaidOut(this) || (isAwaitingImageLoad() && !isViewDriven(t))) {
             mPendingTransform = new Transform(t);
+            mPendingTransaction = null;
+            return false;
+        }
+
+        if (t.mDeferred) {
+            deferTransform(t);
             return false;
+        } else if (!mTransformQueue.isEmpty()) {
+            // Keep transforms in the order they were requested
+            applyDeferredTransforms();
         }
 
         t.target(this);
@@ -1266,6 +2563,8 @@ public class ImageViewInteractinator extends AppCompatImageView {
         final boolean transformed = !getImageMatrixInternal().equals(mTempMatrix);
         if (transformed) {
             if (t.mSmooth) {
+                final long frameTimeNanos = mVsyncinator.getFrameTimeNanos();
+                handOffScaleFling(frameTimeNanos, false);
                 final float startSx = getImageScaleX();
                 final float startSy = getImageScaleY();
                 mTempPoint.set(t.mPx, t.mPy);
@@ -1282,13 +2581,14 @@ public class ImageViewInteractinator extends AppCompatImageView {
                         t.mSx,
                         t.mSy,
                         t.mX,
-                        t.mY);
+                        t.mY,
+                        frameTimeNanos);
+                prewarmTiles(mTempMatrix, t.mSx, t.mSy, startSx, startSy, startX, startY);
+                mVsyncinator.start();
+                invalidateQualityTier();
                 ViewCompat.postInvalidateOnAnimation(this);
             } else {
-                if (super.getScaleType() != ScaleType.MATRIX) {
-                    super.setScaleType(ScaleType.MATRIX);
-                }
-                super.setImageMatrix(mTempMatrix);
+                setImageMatrixInternal(mTempMatrix);
             }
         }
         return transformed;
@@ -1317,6 +2617,31 @@ public class ImageViewInteractinator extends AppCompatImageView {
                 .transform();
     }
 
+    /**
+     * Maps view points to image points in place, using the inverse of the current image matrix.
+     * The inverse is cached and only recomputed when the image matrix changes, so mapping many
+     * points (or mapping points on every touch event) costs no more than the multiplications.
+     *
+     * @param pts The points to map, as consecutive x, y pairs
+     * @return false if the image matrix is not invertible, in which case {@code pts} is
+     * unchanged
+     */
+    public boolean viewPointsToImagePoints(float[] pts) {
+        return viewPointsToImagePoints(pts, 0, pts.length / 2);
+    }
+
+    /**
+     * Maps {@code count} view points, stored as consecutive x, y pairs in {@code pts} starting at
+     * {@code offset}, to image points in place. See {@link #viewPointsToImagePoints(float[])}.
+     */
+    public boolean viewPointsToImagePoints(float[] pts, int offset, int count) {
+        if (!updateInverseImageMatrix()) {
+            return false;
+        }
+        getTransformEngine().mapViewPointsToImagePoints(mInverseImageValues, pts, offset, count);
+        return true;
+    }
+
     //endregion Methods
 
     //region Protected methods
@@ -1326,57 +2651,15 @@ public class ImageViewInteractinator extends AppCompatImageView {
             resolveTransform(t);
         }
 
-        boolean clamped = false;
-        float clampedValue = MathUtils.clamp(t.mSx, getImageMinScaleX(), getImageMaxScaleX());
-        if (!almostEqual(t.mSx, clampedValue)) {
-            t.mSx = clampedValue;
-            clamped = true;
-        }
-        clampedValue = MathUtils.clamp(t.mSy, getImageMinScaleY(), getImageMaxScaleY());
-        if (!almostEqual(t.mSy, clampedValue)) {
-            t.mSy = clampedValue;
-            clamped = true;
-        }
-
-        mImageMatrix.set(getImageMatrixInternal());
-        mImageMatrix.getValues(mTempValues);
-        if (!almostEqual(t.mSx, mTempValues[Matrix.MSCALE_X]) ||
-                !almostEqual(t.mSx, mTempValues[Matrix.MSCALE_Y])) {
-            final float deltaSx = t.mSx / mTempValues[Matrix.MSCALE_X];
-            final float deltaSy = t.mSy / mTempValues[Matrix.MSCALE_Y];
-            mImageMatrix.preScale(deltaSx, deltaSy);
-            mImageMatrix.getValues(mTempValues);
-        }
-
-        mTempPoint.set(t.mPx, t.mPy);
-        imagePointToViewPoint(mImageMatrix, mTempPoint);
-        final float mappedPx = mTempPoint.x - mTempValues[Matrix.MTRANS_X];
-        final float mappedPy = mTempPoint.y - mTempValues[Matrix.MTRANS_Y];
-
-        getScrollableInfo(mImageMatrix, mTempPoint);
-        if (Float.compare(mTempPoint.x, 0.0f) < 0) {
-            final float minX = Math.min(mTempPoint.x, 0.0f);
-            final float clampedDx = MathUtils.clamp(t.mX - mappedPx, minX, 0.0f);
-            clampedValue = mappedPx + clampedDx;
-        } else {
-            clampedValue = mTempPoint.x + mappedPx;
-        }
-        if (!almostEqual(t.mX, clampedValue)) {
-            t.mX = clampedValue;
-            clamped = true;
-        }
-
-        if (Float.compare(mTempPoint.y, 0.0f) < 0) {
-            final float minY = Math.min(mTempPoint.y, 0.0f);
-            final float clampedDy = MathUtils.clamp(t.mY - mappedPy, minY, 0.0f);
-            clampedValue = mappedPy + clampedDy;
-        } else {
-            clampedValue = mTempPoint.y + mappedPy;
-        }
-        if (!almostEqual(t.mY, clampedValue)) {
-            t.mY = clampedValue;
-            clamped = true;
-        }
+        final TransformEngine engine = getTransformEngine();
+        engine.setScaleLimits(
+                getImageMinScaleX(),
+                getImageMinScaleY(),
+                getImageMaxScaleX(),
+                getImageMaxScaleY());
+        readTransformValues(t, mEngineTransformValues);
+        final boolean clamped = engine.verify(getImageValuesInternal(), mEngineTransformValues);
+        writeTransformValues(mEngineTransformValues, t);
         return clamped;
     }
 
@@ -1406,73 +2689,20 @@ public class ImageViewInteractinator extends AppCompatImageView {
      * @param scaleType The scale type to use to compute the baseline image matrix
      * @param outMatrix Matrix in which to place the computed baseline coordinates
      */
-    @SuppressWarnings("SpellCheckingInspection")
     protected void getBaselineImageMatrix(ScaleType scaleType, Matrix outMatrix) {
         if (outMatrix == null || getDrawable() == null) {
             return;
         }
 
-        // We need to do the scaling ourselves.
-        final int dwidth = getDrawableFunctionalWidth();
-        final int dheight = getDrawableFunctionalHeight();
-
-        final int vwidth = getContentWidth();
-        final int vheight = getContentHeight();
-
-        final boolean fits = (dwidth < 0 || vwidth == dwidth)
-                && (dheight < 0 || vheight == dheight);
-
-        if (ScaleType.MATRIX == scaleType) {
-            // Use the specified matrix as-is.
-            outMatrix.set(getImageMatrix());
-        } else if (fits) {
-            // The bitmap fits exactly, no transform needed.
-            outMatrix.reset();
-        } else if (ScaleType.CENTER == scaleType) {
-            // Center bitmap in view, no scaling.
-            outMatrix.setTranslate(
-                    Math.round((vwidth - dwidth) * 0.5f),
-                    Math.round((vheight - dheight) * 0.5f));
-        } else if (ScaleType.CENTER_CROP == scaleType) {
-            float scale;
-            float dx = 0, dy = 0;
-
-            if (dwidth * vheight > vwidth * dheight) {
-                scale = (float) vheight / (float) dheight;
-                dx = (vwidth - dwidth * scale) * 0.5f;
-            } else {
-                scale = (float) vwidth / (float) dwidth;
-                dy = (vheight - dheight * scale) * 0.5f;
-            }
-
-            outMatrix.setScale(scale, scale);
-            outMatrix.postTranslate(Math.round(dx), Math.round(dy));
-        } else if (ScaleType.CENTER_INSIDE == scaleType) {
-            float scale;
-            float dx;
-            float dy;
-
-            if (dwidth <= vwidth && dheight <= vheight) {
-                scale = 1.0f;
-            } else {
-                scale = Math.min((float) vwidth / (float) dwidth,
-                        (float) vheight / (float) dheight);
-            }
-
-            dx = Math.round((vwidth - dwidth * scale) * 0.5f);
-            dy = Math.round((vheight - dheight * scale) * 0.5f);
-
-            outMatrix.setScale(scale, scale);
-            outMatrix.postTranslate(dx, dy);
-        } else {
-            // Generate the required transform.
-            mTempRectSrc.set(0.0f, 0.0f, dwidth, dheight);
-            mTempRectDst.set(0.0f, 0.0f, vwidth, vheight);
-            outMatrix.setRectToRect(
-                    mTempRectSrc,
-                    mTempRectDst,
-                    scaleTypeToScaleToFit(scaleType));
-        }
+        getBaselineImageMatrix(
+                scaleType,
+                getDrawableFunctionalWidth(),
+                getDrawableFunctionalHeight(),
+                getContentWidth(),
+                getContentHeight(),
+                getImageMatrix(),
+                outMatrix,
+                mTempValues);
     }
 
     protected int getDrawableFunctionalHeight() {
@@ -1485,6 +2715,15 @@ public class ImageViewInteractinator extends AppCompatImageView {
         return (dr == null ? 0 : Math.max(dr.getIntrinsicWidth(), 0));
     }
 
+    /**
+     * Returns the bounds of the drawable mapped through the current image matrix. Do not change
+     * this rectangle in place but make a copy.
+     */
+    protected RectF getImageBounds() {
+        updateImageBounds();
+        return mImageBounds;
+    }
+
     /**
      * Returns the view's optional matrix, amended to return a valid matrix when the scale type is
      * set to FIT_XY. This is applied to the view's drawable when it is drawn. If there is no
@@ -1495,10 +2734,16 @@ public class ImageViewInteractinator extends AppCompatImageView {
      * @return The view's optional matrix
      */
     protected Matrix getImageMatrixInternal() {
-        if (ScaleType.FIT_XY == super.getScaleType()) {
-            getBaselineImageMatrix(ScaleType.FIT_XY, mImageMatrix);
-        } else {
-            mImageMatrix.set(super.getImageMatrix());
+        if (mImageValuesGeneration != mImageMatrixGeneration) {
+            mImageValuesGeneration = mImageMatrixGeneration;
+            if (mCompositing) {
+                mImageMatrix.set(mCompositedImageMatrix);
+            } else if (ScaleType.FIT_XY == super.getScaleType()) {
+                getBaselineImageMatrix(ScaleType.FIT_XY, mImageMatrix);
+            } else {
+                mImageMatrix.set(super.getImageMatrix());
+            }
+            mImageMatrix.getValues(mImageValues);
         }
         return mImageMatrix;
     }
@@ -1559,220 +2804,707 @@ public class ImageViewInteractinator extends AppCompatImageView {
                 mImageMaxScale.set(1.0f, 1.0f);
             }
         }
-        outPoint.set(mImageMaxScale);
+        outPoint.set(mImageMaxScale);
+    }
+
+    protected void getImageMinScale(PointF outPoint) {
+        if ((mInvalidFlags & INVALID_FLAG_IMAGE_MIN_SCALE) != 0) {
+            mInvalidFlags &= ~INVALID_FLAG_IMAGE_MIN_SCALE;
+            if (drawableHasFunctionalDimensions()) {
+                getBaselineImageMatrix().getValues(mTempValues);
+                mImageMinScale.set(mTempValues[Matrix.MSCALE_X], mTempValues[Matrix.MSCALE_Y]);
+            } else {
+                mImageMinScale.set(1.0f, 1.0f);
+            }
+        }
+        outPoint.set(mImageMinScale);
+    }
+
+    protected void getImagePivot(PointF outPoint) {
+        getImagePivot(getImageMatrixInternal(), outPoint);
+    }
+
+    protected void getImagePivot(Matrix matrix, PointF outPoint) {
+        mTempPoint.set(getContentCenterX(), getContentCenterY());
+        viewPointToImagePoint(matrix, outPoint);
+    }
+
+    protected void getImageScale(PointF outPoint) {
+        final float[] values = getImageValuesInternal();
+        outPoint.set(values[Matrix.MSCALE_X], values[Matrix.MSCALE_Y]);
+    }
+
+    protected float getNextScalePreset() {
+        float next = 0.0f;
+        if (mScalePresets != null) {
+            final float minSx = getImageMinScaleX();
+            final float minSy = getImageMinScaleY();
+            final float xScaleRange = (getImageMaxScaleX() - minSx);
+            final float yScaleRange = (getImageMaxScaleY() - minSy);
+            final float relativeSx = (Float.compare(xScaleRange, 0.0f) == 0 ?
+                    0.0f :
+                    (getImageScaleX() - minSx) / xScaleRange);
+            final float relativeSy = (Float.compare(yScaleRange, 0.0f) == 0 ?
+                    0.0f :
+                    (getImageScaleY() - minSy) / yScaleRange);
+            boolean foundX = false;
+            boolean foundY = false;
+            for (final float zoomPivot : mScalePresets) {
+                if (Float.compare(zoomPivot - relativeSx, SCALE_PRESET_THRESHOLD) > 0) {
+                    foundX = true;
+                    next = zoomPivot;
+                }
+                if (Float.compare(zoomPivot - relativeSy, SCALE_PRESET_THRESHOLD) > 0) {
+                    foundY = true;
+                    next = zoomPivot;
+                }
+                if (foundX && foundY) {
+                    break;
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Called when a touch gesture begins, after the view has stopped any running animation.
+     */
+    protected void onGestureBegin(GestureRecognizer recognizer) {
+    }
+
+    /**
+     * Called when a touch gesture ends, after the view has started any fling it gives rise to.
+     * {@link GestureRecognizer#isCancelled()} tells whether the gesture was cancelled.
+     */
+    protected void onGestureEnd(GestureRecognizer recognizer) {
+    }
+
+    /**
+     * Called each time a touch gesture pans or scales, after the view has applied it.
+     */
+    protected void onGestureUpdate(GestureRecognizer recognizer) {
+    }
+
+    protected void imagePointToViewPoint(Matrix matrix, PointF point) {
+        final float[] values;
+        if (matrix == mImageMatrix) {
+            values = getImageValuesInternal();
+        } else {
+            matrix.getValues(mEngineValues);
+            values = mEngineValues;
+        }
+        mTempPts[0] = point.x;
+        mTempPts[1] = point.y;
+        getTransformEngine().imagePointsToViewPoints(values, mTempPts, 0, 1);
+        point.set(mTempPts[0], mTempPts[1]);
+    }
+
+    protected void resolveTransform(Transform t) {
+        readTransformValues(t, mEngineTransformValues);
+        getTransformEngine().resolve(getImageValuesInternal(), mEngineTransformValues);
+        writeTransformValues(mEngineTransformValues, t);
+        t.mResolved = true;
+        t.mClamped = false;
+    }
+
+    protected void viewPointToImagePoint(Matrix matrix, PointF point) {
+        mTempPts[0] = point.x;
+        mTempPts[1] = point.y;
+        if (matrix == mImageMatrix) {
+            // The current image matrix (see getImageMatrixInternal); use the cached inverse
+            if (!updateInverseImageMatrix()) {
+                return;
+            }
+            getTransformEngine().mapViewPointsToImagePoints(mInverseImageValues, mTempPts, 0, 1);
+        } else {
+            matrix.getValues(mEngineValues);
+            if (!getTransformEngine().viewPointsToImagePoints(mEngineValues, mTempPts, 0, 1)) {
+                return;
+            }
+        }
+        point.set(mTempPts[0], mTempPts[1]);
+    }
+
+    //endregion Protected methods
+
+    //region Private methods
+
+    private boolean almostEqual(float a, float b) {
+        return Math.abs(a - b) < FLOAT_EPSILON;
+    }
+
+    /**
+     * Merges the transforms deferred since the last frame into one and applies it.
+     */
+    private void applyDeferredTransforms() {
+        applyTransformQueue(mTransformQueue, mDeferredTransform);
+    }
+
+    /**
+     * Reduces the transforms in {@code queue} to one, which is stored in {@code t} and applied,
+     * and clears the queue.
+     */
+    private boolean applyTransformQueue(TransformQueue queue, Transform t) {
+        final float[] values = getImageValuesInternal();
+        if (!queue.resolve(getTransformEngine(), values, mEngineTransformValues)) {
+            return false;
+        }
+        queue.clear();
+        writeTransformValues(mEngineTransformValues, t);
+        t.mScaleRelative = t.mMoveRelative = false;
+        t.mResolved = true;
+        t.mVerified = t.mClamped = false;
+        return transform(t);
+    }
+
+    private boolean commitTransaction(Transaction transaction) {
+        if (!ViewCompat.isLaidOut(this) || isAwaitingImageLoad()) {
+            mPendingTransform = null;
+            mPendingTransaction = transaction;
+            return false;
+        }
+        if (!mTransformQueue.isEmpty()) {
+            // Keep transforms in the order they were requested
+            applyDeferredTransforms();
+        }
+        return applyTransformQueue(transaction.mQueue, transaction.mTransform);
+    }
+
+    private void deferTransform(Transform t) {
+        readTransformValues(t, mEngineTransformValues);
+        mTransformQueue.add(mEngineTransformValues);
+
+        // The last transform requested decides how the merged one is applied
+        mDeferredTransform.smooth(t.mSmooth).verify(t.mVerify).touchEvent(t.mTouchEvent);
+        if (!mDeferredTransformPosted) {
+            mDeferredTransformPosted = true;
+            ViewCompat.postOnAnimation(this, mDeferredTransformApplier);
+        }
+    }
+
+    private float getContentCenterX() {
+        return (getPaddingLeft() + getWidth() - getPaddingRight()) * 0.5f;
+    }
+
+    private float getContentCenterY() {
+        return (getPaddingTop() + getHeight() - getPaddingBottom()) * 0.5f;
+    }
+
+    private int getContentHeight() {
+        return getHeight() - getPaddingTop() - getPaddingBottom();
+    }
+
+    private int getContentWidth() {
+        return getWidth() - getPaddingLeft() - getPaddingRight();
+    }
+
+    /**
+     * Returns the translation limits of an image drawn with {@code matrix}. See
+     * {@link TransformEngine#getScrollableInfo(float[], float[])}.
+     */
+    private void getScrollableInfo(Matrix matrix, PointF outPoint) {
+        if (matrix == mImageMatrix) {
+            updateImageBounds();
+            outPoint.set(mScrollableInfo);
+        } else {
+            matrix.getValues(mEngineValues);
+            getTransformEngine().getScrollableInfo(mEngineValues, mTempPts);
+            outPoint.set(mTempPts[0], mTempPts[1]);
+        }
+    }
+
+    /**
+     * Returns the values of the current image matrix. Do not change this array in place.
+     */
+    private float[] getImageValuesInternal() {
+        getImageMatrixInternal();
+        return mImageValues;
+    }
+
+    /**
+     * Returns the shared {@link TransformEngine}, updated to reflect the view's current
+     * geometry. This only copies a handful of values, so it is cheap enough to call for every
+     * transform.
+     */
+    private TransformEngine getTransformEngine() {
+        final TransformEngine engine = mTransformEngine;
+        final Drawable d = getDrawable();
+        if (d == null) {
+            engine.setDrawableSize(0.0f, 0.0f);
+        } else {
+            engine.setDrawableSize(d.getIntrinsicWidth(), d.getIntrinsicHeight());
+        }
+        engine.setContentBounds(
+                getPaddingLeft(),
+                getPaddingTop(),
+                getContentWidth(),
+                getContentHeight());
+        engine.setCropToPadding(getCompatCropToPadding());
+        final boolean rtl =
+                (ViewCompat.getLayoutDirection(this) == ViewCompat.LAYOUT_DIRECTION_RTL);
+        switch (mScaleType) {
+            case FIT_START:
+                engine.setAlignment(
+                        rtl ? TransformEngine.ALIGN_END : TransformEngine.ALIGN_START,
+                        TransformEngine.ALIGN_START);
+                break;
+            case FIT_END:
+                engine.setAlignment(
+                        rtl ? TransformEngine.ALIGN_START : TransformEngine.ALIGN_END,
+                        TransformEngine.ALIGN_END);
+                break;
+            default:
+                engine.setAlignment(TransformEngine.ALIGN_CENTER, TransformEngine.ALIGN_CENTER);
+        }
+        return engine;
+    }
+
+    /**
+     * Stops any zoom momentum, handing its velocity to the Transforminator so that a smooth
+     * transform started now continues the motion.
+     *
+     * @param settle Whether to bring the image back within the scale limits if the momentum
+     *               has carried it past one. Its overshoot frames are applied unverified, so
+     *               otherwise nothing would, unless a smooth transform is about to start anyway.
+     */
+    private void handOffScaleFling(long frameTimeNanos, boolean settle) {
+        if (mScaleFling.computeScale(frameTimeNanos)) {
+            final float px = mScaleFling.getPx();
+            final float py = mScaleFling.getPy();
+            final float sx = mScaleFling.getCurrentSx();
+            final float sy = mScaleFling.getCurrentSy();
+            final boolean overScaled = mScaleFling.isOverScaled();
+            mTransforminator.setVelocity(
+                    px,
+                    py,
+                    mScaleFling.getVelocitySx(),
+                    mScaleFling.getVelocitySy(),
+                    0.0f,
+                    0.0f,
+                    frameTimeNanos);
+            mScaleFling.forceFinished();
+            if (settle && overScaled) {
+                mSettleTransform.recycle()
+                        .pivot(px, py)
+                        .scale(sx, sy)
+                        .touchEvent(true)
+                        .transform();
+            }
+        }
+    }
+
+    /**
+     * Turns bitmap filtering off for the drawable at {@link #QUALITY_TIER_FAST} and gives it back
+     * whatever setting it had at the other tiers. Drawables such as BitmapDrawable invalidate
+     * themselves whenever filtering is set, so this is only called when the tier changes and
+     * never from {@link #onDraw(Canvas)}.
+     */
+    private void applyFilterBitmap(@QualityTier int tier) {
+        final Drawable drawable = getDrawable();
+        if (tier != QUALITY_TIER_FAST || drawable == null) {
+            restoreFilterBitmap();
+        } else if (drawable != mUnfilteredDrawable) {
+            restoreFilterBitmap();
+            mUnfilteredDrawable = drawable;
+            mSavedFilterBitmap = isFilterBitmap(drawable);
+            drawable.setFilterBitmap(false);
+        }
+    }
+
+    /**
+     * Returns what is moving the image, as a combination of the {@code MOTION_*} flags.
+     */
+    private @Motion int getMotion() {
+        int motion = 0;
+        if (mGestureRecognizer.isTransforming()) {
+            motion |= MOTION_GESTURE;
+        }
+        if (!mOverScroller.isFinished() || !mScaleFling.isFinished()) {
+            motion |= MOTION_FLING;
+        }
+        if (!mTransforminator.isFinished()) {
+            motion |= MOTION_ANIMATION;
+        }
+        return motion;
+    }
+
+    /**
+     * Schedules a frame if the quality policy would now draw at a different tier than the last
+     * frame was drawn at, applying the new tier's bitmap filtering first; in particular, once the
+     * image starts moving, and once it comes to rest after frames drawn at a cheaper tier.
+     */
+    private void invalidateQualityTier() {
+        final @QualityTier int tier = resolveQualityTier();
+        if (tier != mQualityTier) {
+            applyFilterBitmap(tier);
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+    }
+
+    /**
+     * Returns whether {@code drawable} filters its bitmap. Before Marshmallow, Drawable itself
+     * can't say, so drawables other than the ones this view creates are assumed to filter.
+     */
+    private static boolean isFilterBitmap(@NonNull Drawable drawable) {
+        if (drawable instanceof TiledDrawable) {
+            return ((TiledDrawable) drawable).isFilterBitmap();
+        } else if (drawable instanceof BitmapDrawable) {
+            return ((BitmapDrawable) drawable).getPaint().isFilterBitmap();
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return drawable.isFilterBitmap();
+        }
+        return true;
     }
 
-    protected void getImageMinScale(PointF outPoint) {
-        if ((mInvalidFlags & INVALID_FLAG_IMAGE_MIN_SCALE) != 0) {
-            mInvalidFlags &= ~INVALID_FLAG_IMAGE_MIN_SCALE;
-            if (drawableHasFunctionalDimensions()) {
-                getBaselineImageMatrix().getValues(mTempValues);
-                mImageMinScale.set(mTempValues[Matrix.MSCALE_X], mTempValues[Matrix.MSCALE_Y]);
-            } else {
-                mImageMinScale.set(1.0f, 1.0f);
-            }
+    /**
+     * Gives the drawable that {@link #applyFilterBitmap(int)} turned bitmap filtering off for
+     * the setting it had before.
+     */
+    private void restoreFilterBitmap() {
+        if (mUnfilteredDrawable != null) {
+            final Drawable drawable = mUnfilteredDrawable;
+            mUnfilteredDrawable = null;
+            drawable.setFilterBitmap(mSavedFilterBitmap);
         }
-        outPoint.set(mImageMinScale);
     }
 
-    protected void getImagePivot(PointF outPoint) {
-        getImagePivot(getImageMatrixInternal(), outPoint);
+    private @QualityTier int resolveQualityTier() {
+        return mQualityPolicy.getQualityTier(this, getMotion());
     }
 
-    protected void getImagePivot(Matrix matrix, PointF outPoint) {
-        mTempPoint.set(getContentCenterX(), getContentCenterY());
-        viewPointToImagePoint(matrix, outPoint);
+    /**
+     * Returns whether a fling, zoom momentum or a smooth transform is in progress.
+     */
+    private boolean isAnimating() {
+        return !mOverScroller.isFinished() ||
+                !mScaleFling.isFinished() ||
+                !mTransforminator.isFinished();
     }
 
-    protected void getImageScale(PointF outPoint) {
-        getImageMatrixInternal().getValues(mTempValues);
-        outPoint.set(mTempValues[Matrix.MSCALE_X], mTempValues[Matrix.MSCALE_Y]);
+    /**
+     * Notifies the transform changed listeners if the transform state has changed since they
+     * were last notified. Runs at most once per frame, from the animation callbacks of the frame
+     * after the change and ahead of its draw pass.
+     */
+    private void dispatchTransformChanged() {
+        if (mOnTransformChangedListeners == null || mOnTransformChangedListeners.isEmpty() ||
+                mTransformSnapshotGeneration == mImageMatrixGeneration) {
+            return;
+        }
+        if (!ViewCompat.isLaidOut(this)) {
+            // The image matrix is meaningless until layout, which invalidates it again
+            return;
+        }
+        mTransformSnapshotGeneration = mImageMatrixGeneration;
+
+        final ScaleType scaleType = mScaleType;
+        final int imageWidth = getDrawableFunctionalWidth();
+        final int imageHeight = getDrawableFunctionalHeight();
+        getImagePivot(mTempPoint);
+        final float pivotX = mTempPoint.x;
+        final float pivotY = mTempPoint.y;
+        getImageScale(mTempPoint);
+        final float scaleX = mTempPoint.x;
+        final float scaleY = mTempPoint.y;
+        getImageMinScale(mTempPoint);
+        final float minScaleX = mTempPoint.x;
+        final float minScaleY = mTempPoint.y;
+        getImageMaxScale(mTempPoint);
+        final float maxScaleX = mTempPoint.x;
+        final float maxScaleY = mTempPoint.y;
+        if (mTransformSnapshot != null && mTransformSnapshot.matches(
+                scaleType,
+                imageWidth,
+                imageHeight,
+                pivotX,
+                pivotY,
+                scaleX,
+                scaleY,
+                minScaleX,
+                minScaleY,
+                maxScaleX,
+                maxScaleY)) {
+            return;
+        }
+
+        mTransformSnapshot = new TransformSnapshot(
+                scaleType,
+                imageWidth,
+                imageHeight,
+                pivotX,
+                pivotY,
+                scaleX,
+                scaleY,
+                minScaleX,
+                minScaleY,
+                maxScaleX,
+                maxScaleY);
+
+        // Copy the listeners so that they can remove themselves while being notified
+        @SuppressWarnings("unchecked")
+        final List<OnTransformChangedListener> listeners =
+                (List<OnTransformChangedListener>) mOnTransformChangedListeners.clone();
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onTransformChanged(this, mTransformSnapshot);
+        }
     }
 
-    protected float getNextScalePreset() {
-        float next = 0.0f;
-        if (mScalePresets != null) {
-            final float minSx = getImageMinScaleX();
-            final float minSy = getImageMinScaleY();
-            final float xScaleRange = (getImageMaxScaleX() - minSx);
-            final float yScaleRange = (getImageMaxScaleY() - minSy);
-            final float relativeSx = (Float.compare(xScaleRange, 0.0f) == 0 ?
-                    0.0f :
-                    (getImageScaleX() - minSx) / xScaleRange);
-            final float relativeSy = (Float.compare(yScaleRange, 0.0f) == 0 ?
-                    0.0f :
-                    (getImageScaleY() - minSy) / yScaleRange);
-            boolean foundX = false;
-            boolean foundY = false;
-            for (final float zoomPivot : mScalePresets) {
-                if (Float.compare(zoomPivot - relativeSx, SCALE_PRESET_THRESHOLD) > 0) {
-                    foundX = true;
-                    next = zoomPivot;
-                }
-                if (Float.compare(zoomPivot - relativeSy, SCALE_PRESET_THRESHOLD) > 0) {
-                    foundY = true;
-                    next = zoomPivot;
-                }
-                if (foundX && foundY) {
-                    break;
-                }
-            }
+    /**
+     * Invalidates the given cached values and starts a new image matrix generation, which
+     * invalidates everything derived from the image matrix (its values, inverse, mapped bounds
+     * and scrollable info). Called whenever something that ImageView uses to compute its draw
+     * matrix changes; nothing derived from the image matrix is recomputed until the next time
+     * it is needed.
+     */
+    private void invalidateImageState(int flags) {
+        mInvalidFlags |= flags;
+        mImageMatrixGeneration++;
+        if (mOnTransformChangedListeners != null &&
+                !mOnTransformChangedListeners.isEmpty() &&
+                !mTransformChangePosted) {
+            mTransformChangePosted = true;
+            ViewCompat.postOnAnimation(this, mTransformChangeNotifier);
         }
-        return next;
     }
 
-    protected void imagePointToViewPoint(Matrix matrix, PointF point) {
-        mTempPts[0] = point.x;
-        mTempPts[1] = point.y;
-        matrix.mapPoints(mTempPts);
-        if (getCompatCropToPadding()) {
-            mTempPts[0] += getPaddingLeft();
-            mTempPts[1] += getPaddingTop();
+    /**
+     * Starts drawing gesture transforms through view properties, if enabled. Until
+     * {@link #endCompositing(boolean)}, the image matrix that transforms produce is only recorded
+     * (see {@link #getImageMatrixInternal()}) and ImageView keeps drawing with the matrix it had
+     * when compositing started; the difference between the two is applied as a scale and
+     * translation of the view's hardware layer, which costs no redraw.
+     */
+    private void startCompositing() {
+        if (!mCompositedGestures || mCompositing || !isHardwareAccelerated()) {
+            return;
         }
-        point.set(mTempPts[0], mTempPts[1]);
+        mCompositedImageMatrix.set(getImageMatrixInternal());
+        mCompositing = true;
+        mSavedLayerType = getLayerType();
+        mSavedClipBounds = ViewCompat.getClipBounds(this);
+        if (mSavedLayerType != LAYER_TYPE_HARDWARE) {
+            setLayerType(LAYER_TYPE_HARDWARE, null);
+        }
+        resetCompositedTransform();
     }
 
-    protected void resolveTransform(Transform t) {
-        if (Float.compare(t.mPx, USE_DEFAULT) == 0) {
-            t.mPx = getImagePivotX();
-        }
-        if (Float.compare(t.mPy, USE_DEFAULT) == 0) {
-            t.mPy = getImagePivotY();
-        }
-        if (Float.compare(t.mSx, USE_DEFAULT) == 0) {
-            t.mSx = getImageScaleX();
-        } else if (t.mScaleRelative) {
-            t.mSx = getImageScaleX() * t.mSx;
-        }
-        if (Float.compare(t.mSy, USE_DEFAULT) == 0) {
-            t.mSy = getImageScaleY();
-        } else if (t.mScaleRelative) {
-            t.mSy = getImageScaleY() * t.mSy;
-        }
-        if (t.mMoveRelative) {
-            mTempPoint.set(t.mPx, t.mPy);
-            imagePointToViewPoint(getImageMatrixInternal(), mTempPoint);
-            t.mX = mTempPoint.x + (Float.compare(t.mX, USE_DEFAULT) == 0 ? 0.0f : t.mX);
-            t.mY = mTempPoint.y + (Float.compare(t.mY, USE_DEFAULT) == 0 ? 0.0f : t.mY);
+    /**
+     * Stops compositing gesture transforms.
+     *
+     * @param commit Whether to set the recorded image matrix on ImageView. If false, the
+     * recorded matrix is discarded, for when the image or scale type is about to be replaced.
+     */
+    private void endCompositing(boolean commit) {
+        if (!mCompositing) {
+            return;
+        }
+        mCompositing = false;
+        setScaleX(1.0f);
+        setScaleY(1.0f);
+        setTranslationX(0.0f);
+        setTranslationY(0.0f);
+        ViewCompat.setClipBounds(this, mSavedClipBounds);
+        if (mSavedLayerType != LAYER_TYPE_HARDWARE) {
+            setLayerType(mSavedLayerType, null);
+        }
+        mSavedClipBounds = null;
+        if (commit) {
+            setImageMatrixInternal(mCompositedImageMatrix);
         } else {
-            if (Float.compare(t.mX, USE_DEFAULT) == 0) {
-                t.mX = getContentCenterX();
-            }
-            if (Float.compare(t.mY, USE_DEFAULT) == 0) {
-                t.mY = getContentCenterY();
-            }
+            invalidateImageState(0);
         }
-        t.mResolved = true;
-        t.mClamped = false;
     }
 
-    protected void viewPointToImagePoint(Matrix matrix, PointF point) {
-        mTempPts[0] = point.x;
-        mTempPts[1] = point.y;
-        if (getCompatCropToPadding()) {
-            mTempPts[0] -= getPaddingLeft();
-            mTempPts[1] -= getPaddingTop();
+    /**
+     * Sets the recorded image matrix on ImageView, which redraws the layer, and clears the view
+     * properties that stood in for it.
+     */
+    private void resetCompositedTransform() {
+        if (!mCompositing) {
+            return;
         }
-        matrix.invert(mTempMatrix);
-        mTempMatrix.mapPoints(mTempPts);
-        point.set(mTempPts[0], mTempPts[1]);
+        mCompositing = false;
+        setImageMatrixInternal(mCompositedImageMatrix);
+        mCompositing = true;
+
+        final float[] values = getImageValuesInternal();
+        mCommittedScaleX = values[Matrix.MSCALE_X];
+        mCommittedScaleY = values[Matrix.MSCALE_Y];
+        mCompositePts[0] = 0.0f;
+        mCompositePts[1] = 0.0f;
+        getTransformEngine().imagePointsToViewPoints(values, mCompositePts, 0, 1);
+        mCommittedOriginX = mCompositePts[0];
+        mCommittedOriginY = mCompositePts[1];
+
+        setScaleX(1.0f);
+        setScaleY(1.0f);
+        setTranslationX(0.0f);
+        setTranslationY(0.0f);
+        ViewCompat.setClipBounds(this, mSavedClipBounds);
     }
 
-    //endregion Protected methods
+    /**
+     * Maps the layer drawn with the committed image matrix onto the recorded one. The layer only
+     * holds what was visible when it was drawn, so if the recorded matrix would reveal part of
+     * the image the layer doesn't have (or an edge glow, which must not be scaled with the
+     * image, is showing), the recorded matrix is committed and the layer redrawn instead. What
+     * is shown is thus always exactly what drawing with the recorded matrix would show.
+     */
+    private void updateCompositedTransform() {
+        final float[] values = getImageValuesInternal();
+        final float scaleX = values[Matrix.MSCALE_X] / mCommittedScaleX;
+        final float scaleY = values[Matrix.MSCALE_Y] / mCommittedScaleY;
+        mCompositePts[0] = 0.0f;
+        mCompositePts[1] = 0.0f;
+        mCompositePts[2] = getDrawableFunctionalWidth();
+        mCompositePts[3] = getDrawableFunctionalHeight();
+        getTransformEngine().imagePointsToViewPoints(values, mCompositePts, 0, 2);
+
+        // The layer maps to the view as x' = scale * x + offset
+        final float offsetX = mCompositePts[0] - scaleX * mCommittedOriginX;
+        final float offsetY = mCompositePts[1] - scaleY * mCommittedOriginY;
+
+        if (!isEdgeGlowFinished() ||
+                !isCompositeCovered(scaleX, offsetX, scaleY, offsetY)) {
+            resetCompositedTransform();
+            return;
+        }
 
-    //region Private methods
+        // View properties scale around the view's pivot
+        setScaleX(scaleX);
+        setScaleY(scaleY);
+        setTranslationX(offsetX - getPivotX() * (1.0f - scaleX));
+        setTranslationY(offsetY - getPivotY() * (1.0f - scaleY));
 
-    private boolean almostEqual(float a, float b) {
-        return Math.abs(a - b) < FLOAT_EPSILON;
+        // Keep the layer within the view's own bounds
+        final int width = getWidth();
+        final int height = getHeight();
+        final float clipLeft = (mSavedClipBounds == null ? 0 : mSavedClipBounds.left);
+        final float clipTop = (mSavedClipBounds == null ? 0 : mSavedClipBounds.top);
+        final float clipRight = (mSavedClipBounds == null ? width : mSavedClipBounds.right);
+        final float clipBottom = (mSavedClipBounds == null ? height : mSavedClipBounds.bottom);
+        mCompositeClipBounds.set(
+                (int) Math.ceil((clipLeft - offsetX) / scaleX),
+                (int) Math.ceil((clipTop - offsetY) / scaleY),
+                (int) Math.floor((clipRight - offsetX) / scaleX),
+                (int) Math.floor((clipBottom - offsetY) / scaleY));
+        ViewCompat.setClipBounds(this, mCompositeClipBounds);
     }
 
-    private float getContentCenterX() {
-        return (getPaddingLeft() + getWidth() - getPaddingRight()) * 0.5f;
+    /**
+     * Returns whether the layer, mapped onto the view with the given scale and offset, covers
+     * every part of the image that the recorded image matrix shows (and the whole view if it has
+     * a background, which is scaled with the layer). mCompositePts holds the image bounds
+     * mapped through the recorded matrix.
+     */
+    private boolean isCompositeCovered(
+            float scaleX,
+            float offsetX,
+            float scaleY,
+            float offsetY) {
+        final int width = getWidth();
+        final int height = getHeight();
+        final boolean crop = getCompatCropToPadding();
+        final float left = (crop ? getPaddingLeft() : 0.0f);
+        final float top = (crop ? getPaddingTop() : 0.0f);
+        final float right = (crop ? width - getPaddingRight() : width);
+        final float bottom = (crop ? height - getPaddingBottom() : height);
+
+        if (getBackground() != null && !(
+                isIntervalCovered(0.0f, width, offsetX, scaleX * width + offsetX) &&
+                isIntervalCovered(0.0f, height, offsetY, scaleY * height + offsetY))) {
+            return false;
+        }
+
+        final float visibleLeft = Math.max(Math.min(mCompositePts[0], mCompositePts[2]), left);
+        final float visibleRight = Math.min(Math.max(mCompositePts[0], mCompositePts[2]), right);
+        final float visibleTop = Math.max(Math.min(mCompositePts[1], mCompositePts[3]), top);
+        final float visibleBottom =
+                Math.min(Math.max(mCompositePts[1], mCompositePts[3]), bottom);
+        if (visibleLeft >= visibleRight || visibleTop >= visibleBottom) {
+            // No part of the image is visible
+            return true;
+        }
+        return isIntervalCovered(
+                visibleLeft,
+                visibleRight,
+                scaleX * left + offsetX,
+                scaleX * right + offsetX) &&
+                isIntervalCovered(
+                        visibleTop,
+                        visibleBottom,
+                        scaleY * top + offsetY,
+                        scaleY * bottom + offsetY);
     }
 
-    private float getContentCenterY() {
-        return (getPaddingTop() + getHeight() - getPaddingBottom()) * 0.5f;
+    private boolean isEdgeGlowFinished() {
+        if (mEdgeGlow != null) {
+            for (int i = 0; i < mEdgeGlow.size(); i++) {
+                if (!mEdgeGlow.valueAt(i).isFinished()) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
-    private int getContentHeight() {
-        return getHeight() - getPaddingTop() - getPaddingBottom();
+    private static boolean isIntervalCovered(float start, float end, float from, float to) {
+        return from <= start + COMPOSITE_EPSILON && to >= end - COMPOSITE_EPSILON;
     }
 
-    private int getContentWidth() {
-        return getWidth() - getPaddingLeft() - getPaddingRight();
+    /**
+     * Sets the image matrix applied by ImageView; every transform ends up here.
+     */
+    private void setImageMatrixInternal(Matrix matrix) {
+        if (mCompositing) {
+            mCompositedImageMatrix.set(matrix);
+            invalidateImageState(0);
+            updateCompositedTransform();
+            return;
+        }
+        if (super.getScaleType() != ScaleType.MATRIX) {
+            super.setScaleType(ScaleType.MATRIX);
+        }
+        super.setImageMatrix(matrix);
+        invalidateImageState(0);
     }
 
     /**
-     * Returns the index of the first pointer in a MotionEvent that is currently down.
-     * @param event A MotionEvent
-     * @return The index of the first pointer in {@code event} that is currently down, or
-     * -1 if no pointers are down
+     * Recomputes the inverse of the current image matrix if the image matrix has changed since
+     * it was last computed.
+     *
+     * @return Whether the current image matrix is invertible
      */
-    private int getPrimaryPointerIndex(MotionEvent event) {
-        final int count = event.getPointerCount();
-        if (count > 0) {
-            final int action = event.getActionMasked();
-            if ((action == MotionEvent.ACTION_UP ||
-                    action == MotionEvent.ACTION_POINTER_UP) &&
-                    event.getActionIndex() == 0) {
-                return (count > 1 ? 1 : -1);
-            } else {
-                return 0;
+    private boolean updateInverseImageMatrix() {
+        if (mInverseImageMatrixGeneration != mImageMatrixGeneration) {
+            mInverseImageMatrixGeneration = mImageMatrixGeneration;
+            mImageMatrixInvertible = getImageMatrixInternal().invert(mInverseImageMatrix);
+            if (mImageMatrixInvertible) {
+                mInverseImageMatrix.getValues(mInverseImageValues);
             }
-        } else {
-            return -1;
         }
+        return mImageMatrixInvertible;
     }
 
-    /*
-     * TODO Mention how if inX or inY < 0, it's the minimum translation allowed.
-     * If > 0, then it's a set translation and is not scrollable.
+    /**
+     * Recomputes the mapped bounds and scrollable info of the image if the image matrix has
+     * changed since they were last computed.
      */
-    private void getScrollableInfo(Matrix matrix, PointF outPoint) {
-        if (drawableHasFunctionalDimensions()) {
-            final Drawable d = getDrawable();
-            mTempRectSrc.set(0.0f, 0.0f, d.getIntrinsicWidth(), d.getIntrinsicHeight());
-            matrix.mapRect(mTempRectDst, mTempRectSrc);
-            final float xDiff = getContentWidth() - mTempRectDst.width();
-            if (Float.compare(xDiff, 0.0f) > 0) {
-                // The mapped image is narrower than the content area
-                switch (mScaleType) {
-                    case FIT_START:
-                        outPoint.x = (ViewCompat.getLayoutDirection(this) ==
-                                ViewCompat.LAYOUT_DIRECTION_RTL ?
-                                xDiff :
-                                0.0f);
-                        break;
-                    case FIT_END:
-                        outPoint.x = (ViewCompat.getLayoutDirection(this) ==
-                                ViewCompat.LAYOUT_DIRECTION_RTL ?
-                                0.0f :
-                                xDiff);
-                        break;
-                    default:
-                        outPoint.x = xDiff * 0.5f;
-                }
-            } else {
-                outPoint.x = xDiff;
-            }
-            final float yDiff = getContentHeight() - mTempRectDst.height();
-            if (Float.compare(yDiff, 0.0f) > 0) {
-                // The mapped image is shorter than the content area
-                switch (mScaleType) {
-                    case FIT_START:
-                        outPoint.y = 0.0f;
-                        break;
-                    case FIT_END:
-                        outPoint.y = yDiff;
-                        break;
-                    default:
-                        outPoint.y = yDiff * 0.5f;
-                }
-            } else {
-                outPoint.y = yDiff;
-            }
-        } else {
-            outPoint.set(0.0f, 0.0f);
+    private void updateImageBounds() {
+        if (mImageBoundsGeneration != mImageMatrixGeneration) {
+            final float[] values = getImageValuesInternal();
+            mImageBoundsGeneration = mImageMatrixGeneration;
+            final TransformEngine engine = getTransformEngine();
+            engine.getScrollableInfo(values, mTempPts);
+            mScrollableInfo.set(mTempPts[0], mTempPts[1]);
+            Matrices.mapRect(
+                    values,
+                    0.0f,
+                    0.0f,
+                    getDrawableFunctionalWidth(),
+                    getDrawableFunctionalHeight(),
+                    mTempBounds);
+            mImageBounds.set(mTempBounds[0], mTempBounds[1], mTempBounds[2], mTempBounds[3]);
         }
     }
 
@@ -1783,6 +3515,17 @@ public class ImageViewInteractinator extends AppCompatImageView {
             int defStyleAttr,
             int defStyleRes) {
         final Initializinator initializinator = new Initializinator(context);
+        final ViewConfiguration configuration = ViewConfiguration.get(context);
+        final int touchSlop = configuration.getScaledTouchSlop();
+        mGestureRecognizer.setTouchSlop(touchSlop);
+        mGestureRecognizer.setMinSpan(2 * touchSlop);
+        mGestureRecognizer.setDoubleTapSlop(configuration.getScaledDoubleTapSlop());
+        mGestureRecognizer.setDoubleTapTimeoutNanos(
+                TimeUnit.MILLISECONDS.toNanos(ViewConfiguration.getDoubleTapTimeout()));
+        mGestureRecognizer.setFlingVelocities(
+                configuration.getScaledMinimumFlingVelocity(),
+                configuration.getScaledMaximumFlingVelocity());
+        mGestureRecognizer.setFrameClock(mVsyncinator);
         TypedArray a = context.obtainStyledAttributes(
                 attrs,
                 R.styleable.ImageViewInteractinator,
@@ -1791,6 +3534,12 @@ public class ImageViewInteractinator extends AppCompatImageView {
         setCompatCropToPadding(a.getBoolean(
                 R.styleable.ImageViewInteractinator_compatCropToPadding,
                 false));
+        setCompositedGestures(a.getBoolean(
+                R.styleable.ImageViewInteractinator_compositedGestures,
+                false));
+        setDecodeToFit(a.getBoolean(
+                R.styleable.ImageViewInteractinator_decodeToFit,
+                false));
         setDoubleTapToScaleEnabled(a.getBoolean(
                 R.styleable.ImageViewInteractinator_doubleTapToScaleEnabled,
                 true));
@@ -1800,9 +3549,18 @@ public class ImageViewInteractinator extends AppCompatImageView {
         setMaxScaleLengthFactor(a.getFloat(
                 R.styleable.ImageViewInteractinator_maxScaleLengthFactor,
                 4.0f));
+        setPointerPrediction(a.getInt(
+                R.styleable.ImageViewInteractinator_pointerPrediction,
+                POINTER_PREDICTION_NONE));
+        setProgressiveLoading(a.getBoolean(
+                R.styleable.ImageViewInteractinator_progressiveLoading,
+                false));
         setFlingEnabled(a.getBoolean(
                 R.styleable.ImageViewInteractinator_flingEnabled,
                 true));
+        setHoldForTiles(a.getBoolean(
+                R.styleable.ImageViewInteractinator_holdForTiles,
+                false));
         setScaleEnabled(a.getBoolean(
                 R.styleable.ImageViewInteractinator_scaleEnabled,
                 true));
@@ -1839,48 +3597,329 @@ public class ImageViewInteractinator extends AppCompatImageView {
         }
     }
 
-    private static Matrix.ScaleToFit scaleTypeToScaleToFit(ScaleType scaleType) {
-        if (scaleType == null) {
-            return null;
-        } else switch (scaleType) {
-            case FIT_CENTER:
-                return Matrix.ScaleToFit.CENTER;
-            case FIT_END:
-                return Matrix.ScaleToFit.END;
-            case FIT_START:
-                return Matrix.ScaleToFit.START;
-            case FIT_XY:
-                return Matrix.ScaleToFit.FILL;
-            default:
-                return null;
+    /**
+     * Computes the baseline image matrix for a drawable of the given size in a content area of
+     * the given size. This does not touch any view state, so it can be used off the main thread
+     * to size a decode before the drawable even exists.
+     *
+     * @param imageMatrix The matrix to use as-is when {@code scaleType} is MATRIX
+     */
+    @SuppressWarnings("SpellCheckingInspection")
+    private static void getBaselineImageMatrix(
+            ScaleType scaleType,
+            int dwidth,
+            int dheight,
+            int vwidth,
+            int vheight,
+            Matrix imageMatrix,
+            Matrix outMatrix,
+            float[] tempValues) {
+        if (ScaleType.MATRIX == scaleType) {
+            // Use the specified matrix as-is.
+            outMatrix.set(imageMatrix);
+        } else {
+            ScaleMode.valueOf(scaleType.name())
+                    .getBaselineMatrix(dwidth, dheight, vwidth, vheight, tempValues);
+            outMatrix.setValues(tempValues);
         }
     }
 
     private void convertTransformToMatrix(Transform t, Matrix outMatrix) {
-        final Matrix matrix = getImageMatrixInternal();
-        outMatrix.set(matrix);
-        outMatrix.getValues(mTempValues);
-        final float deltaSx = t.mSx / mTempValues[Matrix.MSCALE_X];
-        final float deltaSy = t.mSy / mTempValues[Matrix.MSCALE_Y];
-        outMatrix.preScale(deltaSx, deltaSy, t.mPx, t.mPy);
-        mTempPoint.set(t.mPx, t.mPy);
-        imagePointToViewPoint(outMatrix, mTempPoint);
-        final float deltaTx = t.mX - mTempPoint.x;
-        final float deltaTy = t.mY - mTempPoint.y;
-        outMatrix.postTranslate(deltaTx, deltaTy);
-    }
-
-    private void updateGestureDetector() {
-        if (!mScrollEnabled && !mFlingEnabled && !mDoubleTapToScaleEnabled) {
-            mGestureDetector = null;
+        readTransformValues(t, mEngineTransformValues);
+        getTransformEngine().toMatrix(
+                getImageValuesInternal(),
+                mEngineTransformValues,
+                mEngineValues);
+        outMatrix.setValues(mEngineValues);
+    }
+
+    private static void readTransformValues(Transform src, TransformValues dst) {
+        dst.set(src.mPx, src.mPy, src.mSx, src.mSy, src.mX, src.mY);
+        dst.scaleRelative = src.mScaleRelative;
+        dst.moveRelative = src.mMoveRelative;
+    }
+
+    private static void writeTransformValues(TransformValues src, Transform dst) {
+        dst.mPx = src.px;
+        dst.mPy = src.py;
+        dst.mSx = src.sx;
+        dst.mSy = src.sy;
+        dst.mX = src.x;
+        dst.mY = src.y;
+    }
+
+    /**
+     * Tells a {@link TiledDrawable} which portion of the image is currently visible so that it
+     * can decode (and release) tiles accordingly. The scale used to pick a level of the tile
+     * pyramid is clamped to the image's min and max scale so that transient overshoots don't
+     * trigger decodes that would be thrown away a few frames later.
+     *
+     * @param inMotion Whether the frame's quality tier holds the drawable at the level it is
+     *                 already showing
+     */
+    private void updateTiledDrawable(@NonNull TiledDrawable drawable, boolean inMotion) {
+        drawable.setUploadBudget(mTileUploadBytesPerFrame, mTileUploadCountPerFrame);
+        if (!updateInverseImageMatrix()) {
+            return;
+        }
+
+        getVisibleImageRect(mInverseImageMatrix, 0.0f, 0.0f, mTileViewportRect);
+        getImageScale(mTempPoint);
+        final float scale = getTileScale(mTempPoint.x, mTempPoint.y);
+        drawable.setViewport(mTileViewportRect, scale, inMotion);
+    }
+
+    /**
+     * Queues decodes for the tiles a fling that has just started will show: first those where
+     * it comes to rest, then those along its path in the order it passes them. The fling moves
+     * the image in a straight line at a constant scale, so its viewports are the current one
+     * offset along that line. Path viewports are spaced half a viewport apart.
+     */
+    private void prefetchFlingTiles() {
+        final Drawable drawable = getDrawable();
+        if (!(drawable instanceof TiledDrawable) || !updateInverseImageMatrix()) {
+            return;
+        }
+        final TiledDrawable tiledDrawable = (TiledDrawable) drawable;
+        tiledDrawable.cancelPrefetch();
+
+        final float dx = mOverScroller.getFinalX() - mOverScroller.getStartX();
+        final float dy = mOverScroller.getFinalY() - mOverScroller.getStartY();
+        final float spacing = 0.5f * Math.min(getContentWidth(), getContentHeight());
+        if (spacing <= 0.0f || (dx == 0.0f && dy == 0.0f)) {
+            return;
+        }
+        getImageScale(mTempPoint);
+        final float scale = getTileScale(mTempPoint.x, mTempPoint.y);
+        final boolean inMotion =
+                mQualityPolicy.getQualityTier(this, getMotion()) != QUALITY_TIER_FULL;
+        final boolean destinationInMotion =
+                mQualityPolicy.getQualityTier(this, 0) != QUALITY_TIER_FULL;
+
+        getVisibleImageRect(mInverseImageMatrix, dx, dy, mTileViewportRect);
+        tiledDrawable.prefetch(mTileViewportRect, scale, destinationInMotion);
+        final int steps = (int) Math.ceil(Math.hypot(dx, dy) / spacing);
+        for (int i = 1; i < steps; i++) {
+            final float fraction = (float) i / steps;
+            getVisibleImageRect(
+                    mInverseImageMatrix,
+                    dx * fraction,
+                    dy * fraction,
+                    mTileViewportRect);
+            tiledDrawable.prefetch(mTileViewportRect, scale, inMotion);
+        }
+    }
+
+    /**
+     * Prefetches the tiles that a smooth transform that has just started will show once it
+     * comes to rest, so that they are decoded while it animates.
+     *
+     * @param endMatrix The image matrix the transform ends at
+     */
+    private void prewarmTiles(
+            Matrix endMatrix,
+            float endSx,
+            float endSy,
+            float startSx,
+            float startSy,
+            float startX,
+            float startY) {
+        mPrewarming = false;
+        mTileHoldStartNanos = -1L;
+        final Drawable drawable = getDrawable();
+        if (!(drawable instanceof TiledDrawable) || !endMatrix.invert(mTempInverseMatrix)) {
+            return;
+        }
+        final TiledDrawable tiledDrawable = (TiledDrawable) drawable;
+        tiledDrawable.cancelPrefetch();
+
+        mPrewarmScale = getTileScale(endSx, endSy);
+        mPrewarmInMotion = mQualityPolicy.getQualityTier(this, 0) != QUALITY_TIER_FULL;
+        getVisibleImageRect(mTempInverseMatrix, 0.0f, 0.0f, mPrewarmRect);
+        tiledDrawable.prefetch(mPrewarmRect, mPrewarmScale, mPrewarmInMotion);
+        mPrewarmStartValues[0] = startSx;
+        mPrewarmStartValues[1] = startSy;
+        mPrewarmStartValues[2] = startX;
+        mPrewarmStartValues[3] = startY;
+        mPrewarming = true;
+    }
+
+    /**
+     * Holds the running smooth transform for a frame presented at {@code frameTimeNanos} if it
+     * is about to land and the tiles at its destination aren't ready yet. See
+     * {@link #setHoldForTiles(boolean)}.
+     *
+     * @return Whether the transform was held
+     */
+    private boolean holdForTiles(long frameTimeNanos) {
+        if (!mHoldForTiles || !mPrewarming || mTransforminator.isFinished()) {
+            return false;
+        }
+        final Drawable drawable = getDrawable();
+        if (!(drawable instanceof TiledDrawable) ||
+                getSmoothTransformRemaining() > TILE_HOLD_REMAINING_FRACTION) {
+            return false;
+        }
+        if (mTileHoldStartNanos < 0L) {
+            mTileHoldStartNanos = frameTimeNanos;
+        }
+        if (frameTimeNanos - mTileHoldStartNanos > MAX_TILE_HOLD_NANOS ||
+                ((TiledDrawable) drawable).isPrefetched(
+                        mPrewarmRect,
+                        mPrewarmScale,
+                        mPrewarmInMotion)) {
+            // Land now, and don't hold again on the way
+            mPrewarming = false;
+            return false;
+        }
+        mTransforminator.hold(frameTimeNanos);
+        return true;
+    }
+
+    /**
+     * Returns how much of the running smooth transform remains, as a fraction of its whole
+     * motion in whichever channel has the most left.
+     */
+    private float getSmoothTransformRemaining() {
+        return Math.max(
+                Math.max(
+                        getRemainingFraction(
+                                mPrewarmStartValues[0],
+                                mTransforminator.getCurrentSx(),
+                                mTransforminator.getEndSx()),
+                        getRemainingFraction(
+                                mPrewarmStartValues[1],
+                                mTransforminator.getCurrentSy(),
+                                mTransforminator.getEndSy())),
+                Math.max(
+                        getRemainingFraction(
+                                mPrewarmStartValues[2],
+                                mTransforminator.getCurrentX(),
+                                mTransforminator.getEndX()),
+                        getRemainingFraction(
+                                mPrewarmStartValues[3],
+                                mTransforminator.getCurrentY(),
+                                mTransforminator.getEndY())));
+    }
+
+    private static float getRemainingFraction(float start, float current, float end) {
+        final float range = Math.abs(end - start);
+        return (range < FLOAT_EPSILON ? 0.0f : Math.abs(end - current) / range);
+    }
+
+    /**
+     * Returns the scale used to pick a level of the tile pyramid for an image drawn at
+     * {@code sx}, {@code sy}: the larger of the two, clamped to the image's min and max scale.
+     */
+    private float getTileScale(float sx, float sy) {
+        getImageMinScale(mTempPoint);
+        final float minScale = Math.max(mTempPoint.x, mTempPoint.y);
+        getImageMaxScale(mTempPoint);
+        final float maxScale = Math.max(mTempPoint.x, mTempPoint.y);
+        return MathUtils.clamp(Math.max(sx, sy), minScale, Math.max(minScale, maxScale));
+    }
+
+    /**
+     * Computes the region of the image that would be visible, in image coordinates, if the image
+     * were drawn with the inverse of {@code inverseMatrix} and moved by {@code dx}, {@code dy}
+     * view pixels. This uses {@link #mTempRectSrc}.
+     */
+    private void getVisibleImageRect(Matrix inverseMatrix, float dx, float dy, RectF outRect) {
+        if (getCompatCropToPadding()) {
+            mTempRectSrc.set(0.0f, 0.0f, getContentWidth(), getContentHeight());
         } else {
-            if (mGestureDetector == null) {
-                mOnGestureListener = new OnGestureListener();
-                mGestureDetector = new GestureDetectorCompat(getContext(), mOnGestureListener);
-                mGestureDetector.setIsLongpressEnabled(false);
-            }
-            mGestureDetector.setOnDoubleTapListener(
-                    mDoubleTapToScaleEnabled ? mOnGestureListener : null);
+            // ImageView offsets the drawable by the padding whether or not it crops to it
+            mTempRectSrc.set(
+                    -getPaddingLeft(),
+                    -getPaddingTop(),
+                    getWidth() - getPaddingLeft(),
+                    getHeight() - getPaddingTop());
+        }
+        mTempRectSrc.offset(-dx, -dy);
+        inverseMatrix.mapRect(outRect, mTempRectSrc);
+    }
+
+    /**
+     * Returns whether an image load is in progress and nothing from it has been displayed yet,
+     * in which case transforms set by the caller are held until it has.
+     */
+    private boolean isAwaitingImageLoad() {
+        return (mImageLoadTask != null && !mImageLoadTask.mPreviewDisplayed);
+    }
+
+    /**
+     * Returns whether {@code t} comes from a touch gesture or from a frame of a fling or
+     * animation. These move the image on screen now, so they are applied to it even while an
+     * image load is pending rather than being held and replayed onto the new image.
+     */
+    private boolean isViewDriven(Transform t) {
+        return (t.mTouchEvent || mComputingScroll);
+    }
+
+    /**
+     * Logs the time from the start of {@code task} to the next frame, which is the first to
+     * paint what it just delivered.
+     */
+    private void logTimingOnPaint(ImageLoadTask task, String event) {
+        mUnpaintedImageLoad = task;
+        mUnpaintedImageEvent = event;
+        invalidate();
+    }
+
+    private void onImagePreviewLoaded(ImageLoadTask task, Drawable preview) {
+        mDeliveringImageLoad = true;
+        setImageDrawable(preview);
+        mDeliveringImageLoad = false;
+        task.mPreviewDisplayed = true;
+        logTimingOnPaint(task, "Displayed preview");
+        applyPendingTransform();
+        if (task.mListener != null) {
+            task.mListener.onImagePreviewLoaded(this, task.mSource, preview);
+        }
+    }
+
+    private void onImageLoaded(ImageLoadTask task, Drawable drawable) {
+        mImageLoadTask = null;
+        if (task.mPreviewDisplayed) {
+            // The preview may already have been zoomed or panned; keep it that way
+            swapImageDrawable(drawable);
+        } else {
+            setImageDrawable(drawable);
+        }
+        if (drawable instanceof TiledDrawable) {
+            // We own this drawable, so recycle it when it is replaced
+            mTiledDrawable = (TiledDrawable) drawable;
+        }
+        logTimingOnPaint(task, "Displayed image");
+        applyPendingTransform();
+        if (task.mListener != null) {
+            task.mListener.onImageLoaded(this, task.mSource, drawable);
+        }
+    }
+
+    private void applyPendingTransform() {
+        if (!ViewCompat.isLaidOut(this) || isAwaitingImageLoad()) {
+            return;
+        }
+        if (mPendingTransform != null) {
+            final Transform pendingTransform = mPendingTransform;
+            mPendingTransform = null;
+            pendingTransform.transform(this);
+        } else if (mPendingTransaction != null) {
+            final Transaction pendingTransaction = mPendingTransaction;
+            mPendingTransaction = null;
+            commitTransaction(pendingTransaction);
+        }
+    }
+
+    private void onImageLoadFailed(ImageLoadTask task, Exception e) {
+        mImageLoadTask = null;
+        // The pending transform was meant for the image that failed to load
+        mPendingTransform = null;
+        mPendingTransaction = null;
+        Log.e(LOG_TAG, "Unable to load image source " + task.mSource, e);
+        if (task.mListener != null) {
+            task.mListener.onImageLoadFailed(this, task.mSource, e);
         }
     }
 
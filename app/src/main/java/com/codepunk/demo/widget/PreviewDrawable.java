@@ -0,0 +1,53 @@
+package com.codepunk.demo.widget;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+
+/**
+ * A low-resolution stand-in for an image that is still being loaded. The preview bitmap is
+ * stretched to fill the drawable's bounds, but the drawable reports the intrinsic size of the
+ * full image, so any transform applied while the preview is showing carries over unchanged when
+ * the full image replaces it.
+ */
+public class PreviewDrawable extends BitmapDrawable {
+
+    //region Fields
+
+    private final int mWidth;
+    private final int mHeight;
+
+    //endregion Fields
+
+    //region Constructors
+
+    /**
+     * Creates a new PreviewDrawable.
+     *
+     * @param resources The resources used to create the underlying BitmapDrawable
+     * @param bitmap The preview bitmap
+     * @param width The width of the full image
+     * @param height The height of the full image
+     */
+    public PreviewDrawable(Resources resources, Bitmap bitmap, int width, int height) {
+        super(resources, bitmap);
+        mWidth = width;
+        mHeight = height;
+    }
+
+    //endregion Constructors
+
+    //region Inherited methods
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mWidth;
+    }
+
+    //endregion Inherited methods
+}
@@ -0,0 +1,331 @@
+package com.codepunk.demo.widget;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+
+import com.codepunk.demo.core.decode.DecodeScheduler;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/**
+ * A pool of independent {@link BitmapRegionDecoder}s for a single {@link ImageSource}. A region
+ * decoder serializes its decodes, so a {@link TiledDrawable} with a single decoder decodes on a
+ * single core however many threads the {@link DecodeScheduler} runs. The pool lends each decode
+ * an idle decoder, opening the source again for a new one while there are fewer than
+ * {@link #getMaxSize()}, so that tiles of one image decode in parallel.
+ * <p>
+ * Each decoder keeps its own copy of the encoded image data, so the size of the pool is bounded
+ * by a memory budget as well as by the number of cores; see {@link #computeMaxSize(long)}.
+ * </p>
+ */
+public class RegionDecoderPool {
+
+    //region Nested classes
+
+    /**
+     * Counts the bytes read through it, which for a stream read to its end by a decoder is the
+     * size of the encoded image.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        //region Fields
+
+        private long mCount;
+
+        //endregion Fields
+
+        //region Constructors
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        //endregion Constructors
+
+        //region Inherited methods
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            final int count = super.read(b, off, len);
+            if (count > 0) {
+                mCount += count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long count = super.skip(n);
+            mCount += count;
+            return count;
+        }
+
+        //endregion Inherited methods
+    }
+
+    //endregion Nested classes
+
+    //region Constants
+
+    /**
+     * The fraction of the maximum heap size that the decoders of one pool may use between them,
+     * expressed as a divisor.
+     */
+    private static final int MEMORY_BUDGET_DIVISOR = 16;
+
+    //endregion Constants
+
+    //region Fields
+
+    private final ImageSource mSource;
+    private final int mWidth;
+    private final int mHeight;
+
+    // Guarded by this
+    private final ArrayList<BitmapRegionDecoder> mIdleDecoders = new ArrayList<>();
+    private int mMaxSize;
+    private int mSize;
+    private boolean mRecycled;
+
+    //endregion Fields
+
+    //region Constructors
+
+    private RegionDecoderPool(ImageSource source, BitmapRegionDecoder decoder, int maxSize) {
+        mSource = source;
+        mMaxSize = Math.max(maxSize, 1);
+        mWidth = decoder.getWidth();
+        mHeight = decoder.getHeight();
+        mIdleDecoders.add(decoder);
+        mSize = 1;
+    }
+
+    //endregion Constructors
+
+    //region Inherited methods
+
+    @Override
+    public synchronized String toString() {
+        return String.format(
+                "RegionDecoderPool[source=%s,size=%d,maxSize=%d,idle=%d]",
+                mSource,
+                mSize,
+                mMaxSize,
+                mIdleDecoders.size());
+    }
+
+    //endregion Inherited methods
+
+    //region Methods
+
+    /**
+     * Decodes a region of the image with whichever decoder is free, waiting for one if all
+     * {@link #getMaxSize()} decoders are busy. Called on a background thread.
+     *
+     * @return The decoded bitmap, or null if the region could not be decoded
+     * @throws IllegalStateException If the pool has been recycled
+     * @see BitmapRegionDecoder#decodeRegion(Rect, BitmapFactory.Options)
+     */
+    public Bitmap decodeRegion(Rect rect, BitmapFactory.Options options) {
+        final BitmapRegionDecoder decoder = acquire();
+        try {
+            return decoder.decodeRegion(rect, options);
+        } finally {
+            release(decoder);
+        }
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Returns the most decoders this pool will open.
+     */
+    public synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns the number of decoders opened so far.
+     */
+    public synchronized int getSize() {
+        return mSize;
+    }
+
+    @NonNull
+    public ImageSource getSource() {
+        return mSource;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public synchronized boolean isRecycled() {
+        return mRecycled;
+    }
+
+    /**
+     * Recycles every decoder; those in use are recycled when their decodes complete.
+     */
+    public void recycle() {
+        final ArrayList<BitmapRegionDecoder> idleDecoders;
+        synchronized (this) {
+            if (mRecycled) {
+                return;
+            }
+            mRecycled = true;
+            idleDecoders = new ArrayList<>(mIdleDecoders);
+            mIdleDecoders.clear();
+            notifyAll();
+        }
+        for (final BitmapRegionDecoder decoder : idleDecoders) {
+            decoder.recycle();
+        }
+    }
+
+    /**
+     * Returns the largest pool worth opening for an image of {@code encodedSize} bytes: one
+     * decoder for each thread of the default {@link DecodeScheduler}, but no more than a
+     * sixteenth of the maximum heap size allows.
+     */
+    public static int computeMaxSize(long encodedSize) {
+        final long budget = Runtime.getRuntime().maxMemory() / MEMORY_BUDGET_DIVISOR;
+        final long affordable = (encodedSize <= 0 ? Integer.MAX_VALUE : budget / encodedSize);
+        return (int) Math.max(1, Math.min(DecodeScheduler.getDefaultConcurrency(), affordable));
+    }
+
+    /**
+     * Opens the first decoder for {@code source} and creates a pool sized with
+     * {@link #computeMaxSize(long)}. This reads the encoded image data and should not be called
+     * on the main thread for large images.
+     *
+     * @throws IOException If the source could not be opened or is not a supported format
+     */
+    public static RegionDecoderPool newInstance(@NonNull ImageSource source)
+            throws IOException {
+        return newInstance(source, -1);
+    }
+
+    /**
+     * Opens the first decoder for {@code source} and creates a pool of at most
+     * {@code maxSize} decoders, or of the size computed by {@link #computeMaxSize(long)} if
+     * {@code maxSize} is not positive.
+     *
+     * @throws IOException If the source could not be opened or is not a supported format
+     */
+    public static RegionDecoderPool newInstance(@NonNull ImageSource source, int maxSize)
+            throws IOException {
+        final CountingInputStream stream = new CountingInputStream(source.openStream());
+        try {
+            final BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(stream, false);
+            if (decoder == null) {
+                throw new IOException("Unable to create region decoder for " + source);
+            }
+            return new RegionDecoderPool(
+                    source,
+                    decoder,
+                    (maxSize > 0 ? maxSize : computeMaxSize(stream.mCount)));
+        } finally {
+            stream.close();
+        }
+    }
+
+    //endregion Methods
+
+    //region Private methods
+
+    /**
+     * Takes an idle decoder, opening a new one if none is idle and the pool isn't full, or
+     * waiting for one to be released otherwise.
+     */
+    private BitmapRegionDecoder acquire() {
+        synchronized (this) {
+            while (true) {
+                if (mRecycled) {
+                    throw new IllegalStateException("The decoder pool has been recycled");
+                }
+                final int idleCount = mIdleDecoders.size();
+                if (idleCount > 0) {
+                    return mIdleDecoders.remove(idleCount - 1);
+                }
+                if (mSize < mMaxSize) {
+                    mSize++;
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted waiting for a decoder", e);
+                }
+            }
+        }
+
+        // Open the new decoder outside the lock, since it reads the whole image
+        BitmapRegionDecoder decoder = null;
+        try {
+            final InputStream stream = mSource.openStream();
+            try {
+                decoder = BitmapRegionDecoder.newInstance(stream, false);
+            } finally {
+                stream.close();
+            }
+        } catch (IOException e) {
+            // Fall through; the source opened before, so this is unexpected
+        }
+        if (decoder == null) {
+            synchronized (this) {
+                // Make do with the decoders we have
+                mSize--;
+                mMaxSize = mSize;
+            }
+            return waitForIdleDecoder();
+        }
+        return decoder;
+    }
+
+    private synchronized BitmapRegionDecoder waitForIdleDecoder() {
+        while (mIdleDecoders.isEmpty()) {
+            if (mRecycled) {
+                throw new IllegalStateException("The decoder pool has been recycled");
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for a decoder", e);
+            }
+        }
+        return mIdleDecoders.remove(mIdleDecoders.size() - 1);
+    }
+
+    private void release(BitmapRegionDecoder decoder) {
+        synchronized (this) {
+            if (!mRecycled) {
+                mIdleDecoders.add(decoder);
+                notifyAll();
+                return;
+            }
+        }
+        decoder.recycle();
+    }
+
+    //endregion Private methods
+}
@@ -0,0 +1,389 @@
+package com.codepunk.demo.widget;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of decoded tiles that are not currently being displayed,
+ * along with a pool of evicted bitmaps that can be reused as decode targets. A single TileCache
+ * can be shared by any number of {@link TiledDrawable}s (and therefore by any number of
+ * {@link ImageViewInteractinator}s), so switching back to a recently displayed image does not
+ * decode it again.
+ * <p>
+ * Bitmaps that are on screen are owned by the drawable displaying them and do not count against
+ * the budget; a bitmap only enters the cache once its tile scrolls out of view or its drawable
+ * is released, and leaves it again (as a hit) when its tile is needed.
+ * </p>
+ */
+public class TileCache implements ComponentCallbacks2 {
+
+    //region Nested classes
+
+    /**
+     * Identifies a tile by its source, level (sample size), column and row.
+     */
+    public static final class Key {
+
+        //region Fields
+
+        private final String mSourceKey;
+        private final int mSampleSize;
+        private final int mColumn;
+        private final int mRow;
+        private final int mHashCode;
+
+        //endregion Fields
+
+        //region Constructors
+
+        public Key(@NonNull String sourceKey, int sampleSize, int column, int row) {
+            mSourceKey = sourceKey;
+            mSampleSize = sampleSize;
+            mColumn = column;
+            mRow = row;
+            int hashCode = sourceKey.hashCode();
+            hashCode = 31 * hashCode + sampleSize;
+            hashCode = 31 * hashCode + column;
+            hashCode = 31 * hashCode + row;
+            mHashCode = hashCode;
+        }
+
+        //endregion Constructors
+
+        //region Inherited methods
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return mSampleSize == other.mSampleSize &&
+                    mColumn == other.mColumn &&
+                    mRow == other.mRow &&
+                    mSourceKey.equals(other.mSourceKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public String toString() {
+            return mSourceKey + "[" + mSampleSize + "," + mColumn + "," + mRow + "]";
+        }
+
+        //endregion Inherited methods
+    }
+
+    private class BitmapLruCache extends LruCache<Key, Bitmap> {
+
+        //region Constructors
+
+        BitmapLruCache(int maxSize) {
+            super(maxSize);
+        }
+
+        //endregion Constructors
+
+        //region Inherited methods
+
+        @Override
+        protected void entryRemoved(
+                boolean evicted,
+                @NonNull Key key,
+                @NonNull Bitmap oldValue,
+                @Nullable Bitmap newValue) {
+            if (newValue == null) {
+                synchronized (TileCache.this) {
+                    mKeys.remove(key);
+                }
+            }
+            if (evicted) {
+                synchronized (TileCache.this) {
+                    mEvictionCount++;
+                }
+                offerReusableBitmap(oldValue);
+            } else if (newValue != null && newValue != oldValue) {
+                // Replaced by an equivalent tile decoded elsewhere
+                offerReusableBitmap(oldValue);
+            }
+            // Otherwise the bitmap was taken by a drawable and is back on screen
+        }
+
+        @Override
+        protected int sizeOf(@NonNull Key key, @NonNull Bitmap value) {
+            return value.getByteCount();
+        }
+
+        //endregion Inherited methods
+    }
+
+    //endregion Nested classes
+
+    //region Constants
+
+    /**
+     * The fraction of the app's memory class given to the default cache.
+     */
+    private static final int DEFAULT_MEMORY_CLASS_DIVISOR = 8;
+
+    /**
+     * The fraction of the cache budget that may additionally be held in the reuse pool.
+     */
+    private static final int REUSE_POOL_DIVISOR = 4;
+
+    private static TileCache sDefault;
+
+    //endregion Constants
+
+    //region Fields
+
+    private final BitmapLruCache mCache;
+    private final HashSet<Key> mKeys = new HashSet<>();
+    private final int mMaxSize;
+    private final int mMaxPoolSize;
+    private final Map<Long, List<Bitmap>> mReusePool = new HashMap<>();
+    private int mPoolSize;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+    private int mReuseCount;
+
+    //endregion Fields
+
+    //region Constructors
+
+    /**
+     * Creates a new TileCache.
+     *
+     * @param maxSize The maximum number of bytes of off-screen tiles to retain
+     */
+    public TileCache(int maxSize) {
+        mMaxSize = maxSize;
+        mMaxPoolSize = maxSize / REUSE_POOL_DIVISOR;
+        mCache = new BitmapLruCache(maxSize);
+    }
+
+    //endregion Constructors
+
+    //region Inherited methods
+
+    @Override
+    public synchronized String toString() {
+        final int accesses = mHitCount + mMissCount;
+        final int hitPercent = (accesses == 0 ? 0 : (100 * mHitCount / accesses));
+        return String.format(
+                "TileCache[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%,evictions=%d," +
+                        "reused=%d,pooled=%d]",
+                mCache.size(),
+                mMaxSize,
+                mHitCount,
+                mMissCount,
+                hitPercent,
+                mEvictionCount,
+                mReuseCount,
+                mPoolSize);
+    }
+
+    //endregion Inherited methods
+
+    //region Implemented methods
+
+    @Override // ComponentCallbacks2
+    public synchronized void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            clear();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // Trim to an absolute size so that repeated callbacks are idempotent
+            mCache.trimToSize(mMaxSize / 2);
+            clearReusePool();
+        }
+    }
+
+    @Override // ComponentCallbacks
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    @Override // ComponentCallbacks
+    public void onLowMemory() {
+        clear();
+    }
+
+    //endregion Implemented methods
+
+    //region Methods
+
+    /**
+     * Evicts all cached tiles and releases all pooled bitmaps.
+     */
+    public synchronized void clear() {
+        mCache.evictAll();
+        clearReusePool();
+    }
+
+    /**
+     * Returns whether the given tile is cached, without taking it. Unlike a lookup, this does
+     * not make the tile the most recently used.
+     */
+    public synchronized boolean contains(@NonNull Key key) {
+        return mKeys.contains(key);
+    }
+
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Returns the number of decodes that were able to reuse a pooled bitmap.
+     */
+    public synchronized int getReuseCount() {
+        return mReuseCount;
+    }
+
+    /**
+     * Returns a mutable bitmap of exactly the given size and configuration that can be used as
+     * a decode target, or null if none is available. This may be called from any thread.
+     */
+    @Nullable
+    public Bitmap getReusableBitmap(int width, int height, Bitmap.Config config) {
+        synchronized (this) {
+            final List<Bitmap> bitmaps = mReusePool.get(getPoolKey(width, height, config));
+            if (bitmaps != null) {
+                while (!bitmaps.isEmpty()) {
+                    final Bitmap bitmap = bitmaps.remove(bitmaps.size() - 1);
+                    mPoolSize -= bitmap.getByteCount();
+                    if (!bitmap.isRecycled()) {
+                        mReuseCount++;
+                        return bitmap;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the current number of bytes of off-screen tiles being retained.
+     */
+    public int getSize() {
+        return mCache.size();
+    }
+
+    /**
+     * Adds a decoded tile that is no longer being displayed to the cache. Ownership of the bitmap
+     * passes to the cache.
+     */
+    public synchronized void put(@NonNull Key key, @NonNull Bitmap bitmap) {
+        if (!bitmap.isRecycled()) {
+            // Added first, since a tile larger than the whole budget is evicted straight away
+            mKeys.add(key);
+            mCache.put(key, bitmap);
+        }
+    }
+
+    /**
+     * Removes and returns the bitmap for the given tile, or null if it is not cached. Ownership
+     * of the bitmap passes to the caller.
+     */
+    @Nullable
+    public synchronized Bitmap take(@NonNull Key key) {
+        final Bitmap bitmap = mCache.remove(key);
+        if (bitmap == null || bitmap.isRecycled()) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return bitmap;
+    }
+
+    /**
+     * Returns the default TileCache, shared by every {@link ImageViewInteractinator} in the
+     * process that has not been given a cache of its own. Its budget is a fraction of the app's
+     * memory class, so it scales with the device. It is registered with the application
+     * context for memory callbacks when it is created.
+     */
+    public static synchronized TileCache getDefault(@NonNull Context context) {
+        if (sDefault == null) {
+            final ActivityManager activityManager =
+                    (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            final long memoryClassBytes = (activityManager == null ?
+                    Runtime.getRuntime().maxMemory() :
+                    activityManager.getMemoryClass() * 1024L * 1024L);
+            sDefault = new TileCache((int) (memoryClassBytes / DEFAULT_MEMORY_CLASS_DIVISOR));
+            context.getApplicationContext().registerComponentCallbacks(sDefault);
+        }
+        return sDefault;
+    }
+
+    //endregion Methods
+
+    //region Private methods
+
+    private synchronized void clearReusePool() {
+        for (final List<Bitmap> bitmaps : mReusePool.values()) {
+            for (final Bitmap bitmap : bitmaps) {
+                bitmap.recycle();
+            }
+        }
+        mReusePool.clear();
+        mPoolSize = 0;
+    }
+
+    private void offerReusableBitmap(Bitmap bitmap) {
+        if (bitmap.isRecycled()) {
+            return;
+        }
+        synchronized (this) {
+            final int byteCount = bitmap.getByteCount();
+            if (bitmap.isMutable() && mPoolSize + byteCount <= mMaxPoolSize) {
+                final long key =
+                        getPoolKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+                List<Bitmap> bitmaps = mReusePool.get(key);
+                if (bitmaps == null) {
+                    bitmaps = new ArrayList<>();
+                    mReusePool.put(key, bitmaps);
+                }
+                bitmaps.add(bitmap);
+                mPoolSize += byteCount;
+                return;
+            }
+        }
+        bitmap.recycle();
+    }
+
+    private static long getPoolKey(int width, int height, Bitmap.Config config) {
+        final int ordinal = (config == null ? 0 : config.ordinal() + 1);
+        return ((long) ordinal << 48) | ((long) width << 24) | height;
+    }
+
+    //endregion Private methods
+}
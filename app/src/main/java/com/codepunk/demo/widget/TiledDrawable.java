@@ -0,0 +1,988 @@
+package com.codepunk.demo.widget;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LongSparseArray;
+import android.util.Log;
+
+import com.codepunk.demo.core.decode.DecodeScheduler;
+import com.codepunk.demo.core.decode.UploadQueue;
+import com.codepunk.demo.support.ChoreographerCompat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * A {@link Drawable} that renders a (potentially very large) image as a grid of tiles, decoding
+ * only the tiles that intersect the current viewport. The drawable reports the full dimensions
+ * of the source image as its intrinsic size, so all of the transform logic in
+ * {@link ImageViewInteractinator} works unchanged in image coordinates; only the decoded pixels
+ * are bounded by the viewport.
+ * <p>
+ * Tiles are organized in a pyramid of levels, each identified by its power-of-two sample size
+ * (1/1, 1/2, 1/4 ...). The coarsest level is a single subsampled "base layer" covering the whole
+ * image, which is always drawn first so that there is never a blank frame while finer tiles
+ * are being decoded.
+ * </p>
+ * <p>
+ * If a {@link TileCache} is set, tiles that leave the viewport (and all tiles when the drawable is
+ * released) are handed to the cache instead of being recycled, and the cache is consulted before
+ * any tile is decoded.
+ * </p>
+ * <p>
+ * Decoded tiles are not drawn as soon as they arrive. Each frame takes a limited number of bytes
+ * of newly decoded tiles from an {@link UploadQueue}, nearest the center of the viewport first,
+ * since the first draw of each one uploads it to the GPU; a burst of decodes is spread over the
+ * following frames rather than lengthening one of them. See
+ * {@link #setUploadBudget(long, int)}.
+ * </p>
+ */
+public class TiledDrawable extends Drawable {
+
+    //region Nested classes
+
+    /**
+     * A single rectangular region of the source image decoded at a given sample size.
+     */
+    static class Tile {
+
+        //region Fields
+
+        final int sampleSize;
+        final int column;
+        final int row;
+        final Rect sourceRect = new Rect();
+        final TileCache.Key cacheKey;
+
+        Bitmap bitmap;
+
+        /**
+         * The decoded bitmap while it waits in the upload queue to be drawn for the first time.
+         */
+        Bitmap pendingBitmap;
+
+        int generation;
+        volatile boolean cancelled;
+        DecodeScheduler.Task task;
+
+        /**
+         * Whether the tile is being decoded ahead of time into the tile cache rather than for
+         * display. Only accessed on the main thread.
+         */
+        boolean prefetch;
+
+        //endregion Fields
+
+        //region Constructors
+
+        Tile(int sampleSize, int column, int row, TileCache.Key cacheKey) {
+            this.sampleSize = sampleSize;
+            this.column = column;
+            this.row = row;
+            this.cacheKey = cacheKey;
+        }
+
+        //endregion Constructors
+    }
+
+    /**
+     * Decodes the base layer on a background thread.
+     */
+    private class BaseLayerTask implements Runnable {
+
+        //region Implemented methods
+
+        @Override
+        public void run() {
+            if (!mRecycled) {
+                prepareBaseLayer();
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        invalidateSelf();
+                    }
+                });
+            }
+        }
+
+        //endregion Implemented methods
+    }
+
+    /**
+     * Decodes a single tile on a background thread and hands the result back to the main thread.
+     */
+    private class DecodeTask implements Runnable {
+
+        //region Fields
+
+        private final Tile mTile;
+
+        //endregion Fields
+
+        //region Constructors
+
+        DecodeTask(Tile tile) {
+            mTile = tile;
+        }
+
+        //endregion Constructors
+
+        //region Implemented methods
+
+        @Override
+        public void run() {
+            if (mTile.cancelled) {
+                return;
+            }
+
+            final Bitmap bitmap = decodeRegion(mTile.sourceRect, mTile.sampleSize);
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onTileDecoded(mTile, bitmap);
+                }
+            });
+        }
+
+        //endregion Implemented methods
+    }
+
+    //endregion Nested classes
+
+    //region Constants
+
+    private static final String LOG_TAG = TiledDrawable.class.getSimpleName();
+
+    /**
+     * The default size, in decoded pixels, of each side of a tile.
+     */
+    public static final int DEFAULT_TILE_SIZE = 512;
+
+    /**
+     * The maximum size, in decoded pixels, of the longest side of the base layer.
+     */
+    private static final int MAX_BASE_LAYER_SIZE = 1024;
+
+    /**
+     * The column and row used to identify the base layer in a {@link TileCache}.
+     */
+    private static final int BASE_LAYER_INDEX = -1;
+
+    /**
+     * The default number of bytes of newly decoded tiles that each frame draws: two full-size
+     * tiles of {@link #DEFAULT_TILE_SIZE} pixels.
+     */
+    public static final long DEFAULT_UPLOAD_BYTES_PER_FRAME =
+            2L * DEFAULT_TILE_SIZE * DEFAULT_TILE_SIZE * 4L;
+
+    //endregion Constants
+
+    //region Fields
+
+    private final ImageSource mSource;
+    private final RegionDecoderPool mDecoderPool;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mTileSize;
+    private int mBaseSampleSize;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final LongSparseArray<Tile> mTiles = new LongSparseArray<>();
+    private final LongSparseArray<Tile> mPrefetchTiles = new LongSparseArray<>();
+
+    /**
+     * Orders this drawable's decodes among those of every other image in the process.
+     */
+    private final DecodeScheduler.Group mDecodeGroup = DecodeScheduler.getDefault().newGroup();
+
+    private final Rect mViewport = new Rect();
+    private final Rect mTempRect = new Rect();
+    private int mSampleSize;
+    private int mGeneration;
+    private volatile boolean mRecycled;
+
+    private volatile Bitmap mBaseLayer;
+    private final Object mBaseLayerLock = new Object();
+    private boolean mBaseLayerRequested;
+
+    private volatile TileCache mTileCache;
+
+    private final UploadQueue<Tile> mUploadQueue =
+            new UploadQueue<>(DEFAULT_UPLOAD_BYTES_PER_FRAME, 0);
+    private final ArrayList<Tile> mUploadedTiles = new ArrayList<>();
+    private boolean mUploadFramePosted;
+
+    /**
+     * Redraws on the next frame so that the tiles left in the upload queue are drawn.
+     */
+    private final ChoreographerCompat.FrameCallback mUploadFrameCallback =
+            new ChoreographerCompat.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    mUploadFramePosted = false;
+                    if (!mRecycled && !mUploadQueue.isEmpty()) {
+                        invalidateSelf();
+                    }
+                }
+            };
+
+    //endregion Fields
+
+    //region Constructors
+
+    private TiledDrawable(ImageSource source, RegionDecoderPool decoderPool, int tileSize) {
+        mSource = source;
+        mDecoderPool = decoderPool;
+        mWidth = decoderPool.getWidth();
+        mHeight = decoderPool.getHeight();
+        mTileSize = tileSize;
+        mBaseSampleSize = computeBaseSampleSize(mWidth, mHeight);
+    }
+
+    //endregion Constructors
+
+    //region Inherited methods
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        final Rect bounds = getBounds();
+        if (bounds.isEmpty() || mWidth < 1 || mHeight < 1) {
+            return;
+        }
+
+        uploadTiles();
+
+        final int restoreCount = canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        canvas.scale((float) bounds.width() / mWidth, (float) bounds.height() / mHeight);
+
+        final Bitmap baseLayer = mBaseLayer;
+        if (baseLayer != null) {
+            mTempRect.set(0, 0, mWidth, mHeight);
+            canvas.drawBitmap(baseLayer, null, mTempRect, mPaint);
+        }
+
+        // Draw any tiles left over from other levels first, then refine with the current level
+        final int size = mTiles.size();
+        for (int i = 0; i < size; i++) {
+            final Tile tile = mTiles.valueAt(i);
+            if (tile.bitmap != null && tile.sampleSize != mSampleSize) {
+                canvas.drawBitmap(tile.bitmap, null, tile.sourceRect, mPaint);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            final Tile tile = mTiles.valueAt(i);
+            if (tile.bitmap != null && tile.sampleSize == mSampleSize) {
+                canvas.drawBitmap(tile.bitmap, null, tile.sourceRect, mPaint);
+            }
+        }
+        canvas.restoreToCount(restoreCount);
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getOpacity() {
+        // Tiles that have not been decoded yet leave holes
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public boolean isFilterBitmap() {
+        return mPaint.isFilterBitmap();
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        mPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setFilterBitmap(boolean filter) {
+        mPaint.setFilterBitmap(filter);
+        invalidateSelf();
+    }
+
+    //endregion Inherited methods
+
+    //region Methods
+
+    /**
+     * Cancels the decodes queued by {@link #prefetch(RectF, float, boolean)} that have not
+     * completed yet.
+     */
+    public void cancelPrefetch() {
+        final int size = mPrefetchTiles.size();
+        for (int i = 0; i < size; i++) {
+            final Tile tile = mPrefetchTiles.valueAt(i);
+            tile.cancelled = true;
+            tile.task.cancel();
+        }
+        mPrefetchTiles.clear();
+    }
+
+    /**
+     * Returns the sample size of the base layer; that is, the coarsest level of the pyramid.
+     */
+    public int getBaseSampleSize() {
+        return mBaseSampleSize;
+    }
+
+    /**
+     * Returns the tiles first drawn by the latest frame and how long they waited in the upload
+     * queue. The returned object is updated by each frame.
+     */
+    public UploadQueue.Stats getLastUploadStats() {
+        return mUploadQueue.getLastStats();
+    }
+
+    /**
+     * Returns the number of decoded tiles waiting in the upload queue.
+     */
+    public int getPendingUploadCount() {
+        return mUploadQueue.size();
+    }
+
+    public ImageSource getSource() {
+        return mSource;
+    }
+
+    /**
+     * Returns the sample size of the level currently being displayed.
+     */
+    public int getSampleSize() {
+        return mSampleSize;
+    }
+
+    @Nullable
+    public TileCache getTileCache() {
+        return mTileCache;
+    }
+
+    public int getTileSize() {
+        return mTileSize;
+    }
+
+    /**
+     * Returns the most bytes of newly decoded tiles drawn per frame, or 0 for no limit.
+     */
+    public long getUploadBytesPerFrame() {
+        return mUploadQueue.getMaxBytesPerFrame();
+    }
+
+    /**
+     * Returns the most newly decoded tiles drawn per frame, or 0 for no limit.
+     */
+    public int getUploadCountPerFrame() {
+        return mUploadQueue.getMaxCountPerFrame();
+    }
+
+    /**
+     * Returns the tiles drawn since the drawable was created or {@link #resetUploadStats()} was
+     * called, and how long they waited in the upload queue. The returned object is updated by
+     * each frame.
+     */
+    public UploadQueue.Stats getUploadStats() {
+        return mUploadQueue.getTotalStats();
+    }
+
+    /**
+     * Returns whether the tiles that {@link #setViewport(RectF, float, boolean)} would show at
+     * the given viewport are all decoded and waiting, either on display or in the tile cache.
+     * The parameters are the same as for {@link #prefetch(RectF, float, boolean)}.
+     */
+    public boolean isPrefetched(RectF visibleRect, float scale, boolean inMotion) {
+        if (mRecycled) {
+            return false;
+        }
+
+        final int sampleSize = getLevel(scale, inMotion);
+        if (sampleSize >= mBaseSampleSize) {
+            return (mBaseLayer != null);
+        }
+        final TileCache cache = mTileCache;
+        final int span = mTileSize * sampleSize;
+        final int firstColumn = Math.max((int) Math.floor(visibleRect.left), 0) / span;
+        final int firstRow = Math.max((int) Math.floor(visibleRect.top), 0) / span;
+        final int lastColumn = (Math.min((int) Math.ceil(visibleRect.right), mWidth) - 1) / span;
+        final int lastRow = (Math.min((int) Math.ceil(visibleRect.bottom), mHeight) - 1) / span;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                final Tile tile = mTiles.get(getTileKey(sampleSize, column, row));
+                if (tile != null && (tile.bitmap != null || tile.pendingBitmap != null)) {
+                    continue;
+                }
+                if (cache == null || !cache.contains(
+                        new TileCache.Key(mSource.getKey(), sampleSize, column, row))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether {@link #recycle()} has been called on this drawable.
+     */
+    public boolean isRecycled() {
+        return mRecycled;
+    }
+
+    /**
+     * Queues decodes for the tiles that would be visible if the viewport moved to
+     * {@code visibleRect}, behind those for the tiles that are visible now. Prefetched tiles are
+     * decoded into the tile cache, where {@link #setViewport(RectF, float, boolean)} picks them
+     * up once the viewport gets there; a tile that becomes visible while it is being prefetched
+     * is displayed as soon as that decode completes. Does nothing without a {@link TileCache}.
+     * <p>
+     * The parameters are those that {@link #setViewport(RectF, float, boolean)} would be called
+     * with at that viewport.
+     * </p>
+     *
+     * @return The number of decodes queued
+     */
+    public int prefetch(RectF visibleRect, float scale, boolean inMotion) {
+        final TileCache cache = mTileCache;
+        if (mRecycled || cache == null) {
+            return 0;
+        }
+
+        final int sampleSize = getLevel(scale, inMotion);
+        if (sampleSize >= mBaseSampleSize) {
+            return 0;
+        }
+        final int span = mTileSize * sampleSize;
+        final int firstColumn = Math.max((int) Math.floor(visibleRect.left), 0) / span;
+        final int firstRow = Math.max((int) Math.floor(visibleRect.top), 0) / span;
+        final int lastColumn = (Math.min((int) Math.ceil(visibleRect.right), mWidth) - 1) / span;
+        final int lastRow = (Math.min((int) Math.ceil(visibleRect.bottom), mHeight) - 1) / span;
+        int count = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                final long key = getTileKey(sampleSize, column, row);
+                if (mTiles.get(key) != null || mPrefetchTiles.get(key) != null) {
+                    continue;
+                }
+                final TileCache.Key cacheKey =
+                        new TileCache.Key(mSource.getKey(), sampleSize, column, row);
+                if (cache.contains(cacheKey)) {
+                    continue;
+                }
+                final Tile tile = newTile(sampleSize, column, row, cacheKey);
+                tile.prefetch = true;
+                mPrefetchTiles.put(key, tile);
+                queueDecode(tile);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Decodes the base layer if it has not been decoded yet. This blocks while decoding, so it
+     * should only be called from a background thread; it allows a loader to hand over a
+     * TiledDrawable that can draw something on its very first frame.
+     */
+    public void prepareBaseLayer() {
+        if (mBaseLayer == null && !mRecycled) {
+            final TileCache cache = mTileCache;
+            Bitmap baseLayer = (cache == null ? null : cache.take(getBaseLayerKey()));
+            if (baseLayer == null) {
+                baseLayer = decodeRegion(new Rect(0, 0, mWidth, mHeight), mBaseSampleSize);
+            }
+            if (baseLayer != null &&
+                    Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                // The base layer is drawn scaled down whenever the image is zoomed out, where a
+                // filtered draw samples the mipmaps instead of aliasing
+                baseLayer.setHasMipMap(true);
+            }
+            if (baseLayer != null) {
+                // The drawable may have been recycled, or the base layer decoded by another
+                // thread, while this decode was in progress
+                boolean published = false;
+                synchronized (mBaseLayerLock) {
+                    if (mBaseLayer == null && !mRecycled) {
+                        mBaseLayer = baseLayer;
+                        published = true;
+                    }
+                }
+                if (!published) {
+                    recycleOrCache(getBaseLayerKey(), baseLayer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the decoder and all decoded tiles. The drawable draws nothing afterwards.
+     */
+    public void recycle() {
+        if (!mRecycled) {
+            mRecycled = true;
+            if (mUploadFramePosted) {
+                mUploadFramePosted = false;
+                ChoreographerCompat.removeFrameCallback(mUploadFrameCallback);
+            }
+            releaseTiles();
+            mDecodeGroup.cancelAll();
+            mDecoderPool.recycle();
+            final Bitmap baseLayer;
+            synchronized (mBaseLayerLock) {
+                baseLayer = mBaseLayer;
+                mBaseLayer = null;
+            }
+            if (baseLayer != null) {
+                recycleOrCache(getBaseLayerKey(), baseLayer);
+            }
+        }
+    }
+
+    /**
+     * Releases all decoded tiles; they will be decoded again the next time
+     * {@link #setViewport(RectF, float, boolean)} is called. The base layer is retained.
+     */
+    public void releaseTiles() {
+        cancelPrefetch();
+        final int size = mTiles.size();
+        for (int i = 0; i < size; i++) {
+            releaseTile(mTiles.valueAt(i));
+        }
+        mTiles.clear();
+        mSampleSize = 0;
+        mViewport.setEmpty();
+    }
+
+    public void resetUploadStats() {
+        mUploadQueue.resetStats();
+    }
+
+    /**
+     * Overrides the sample size of the base layer, which otherwise is chosen so that the base
+     * layer is no larger than a fixed maximum. A loader that knows how large the image will
+     * appear can use this to make the base layer match the displayed size exactly, in which
+     * case no tiles are decoded at all until the image is zoomed past the base layer's native
+     * density. This must be called before the base layer is decoded.
+     *
+     * @param baseSampleSize A power-of-two sample size
+     */
+    public void setBaseSampleSize(int baseSampleSize) {
+        if (mBaseLayer != null || mBaseLayerRequested) {
+            throw new IllegalStateException("The base layer has already been decoded");
+        }
+        mBaseSampleSize = Math.max(baseSampleSize, 1);
+    }
+
+    /**
+     * Sets the cache used to retain tiles that are no longer visible. This should be called
+     * before the drawable is first drawn.
+     */
+    public void setTileCache(@Nullable TileCache tileCache) {
+        mTileCache = tileCache;
+    }
+
+    /**
+     * Limits how many newly decoded tiles each frame draws, by size, by number or both. Tiles
+     * beyond the budget wait for later frames, nearest the center of the viewport first. Each
+     * frame draws at least one waiting tile, whatever the budget.
+     *
+     * @param maxBytesPerFrame The most bytes of new tiles per frame, or 0 for no limit
+     * @param maxCountPerFrame The most new tiles per frame, or 0 for no limit
+     */
+    public void setUploadBudget(long maxBytesPerFrame, int maxCountPerFrame) {
+        mUploadQueue.setBudget(maxBytesPerFrame, maxCountPerFrame);
+    }
+
+    /**
+     * Updates the portion of the image that is visible, queuing decodes for any tiles that are
+     * now visible and releasing tiles that are not.
+     *
+     * @param visibleRect The visible region of the image, in image coordinates
+     * @param scale The number of screen pixels per image pixel
+     * @param inMotion Whether the image is currently in motion. While in motion, the drawable
+     *                 never switches to a finer level than the one it is already showing; it
+     *                 refines once the motion settles.
+     * @return Whether the set of visible tiles changed
+     */
+    public boolean setViewport(RectF visibleRect, float scale, boolean inMotion) {
+        if (mRecycled) {
+            return false;
+        }
+
+        if (!mBaseLayerRequested) {
+            mBaseLayerRequested = true;
+            if (mBaseLayer == null) {
+                mDecodeGroup.submit(DecodeScheduler.PRIORITY_VISIBLE, new BaseLayerTask());
+            }
+        }
+
+        final int sampleSize = getLevel(scale, inMotion);
+        final int left = Math.max((int) Math.floor(visibleRect.left), 0);
+        final int top = Math.max((int) Math.floor(visibleRect.top), 0);
+        final int right = Math.min((int) Math.ceil(visibleRect.right), mWidth);
+        final int bottom = Math.min((int) Math.ceil(visibleRect.bottom), mHeight);
+        if (sampleSize == mSampleSize && mViewport.left == left && mViewport.top == top &&
+                mViewport.right == right && mViewport.bottom == bottom) {
+            return false;
+        }
+        mSampleSize = sampleSize;
+        mViewport.set(left, top, right, bottom);
+        mDecodeGroup.setViewport(left, top, right, bottom);
+
+        final int generation = ++mGeneration;
+        if (sampleSize < mBaseSampleSize && left < right && top < bottom) {
+            final int span = mTileSize * sampleSize;
+            final int firstColumn = left / span;
+            final int lastColumn = (right - 1) / span;
+            final int firstRow = top / span;
+            final int lastRow = (bottom - 1) / span;
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    final long key = getTileKey(sampleSize, column, row);
+                    Tile tile = mTiles.get(key);
+                    if (tile == null) {
+                        tile = adoptPrefetchTile(key);
+                    }
+                    if (tile == null) {
+                        tile = newTile(
+                                sampleSize,
+                                column,
+                                row,
+                                (mTileCache == null ?
+                                        null :
+                                        new TileCache.Key(
+                                                mSource.getKey(), sampleSize, column, row)));
+                        mTiles.put(key, tile);
+                        if (tile.cacheKey != null) {
+                            tile.bitmap = mTileCache.take(tile.cacheKey);
+                        }
+                        if (tile.bitmap == null) {
+                            queueDecode(tile);
+                        }
+                    }
+                    tile.generation = generation;
+                }
+            }
+        }
+
+        // Keep visible tiles from other levels around until the current level is complete
+        if (!isLevelComplete(generation)) {
+            final int size = mTiles.size();
+            for (int i = 0; i < size; i++) {
+                final Tile tile = mTiles.valueAt(i);
+                if (tile.bitmap != null && Rect.intersects(tile.sourceRect, mViewport)) {
+                    tile.generation = generation;
+                }
+            }
+        }
+
+        releaseStaleTiles(generation);
+        return true;
+    }
+
+    /**
+     * Creates a new TiledDrawable for the given source. This reads the encoded image data and
+     * should not be called on the main thread for large images. Tiles are decoded in parallel by
+     * a {@link RegionDecoderPool} sized for the device.
+     *
+     * @throws IOException If the source could not be opened or is not a supported format
+     */
+    public static TiledDrawable newInstance(@NonNull ImageSource source) throws IOException {
+        return newInstance(source, DEFAULT_TILE_SIZE);
+    }
+
+    public static TiledDrawable newInstance(@NonNull ImageSource source, int tileSize)
+            throws IOException {
+        return new TiledDrawable(source, RegionDecoderPool.newInstance(source), tileSize);
+    }
+
+    /**
+     * Returns the power-of-two sample size to use for the base layer of an image of the given
+     * size.
+     */
+    public static int computeBaseSampleSize(int width, int height) {
+        int sampleSize = 1;
+        final int size = Math.max(width, height);
+        while (size / sampleSize > MAX_BASE_LAYER_SIZE) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Returns the largest power-of-two sample size that still supplies at least one decoded
+     * pixel per screen pixel at the given scale.
+     */
+    public static int computeSampleSize(float scale) {
+        int sampleSize = 1;
+        if (scale > 0.0f) {
+            final float limit = 1.0f / scale;
+            while (sampleSize * 2 <= limit) {
+                sampleSize *= 2;
+            }
+        }
+        return sampleSize;
+    }
+
+    //endregion Methods
+
+    //region Private methods
+
+    /**
+     * Takes over a tile that is being prefetched and has just become visible, so that it is
+     * displayed as soon as it is decoded instead of being decoded a second time. If its decode
+     * has not started yet, it moves ahead of the remaining prefetched tiles.
+     *
+     * @return The tile, now in {@link #mTiles}, or null if no such tile is being prefetched
+     */
+    @Nullable
+    private Tile adoptPrefetchTile(long key) {
+        final Tile tile = mPrefetchTiles.get(key);
+        if (tile == null) {
+            return null;
+        }
+        mPrefetchTiles.remove(key);
+        tile.prefetch = false;
+        mTiles.put(key, tile);
+        tile.task.setPriority(DecodeScheduler.PRIORITY_VISIBLE);
+        return tile;
+    }
+
+    /**
+     * Returns the sample size of the level to show at {@code scale}. While in motion, the level
+     * already showing is kept if it is coarser.
+     */
+    private int getLevel(float scale, boolean inMotion) {
+        final int sampleSize = Math.min(computeSampleSize(scale), mBaseSampleSize);
+        return (inMotion && mSampleSize > sampleSize ? mSampleSize : sampleSize);
+    }
+
+    /**
+     * Returns whether every tile in the current level has been decoded.
+     */
+    private boolean isLevelComplete(int generation) {
+        final int size = mTiles.size();
+        for (int i = 0; i < size; i++) {
+            final Tile tile = mTiles.valueAt(i);
+            if (tile.generation == generation &&
+                    tile.sampleSize == mSampleSize &&
+                    tile.bitmap == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a region of the image, reusing a pooled bitmap from the tile cache if one of the
+     * right size is available. Called on a background thread.
+     */
+    @Nullable
+    private Bitmap decodeRegion(Rect rect, int sampleSize) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        final TileCache cache = mTileCache;
+        if (cache != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            options.inBitmap = cache.getReusableBitmap(
+                    (rect.width() + sampleSize - 1) / sampleSize,
+                    (rect.height() + sampleSize - 1) / sampleSize,
+                    Bitmap.Config.ARGB_8888);
+        }
+        try {
+            return mDecoderPool.decodeRegion(rect, options);
+        } catch (IllegalArgumentException e) {
+            if (options.inBitmap != null) {
+                // The pooled bitmap wasn't compatible after all; decode into a new one
+                options.inBitmap.recycle();
+                options.inBitmap = null;
+                return decodeRegion(rect, sampleSize, options);
+            }
+            Log.w(LOG_TAG, "Unable to decode region " + rect, e);
+        } catch (IllegalStateException e) {
+            // The decoder was recycled while this task was queued
+            Log.w(LOG_TAG, "Unable to decode region " + rect, e);
+        }
+        return null;
+    }
+
+    @Nullable
+    private Bitmap decodeRegion(Rect rect, int sampleSize, BitmapFactory.Options options) {
+        try {
+            return mDecoderPool.decodeRegion(rect, options);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Log.w(LOG_TAG, "Unable to decode region " + rect + " at 1/" + sampleSize, e);
+            return null;
+        }
+    }
+
+    private TileCache.Key getBaseLayerKey() {
+        return new TileCache.Key(
+                mSource.getKey(),
+                mBaseSampleSize,
+                BASE_LAYER_INDEX,
+                BASE_LAYER_INDEX);
+    }
+
+    private void onTileDecoded(Tile tile, Bitmap bitmap) {
+        if (tile.prefetch) {
+            final long key = getTileKey(tile.sampleSize, tile.column, tile.row);
+            if (mPrefetchTiles.get(key) == tile) {
+                mPrefetchTiles.remove(key);
+            }
+        }
+        if (bitmap == null) {
+            return;
+        }
+        if (tile.prefetch || tile.cancelled || mRecycled) {
+            // The tile is no longer wanted here, but it may well be wanted again soon
+            recycleOrCache(tile.cacheKey, bitmap);
+        } else {
+            tile.pendingBitmap = bitmap;
+            final Rect rect = tile.sourceRect;
+            mUploadQueue.add(
+                    tile,
+                    bitmap.getByteCount(),
+                    rect.left,
+                    rect.top,
+                    rect.right,
+                    rect.bottom,
+                    System.nanoTime());
+            invalidateSelf();
+        }
+    }
+
+    private void releaseStaleTiles(int generation) {
+        for (int i = mTiles.size() - 1; i >= 0; i--) {
+            final Tile tile = mTiles.valueAt(i);
+            if (tile.generation != generation) {
+                releaseTile(tile);
+                mTiles.removeAt(i);
+            }
+        }
+    }
+
+    private static long getTileKey(int sampleSize, int column, int row) {
+        return ((long) sampleSize << 48) | ((long) column << 24) | row;
+    }
+
+    private Tile newTile(int sampleSize, int column, int row, TileCache.Key cacheKey) {
+        final Tile tile = new Tile(sampleSize, column, row, cacheKey);
+        final int span = mTileSize * sampleSize;
+        tile.sourceRect.set(
+                column * span,
+                row * span,
+                Math.min((column + 1) * span, mWidth),
+                Math.min((row + 1) * span, mHeight));
+        return tile;
+    }
+
+    private void queueDecode(Tile tile) {
+        final Rect rect = tile.sourceRect;
+        tile.task = mDecodeGroup.submit(
+                (tile.prefetch ?
+                        DecodeScheduler.PRIORITY_PREFETCH :
+                        DecodeScheduler.PRIORITY_VISIBLE),
+                rect.left,
+                rect.top,
+                rect.right,
+                rect.bottom,
+                new DecodeTask(tile));
+    }
+
+    private void releaseTile(Tile tile) {
+        tile.cancelled = true;
+        if (tile.task != null) {
+            tile.task.cancel();
+        }
+        if (tile.pendingBitmap != null) {
+            mUploadQueue.remove(tile);
+            recycleOrCache(tile.cacheKey, tile.pendingBitmap);
+            tile.pendingBitmap = null;
+        }
+        if (tile.bitmap != null) {
+            recycleOrCache(tile.cacheKey, tile.bitmap);
+            tile.bitmap = null;
+        }
+    }
+
+    /**
+     * Moves this frame's budget of decoded tiles out of the upload queue and onto the canvas,
+     * and asks for another frame if any are left waiting.
+     */
+    private void uploadTiles() {
+        if (mUploadQueue.isEmpty()) {
+            mUploadQueue.getLastStats().reset();
+            return;
+        }
+
+        mUploadQueue.poll(
+                mViewport.left,
+                mViewport.top,
+                mViewport.right,
+                mViewport.bottom,
+                System.nanoTime(),
+                mUploadedTiles);
+        boolean completesLevel = false;
+        for (final Tile tile : mUploadedTiles) {
+            tile.bitmap = tile.pendingBitmap;
+            tile.pendingBitmap = null;
+            completesLevel |= (tile.sampleSize == mSampleSize);
+        }
+        mUploadedTiles.clear();
+
+        if (completesLevel && isLevelComplete(mGeneration)) {
+            // The fallback tiles from other levels are now completely covered
+            for (int i = mTiles.size() - 1; i >= 0; i--) {
+                final Tile other = mTiles.valueAt(i);
+                if (other.sampleSize != mSampleSize) {
+                    releaseTile(other);
+                    mTiles.removeAt(i);
+                }
+            }
+        }
+
+        if (!mUploadQueue.isEmpty() && !mUploadFramePosted) {
+            mUploadFramePosted = true;
+            ChoreographerCompat.postFrameCallback(mUploadFrameCallback);
+        }
+    }
+
+    private void recycleOrCache(@Nullable TileCache.Key key, Bitmap bitmap) {
+        final TileCache cache = mTileCache;
+        if (key == null || cache == null) {
+            bitmap.recycle();
+        } else {
+            cache.put(key, bitmap);
+        }
+    }
+
+    //endregion Private methods
+}
@@ -0,0 +1,187 @@
+package com.codepunk.demo.benchmark;
+
+import com.codepunk.demo.core.transform.Matrices;
+import com.codepunk.demo.core.transform.ScaleMode;
+import com.codepunk.demo.core.transform.TransformEngine;
+import com.codepunk.demo.core.transform.TransformValues;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-event cost of the work ImageViewInteractinator does in {@code onScroll},
+ * {@code onScale} and {@code computeScroll}: mapping a touch point into the image, then
+ * resolving, verifying and converting a transform to a matrix. Each benchmark walks a fixed
+ * touch path so that successive invocations clamp (or don't) the way a real gesture would.
+ * <p>
+ * Every benchmark should report 0 B/op under the gc profiler; anything else is a regression.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransformBenchmark {
+
+    //region Constants
+
+    // The size of the largest bundled demo image, nyc_subway_map.jpg
+    private static final int IMAGE_WIDTH = 3000;
+    private static final int IMAGE_HEIGHT = 3627;
+
+    // A 1080p phone in portrait
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    private static final float INITIAL_SCALE_FACTOR = 2.0f;
+    private static final float MAX_SCALE_FACTOR = 4.0f;
+    private static final float SPAN_DELTA = 1.02f;
+
+    // Must be a power of two
+    private static final int PATH_LENGTH = 256;
+
+    //endregion Constants
+
+    //region Fields
+
+    @Param
+    public ScaleMode scaleMode;
+
+    private final TransformEngine mEngine = new TransformEngine();
+    private final TransformValues mValues = new TransformValues();
+    private final float[] mMatrix = new float[Matrices.SIZE];
+    private final float[] mPivot = new float[2];
+    private final float[] mScrollableInfo = new float[2];
+    private final float[] mPath = new float[PATH_LENGTH * 2];
+    private int mIndex;
+
+    //endregion Fields
+
+    //region Methods
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        mEngine.setDrawableSize(IMAGE_WIDTH, IMAGE_HEIGHT);
+        mEngine.setContentBounds(0.0f, 0.0f, VIEW_WIDTH, VIEW_HEIGHT);
+        mEngine.setAlignment(scaleMode.getAlignX(), scaleMode.getAlignY());
+
+        // A Lissajous curve around the center of the view, like a finger wandering over it
+        final float cx = VIEW_WIDTH * 0.5f;
+        final float cy = VIEW_HEIGHT * 0.5f;
+        for (int i = 0; i < PATH_LENGTH; i++) {
+            final double theta = 2.0 * Math.PI * i / PATH_LENGTH;
+            mPath[i * 2] = (float) (cx + cx * 0.75 * Math.sin(3.0 * theta));
+            mPath[i * 2 + 1] = (float) (cy + cy * 0.75 * Math.sin(2.0 * theta));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        scaleMode.getBaselineMatrix(IMAGE_WIDTH, IMAGE_HEIGHT, VIEW_WIDTH, VIEW_HEIGHT, mMatrix);
+        final float sx = mMatrix[Matrices.MSCALE_X];
+        final float sy = mMatrix[Matrices.MSCALE_Y];
+        mEngine.setScaleLimits(sx, sy, sx * MAX_SCALE_FACTOR, sy * MAX_SCALE_FACTOR);
+
+        // Start zoomed in so that the image can be scrolled in both directions
+        mValues.reset();
+        mValues.sx = sx * INITIAL_SCALE_FACTOR;
+        mValues.sy = sy * INITIAL_SCALE_FACTOR;
+        mEngine.resolve(mMatrix, mValues);
+        mEngine.verify(mMatrix, mValues);
+        mEngine.toMatrix(mMatrix, mValues, mMatrix);
+
+        mPivot[0] = mPath[0];
+        mPivot[1] = mPath[1];
+        mEngine.viewPointsToImagePoints(mMatrix, mPivot, 0, 1);
+        mIndex = 0;
+    }
+
+    /**
+     * A fling frame in {@code computeScroll}: move the touch pivot to the scroller's position,
+     * then check whether the image can still scroll (for edge glows).
+     */
+    @Benchmark
+    public float[] computeScroll() {
+        final int i = nextIndex();
+        mValues.reset();
+        mValues.set(mPivot[0], mPivot[1], Float.NaN, Float.NaN, mPath[i], mPath[i + 1]);
+        mEngine.resolve(mMatrix, mValues);
+        mEngine.verify(mMatrix, mValues);
+        mEngine.toMatrix(mMatrix, mValues, mMatrix);
+        mEngine.getScrollableInfo(mMatrix, mScrollableInfo);
+        return mMatrix;
+    }
+
+    /**
+     * A pinch event in {@code onScale}: map the focus point into the image, then scale around
+     * it, alternately zooming in and out.
+     */
+    @Benchmark
+    public float[] onScale() {
+        final int i = nextIndex();
+        mPivot[0] = mPath[i];
+        mPivot[1] = mPath[i + 1];
+        mEngine.viewPointsToImagePoints(mMatrix, mPivot, 0, 1);
+        final float spanDelta = ((i & 2) == 0 ? SPAN_DELTA : 1.0f / SPAN_DELTA);
+        mValues.reset();
+        mValues.set(mPivot[0], mPivot[1], spanDelta, spanDelta, 0.0f, 0.0f);
+        mValues.scaleRelative = true;
+        mValues.moveRelative = true;
+        mEngine.resolve(mMatrix, mValues);
+        mEngine.verify(mMatrix, mValues);
+        mEngine.toMatrix(mMatrix, mValues, mMatrix);
+        return mMatrix;
+    }
+
+    /**
+     * A drag event in {@code onScroll}: move the touch pivot to the finger, and re-anchor the
+     * pivot under the finger if the move was clamped.
+     */
+    @Benchmark
+    public float[] onScroll() {
+        final int i = nextIndex();
+        mValues.reset();
+        mValues.set(mPivot[0], mPivot[1], Float.NaN, Float.NaN, mPath[i], mPath[i + 1]);
+        mEngine.resolve(mMatrix, mValues);
+        final boolean clamped = mEngine.verify(mMatrix, mValues);
+        mEngine.toMatrix(mMatrix, mValues, mMatrix);
+        if (clamped) {
+            mPivot[0] = mPath[i];
+            mPivot[1] = mPath[i + 1];
+            mEngine.viewPointsToImagePoints(mMatrix, mPivot, 0, 1);
+        }
+        return mMatrix;
+    }
+
+    /**
+     * The inverse mapping used for every touch pivot.
+     */
+    @Benchmark
+    public float[] viewPointToImagePoint() {
+        final int i = nextIndex();
+        mPivot[0] = mPath[i];
+        mPivot[1] = mPath[i + 1];
+        mEngine.viewPointsToImagePoints(mMatrix, mPivot, 0, 1);
+        return mPivot;
+    }
+
+    //endregion Methods
+
+    //region Private methods
+
+    private int nextIndex() {
+        final int index = mIndex;
+        mIndex = (mIndex + 1) & (PATH_LENGTH - 1);
+        return index * 2;
+    }
+
+    //endregion Private methods
+}
@@ -0,0 +1,21 @@
+package com.codepunk.demo.core.animation;
+
+/**
+ * A source of frame timestamps for animations. Rather than sampling the wall clock whenever an
+ * animation happens to be computed, an animation asks its FrameClock for the time at which the
+ * frame being produced is expected to be presented, so that every value it computes is correct
+ * for the moment it actually appears on screen.
+ */
+public interface FrameClock {
+
+    /**
+     * Returns the expected presentation time, in nanoseconds, of the frame currently being
+     * produced. The time base is that of {@link System#nanoTime()}.
+     */
+    long getFrameTimeNanos();
+
+    /**
+     * Returns the interval between frames, in nanoseconds.
+     */
+    long getFrameIntervalNanos();
+}
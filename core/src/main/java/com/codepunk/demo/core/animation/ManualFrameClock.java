@@ -0,0 +1,60 @@
+package com.codepunk.demo.core.animation;
+
+/**
+ * A {@link FrameClock} that only advances when told to, for driving animations from tests and
+ * benchmarks.
+ */
+public class ManualFrameClock implements FrameClock {
+
+    //region Fields
+
+    private final long mFrameIntervalNanos;
+    private long mFrameTimeNanos;
+
+    //endregion Fields
+
+    //region Constructors
+
+    /**
+     * Creates a new ManualFrameClock.
+     *
+     * @param refreshRate The simulated display refresh rate, in Hz
+     */
+    public ManualFrameClock(float refreshRate) {
+        mFrameIntervalNanos = Math.round(1.0e9 / refreshRate);
+    }
+
+    //endregion Constructors
+
+    //region Implemented methods
+
+    @Override // FrameClock
+    public long getFrameIntervalNanos() {
+        return mFrameIntervalNanos;
+    }
+
+    @Override // FrameClock
+    public long getFrameTimeNanos() {
+        return mFrameTimeNanos;
+    }
+
+    //endregion Implemented methods
+
+    //region Methods
+
+    /**
+     * Advances the clock by {@code frames} frame intervals.
+     *
+     * @return The new frame time
+     */
+    public long advanceFrames(int frames) {
+        mFrameTimeNanos += frames * mFrameIntervalNanos;
+        return mFrameTimeNanos;
+    }
+
+    public void setFrameTimeNanos(long frameTimeNanos) {
+        mFrameTimeNanos = frameTimeNanos;
+    }
+
+    //endregion Methods
+}
@@ -0,0 +1,323 @@
+package com.codepunk.demo.core.animation;
+
+/**
+ * The zoom momentum that follows a pinch: the scale keeps changing around an image pivot point
+ * at the release velocity, decaying under friction. If the momentum carries the scale past its
+ * minimum or maximum, it overshoots the limit and a critically-damped spring settles it back.
+ * The x and y scales are animated independently, since their limits may differ.
+ * <p>
+ * Like {@link TransformSpring}, time is supplied by the caller in nanoseconds, normally from a
+ * {@link FrameClock}, and each frame is solved analytically from the start of the fling.
+ * </p>
+ */
+public class ScaleFling {
+
+    //region Constants
+
+    /**
+     * The rate at which velocity decays, per second: velocity falls to 1/e of its value in
+     * 1/friction seconds.
+     */
+    public static final float DEFAULT_FRICTION = 4.0f;
+
+    /**
+     * The smallest release velocity, as a fraction of the current scale per second, that starts
+     * a fling.
+     */
+    public static final float MIN_VELOCITY_FRACTION = 0.25f;
+
+    /**
+     * The largest release velocity, as a fraction of the current scale per second.
+     */
+    public static final float MAX_VELOCITY_FRACTION = 8.0f;
+
+    private static final int PHASE_FINISHED = 0;
+    private static final int PHASE_DECAY = 1;
+    private static final int PHASE_SETTLE = 2;
+
+    private static final int CHANNEL_SX = 0;
+    private static final int CHANNEL_SY = 1;
+    private static final int CHANNEL_COUNT = 2;
+
+    /**
+     * The distance from the limit, as a fraction of the limit, at which a settling scale is
+     * considered at rest. Likewise, the momentum stops once the distance it has left to travel
+     * is less than this fraction of the scale.
+     */
+    private static final double THRESHOLD_FRACTION = 0.0005;
+
+    private static final double VELOCITY_THRESHOLD_SECONDS = 1.0 / 60.0;
+
+    private static final double NANOS_PER_SECOND = 1.0e9;
+
+    //endregion Constants
+
+    //region Fields
+
+    private double mFriction = DEFAULT_FRICTION;
+    private double mStiffness = TransformSpring.DEFAULT_STIFFNESS;
+
+    private float mPx;
+    private float mPy;
+
+    private final int[] mPhase = new int[CHANNEL_COUNT];
+    private final long[] mPhaseStartNanos = new long[CHANNEL_COUNT];
+    private final double[] mStart = new double[CHANNEL_COUNT];
+    private final double[] mStartVelocity = new double[CHANNEL_COUNT];
+    private final double[] mMin = new double[CHANNEL_COUNT];
+    private final double[] mMax = new double[CHANNEL_COUNT];
+    private final double[] mLimit = new double[CHANNEL_COUNT];
+    private final double[] mCurrent = new double[CHANNEL_COUNT];
+    private final double[] mVelocity = new double[CHANNEL_COUNT];
+    private final double[] mSolution = new double[2];
+
+    //endregion Fields
+
+    //region Methods
+
+    /**
+     * Computes the scale for a frame presented at {@code frameTimeNanos}.
+     *
+     * @return true if the fling was active, false if it had already finished
+     */
+    public boolean computeScale(long frameTimeNanos) {
+        if (isFinished()) {
+            return false;
+        }
+        for (int i = 0; i < CHANNEL_COUNT; i++) {
+            computeChannel(i, frameTimeNanos);
+        }
+        return true;
+    }
+
+    /**
+     * Starts a fling around the image point ({@code px}, {@code py}).
+     *
+     * @param vSx The scale velocity in the x direction, in scale units per second
+     * @param vSy The scale velocity in the y direction, in scale units per second
+     * @param frameTimeNanos The time at which the scale had the supplied values
+     * @return true if the fling started, false if the velocity was too small (or the scale was
+     * already at rest within its limits)
+     */
+    public boolean fling(
+            float px,
+            float py,
+            float sx,
+            float sy,
+            float vSx,
+            float vSy,
+            float minSx,
+            float minSy,
+            float maxSx,
+            float maxSy,
+            long frameTimeNanos) {
+        mPx = px;
+        mPy = py;
+        final boolean started = startChannel(CHANNEL_SX, sx, vSx, minSx, maxSx, frameTimeNanos) |
+                startChannel(CHANNEL_SY, sy, vSy, minSy, maxSy, frameTimeNanos);
+        if (!started) {
+            forceFinished();
+        }
+        return started;
+    }
+
+    /**
+     * Stops the fling where it is.
+     */
+    public void forceFinished() {
+        for (int i = 0; i < CHANNEL_COUNT; i++) {
+            mPhase[i] = PHASE_FINISHED;
+            mVelocity[i] = 0.0;
+        }
+    }
+
+    public float getCurrentSx() {
+        return (float) mCurrent[CHANNEL_SX];
+    }
+
+    public float getCurrentSy() {
+        return (float) mCurrent[CHANNEL_SY];
+    }
+
+    /**
+     * Returns the scale in the x direction at which the fling will come to rest.
+     */
+    public float getFinalSx() {
+        return (float) getFinal(CHANNEL_SX);
+    }
+
+    /**
+     * Returns the scale in the y direction at which the fling will come to rest.
+     */
+    public float getFinalSy() {
+        return (float) getFinal(CHANNEL_SY);
+    }
+
+    public float getFriction() {
+        return (float) mFriction;
+    }
+
+    public float getPx() {
+        return mPx;
+    }
+
+    public float getPy() {
+        return mPy;
+    }
+
+    public float getVelocitySx() {
+        return (float) mVelocity[CHANNEL_SX];
+    }
+
+    public float getVelocitySy() {
+        return (float) mVelocity[CHANNEL_SY];
+    }
+
+    public boolean isFinished() {
+        return mPhase[CHANNEL_SX] == PHASE_FINISHED && mPhase[CHANNEL_SY] == PHASE_FINISHED;
+    }
+
+    /**
+     * Returns whether the current scale lies outside of its limits, that is, whether the fling
+     * is overshooting a limit.
+     */
+    public boolean isOverScaled() {
+        for (int i = 0; i < CHANNEL_COUNT; i++) {
+            if (mCurrent[i] < mMin[i] || mCurrent[i] > mMax[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void setFriction(float friction) {
+        if (friction <= 0.0f) {
+            throw new IllegalArgumentException("Friction must be greater than 0");
+        }
+        mFriction = friction;
+    }
+
+    /**
+     * Sets the stiffness of the spring that settles an overshoot back to the limit.
+     */
+    public void setStiffness(float stiffness) {
+        if (stiffness <= 0.0f) {
+            throw new IllegalArgumentException("Spring stiffness must be greater than 0");
+        }
+        mStiffness = stiffness;
+    }
+
+    //endregion Methods
+
+    //region Private methods
+
+    private void computeChannel(int i, long frameTimeNanos) {
+        final double t = Math.max(frameTimeNanos - mPhaseStartNanos[i], 0L) / NANOS_PER_SECOND;
+        switch (mPhase[i]) {
+            case PHASE_DECAY: {
+                final double s0 = mStart[i];
+                final double v0 = mStartVelocity[i];
+                final double decay = Math.exp(-mFriction * t);
+                final double s = s0 + v0 / mFriction * (1.0 - decay);
+                final double limit = (v0 > 0.0 ? mMax[i] : mMin[i]);
+                if ((v0 > 0.0 && s > limit) || (v0 < 0.0 && s < limit)) {
+                    // The momentum crossed the limit at some time since the fling started; the
+                    // velocity at that moment carries it into the overshoot
+                    final double vLimit = v0 - mFriction * (limit - s0);
+                    final double tLimit = -Math.log(vLimit / v0) / mFriction;
+                    startSettle(i, 0.0, vLimit,
+                            mPhaseStartNanos[i] + (long) (tLimit * NANOS_PER_SECOND), limit);
+                    computeChannel(i, frameTimeNanos);
+                } else {
+                    mCurrent[i] = s;
+                    mVelocity[i] = v0 * decay;
+                    final double remaining = mVelocity[i] / mFriction;
+                    if (Math.abs(remaining) < THRESHOLD_FRACTION * s) {
+                        mPhase[i] = PHASE_FINISHED;
+                        mCurrent[i] = s + remaining;
+                        mVelocity[i] = 0.0;
+                    }
+                }
+                break;
+            }
+            case PHASE_SETTLE: {
+                TransformSpring.solve(
+                        Math.sqrt(mStiffness),
+                        TransformSpring.DAMPING_RATIO_NO_BOUNCY,
+                        mStart[i],
+                        mStartVelocity[i],
+                        t,
+                        mSolution);
+                final double limit = mLimit[i];
+                final double threshold = THRESHOLD_FRACTION * limit;
+                if (Math.abs(mSolution[0]) < threshold &&
+                        Math.abs(mSolution[1]) * VELOCITY_THRESHOLD_SECONDS < threshold) {
+                    mPhase[i] = PHASE_FINISHED;
+                    mCurrent[i] = limit;
+                    mVelocity[i] = 0.0;
+                } else {
+                    mCurrent[i] = limit + mSolution[0];
+                    mVelocity[i] = mSolution[1];
+                }
+                break;
+            }
+        }
+    }
+
+    private double getFinal(int i) {
+        switch (mPhase[i]) {
+            case PHASE_DECAY: {
+                final double s = mStart[i] + mStartVelocity[i] / mFriction;
+                return Math.max(mMin[i], Math.min(s, mMax[i]));
+            }
+            case PHASE_SETTLE:
+                return mLimit[i];
+            default:
+                return mCurrent[i];
+        }
+    }
+
+    private boolean startChannel(
+            int i,
+            double s,
+            double v,
+            double min,
+            double max,
+            long frameTimeNanos) {
+        mMin[i] = min;
+        mMax[i] = max;
+        mCurrent[i] = s;
+        mVelocity[i] = 0.0;
+        mPhase[i] = PHASE_FINISHED;
+
+        final double maxVelocity = MAX_VELOCITY_FRACTION * s;
+        v = Math.max(-maxVelocity, Math.min(v, maxVelocity));
+        if (s < min || s > max) {
+            startSettle(i, s - (s < min ? min : max), v, frameTimeNanos, (s < min ? min : max));
+        } else if (Math.abs(v) >= MIN_VELOCITY_FRACTION * s) {
+            mPhase[i] = PHASE_DECAY;
+            mPhaseStartNanos[i] = frameTimeNanos;
+            mStart[i] = s;
+            mStartVelocity[i] = v;
+            mVelocity[i] = v;
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts settling toward {@code limit} from a displacement {@code x0} beyond it.
+     */
+    private void startSettle(int i, double x0, double v0, long startNanos, double limit) {
+        mPhase[i] = PHASE_SETTLE;
+        mPhaseStartNanos[i] = startNanos;
+        mStart[i] = x0;
+        mStartVelocity[i] = v0;
+        mLimit[i] = limit;
+        mCurrent[i] = limit + x0;
+        mVelocity[i] = v0;
+    }
+
+    //endregion Private methods
+}
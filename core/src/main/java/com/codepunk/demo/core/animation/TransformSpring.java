@@ -0,0 +1,434 @@
+package com.codepunk.demo.core.animation;
+
+/**
+ * A physics-based animation of a transform: a scale around an image pivot point together with
+ * the view location of that pivot, each driven toward its end value by a damped spring. Unlike
+ * {@link TransformTween}, a spring has no fixed duration, so it can be retargeted at any time and
+ * the motion continues smoothly from its current velocity instead of restarting from rest.
+ * <p>
+ * Time is supplied by the caller in nanoseconds, normally from a {@link FrameClock}. Each
+ * channel is solved analytically from the time of the previous frame, so the result doesn't
+ * depend on the frame rate.
+ * </p>
+ */
+public class TransformSpring {
+
+    //region Constants
+
+    /**
+     * A stiffness that settles a critically-damped spring in roughly 300ms.
+     */
+    public static final float DEFAULT_STIFFNESS = 500.0f;
+
+    /**
+     * A damping ratio that reaches the end value as quickly as possible without overshooting.
+     */
+    public static final float DAMPING_RATIO_NO_BOUNCY = 1.0f;
+
+    private static final int CHANNEL_SX = 0;
+    private static final int CHANNEL_SY = 1;
+    private static final int CHANNEL_X = 2;
+    private static final int CHANNEL_Y = 3;
+    private static final int CHANNEL_COUNT = 4;
+
+    /**
+     * The distance from the end value, as a fraction of the end scale, at which a scale channel
+     * is considered at rest.
+     */
+    private static final double SCALE_THRESHOLD_FRACTION = 0.0005;
+
+    /**
+     * The distance from the end value, in pixels, at which a position channel is considered at
+     * rest.
+     */
+    private static final double POSITION_THRESHOLD = 0.25;
+
+    /**
+     * Rest thresholds for velocity, expressed as the threshold distance covered per this many
+     * seconds.
+     */
+    private static final double VELOCITY_THRESHOLD_SECONDS = 1.0 / 60.0;
+
+    private static final double NANOS_PER_SECOND = 1.0e9;
+
+    //endregion Constants
+
+    //region Fields
+
+    private double mStiffness = DEFAULT_STIFFNESS;
+    private double mDampingRatio = DAMPING_RATIO_NO_BOUNCY;
+
+    /**
+     * How long velocity is kept after the animation is interrupted, in nanoseconds.
+     */
+    private long mVelocityRetentionNanos;
+
+    /**
+     * Whether or not the current transform has finished.
+     */
+    private boolean mFinished = true;
+
+    /**
+     * The time of the most recently computed frame, in nanoseconds.
+     */
+    private long mFrameTimeNanos;
+
+    /**
+     * The time the velocity was last handed off or the animation interrupted, in nanoseconds.
+     */
+    private long mVelocityTimeNanos;
+
+    private boolean mHasVelocity;
+
+    private float mPx;
+    private float mPy;
+
+    private final double[] mCurrent = new double[CHANNEL_COUNT];
+    private final double[] mVelocity = new double[CHANNEL_COUNT];
+    private final double[] mEnd = new double[CHANNEL_COUNT];
+    private final double[] mSolution = new double[2];
+
+    //endregion Fields
+
+    //region Constructors
+
+    /**
+     * Creates a new TransformSpring.
+     *
+     * @param velocityRetentionNanos How long, in nanoseconds, the velocity of an interrupted
+     * animation (or one handed off by {@link #setVelocity}) remains available to the next
+     * {@link #startTransform}
+     */
+    public TransformSpring(long velocityRetentionNanos) {
+        mVelocityRetentionNanos = velocityRetentionNanos;
+    }
+
+    //endregion Constructors
+
+    //region Methods
+
+    /**
+     * Aborts the animation, setting the current values to the ending values and discarding the
+     * velocity.
+     */
+    public void abortAnimation() {
+        mFinished = true;
+        mHasVelocity = false;
+        for (int i = 0; i < CHANNEL_COUNT; i++) {
+            mCurrent[i] = mEnd[i];
+            mVelocity[i] = 0.0;
+        }
+    }
+
+    /**
+     * Computes the transform for a frame presented at {@code frameTimeNanos}.
+     *
+     * @return true if the animation was active, false if it had already finished
+     */
+    public boolean computeTransform(long frameTimeNanos) {
+        if (mFinished) {
+            return false;
+        }
+
+        advance(frameTimeNanos);
+        if (isAtRest()) {
+            abortAnimation();
+        }
+        return true;
+    }
+
+    /**
+     * Forces the finished state to the given value. Unlike {@link #abortAnimation()}, the current
+     * values aren't set to the ending values.
+     */
+    public void forceFinished(boolean finished) {
+        mFinished = finished;
+    }
+
+    public float getCurrentSx() {
+        return (float) mCurrent[CHANNEL_SX];
+    }
+
+    public float getCurrentSy() {
+        return (float) mCurrent[CHANNEL_SY];
+    }
+
+    public float getCurrentX() {
+        return (float) mCurrent[CHANNEL_X];
+    }
+
+    public float getCurrentY() {
+        return (float) mCurrent[CHANNEL_Y];
+    }
+
+    public float getDampingRatio() {
+        return (float) mDampingRatio;
+    }
+
+    public float getEndSx() {
+        return (float) mEnd[CHANNEL_SX];
+    }
+
+    public float getEndSy() {
+        return (float) mEnd[CHANNEL_SY];
+    }
+
+    public float getEndX() {
+        return (float) mEnd[CHANNEL_X];
+    }
+
+    public float getEndY() {
+        return (float) mEnd[CHANNEL_Y];
+    }
+
+    public float getPx() {
+        return mPx;
+    }
+
+    public float getPy() {
+        return mPy;
+    }
+
+    public float getStiffness() {
+        return (float) mStiffness;
+    }
+
+    /**
+     * Returns the scale velocity in the x direction, in scale units per second.
+     */
+    public float getVelocitySx() {
+        return (float) mVelocity[CHANNEL_SX];
+    }
+
+    /**
+     * Returns the scale velocity in the y direction, in scale units per second.
+     */
+    public float getVelocitySy() {
+        return (float) mVelocity[CHANNEL_SY];
+    }
+
+    /**
+     * Returns the velocity of the pivot point in the x direction, in pixels per second.
+     */
+    public float getVelocityX() {
+        return (float) mVelocity[CHANNEL_X];
+    }
+
+    /**
+     * Returns the velocity of the pivot point in the y direction, in pixels per second.
+     */
+    public float getVelocityY() {
+        return (float) mVelocity[CHANNEL_Y];
+    }
+
+    /**
+     * Holds the animation at its current values for a frame presented at {@code frameTimeNanos}:
+     * the next frame continues from here as though no time had passed, with the same velocity.
+     * Lets a caller delay the end of an animation (for example, until the content it lands on is
+     * ready) without a jump when it resumes.
+     */
+    public void hold(long frameTimeNanos) {
+        if (!mFinished) {
+            mFrameTimeNanos = frameTimeNanos;
+        }
+    }
+
+    /**
+     * Stops the animation where it is at {@code frameTimeNanos} (for example, when the user
+     * touches the view) while remembering its velocity, so that a transform started shortly
+     * afterward continues the motion rather than starting from rest.
+     */
+    public void interrupt(long frameTimeNanos) {
+        if (!mFinished) {
+            advance(frameTimeNanos);
+            mFinished = true;
+            mHasVelocity = true;
+            mVelocityTimeNanos = frameTimeNanos;
+        }
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    public void setDampingRatio(float dampingRatio) {
+        if (dampingRatio < 0.0f) {
+            throw new IllegalArgumentException("Damping ratio must be non-negative");
+        }
+        mDampingRatio = dampingRatio;
+    }
+
+    public void setStiffness(float stiffness) {
+        if (stiffness <= 0.0f) {
+            throw new IllegalArgumentException("Spring stiffness must be greater than 0");
+        }
+        mStiffness = stiffness;
+    }
+
+    /**
+     * Hands off the velocity of a gesture that has just ended, so that a transform started
+     * shortly afterward continues its motion.
+     *
+     * @param px The x coordinate of the image point whose view location the velocity describes
+     * @param py The y coordinate of the image point whose view location the velocity describes
+     * @param vSx The scale velocity in the x direction, in scale units per second
+     * @param vSy The scale velocity in the y direction, in scale units per second
+     * @param vX The velocity of the pivot point in the x direction, in pixels per second
+     * @param vY The velocity of the pivot point in the y direction, in pixels per second
+     * @param frameTimeNanos The time at which the gesture had this velocity
+     */
+    public void setVelocity(
+            float px,
+            float py,
+            float vSx,
+            float vSy,
+            float vX,
+            float vY,
+            long frameTimeNanos) {
+        mPx = px;
+        mPy = py;
+        mVelocity[CHANNEL_SX] = vSx;
+        mVelocity[CHANNEL_SY] = vSy;
+        mVelocity[CHANNEL_X] = vX;
+        mVelocity[CHANNEL_Y] = vY;
+        mHasVelocity = true;
+        mVelocityTimeNanos = frameTimeNanos;
+    }
+
+    public void setVelocityRetentionNanos(long velocityRetentionNanos) {
+        mVelocityRetentionNanos = velocityRetentionNanos;
+    }
+
+    /**
+     * Starts (or retargets) a transform from the supplied current values to the supplied end
+     * values. If the animation is running, or was interrupted or handed a velocity recently, the
+     * motion continues with that velocity. Otherwise it starts from rest.
+     *
+     * @param frameTimeNanos The time at which the current values are presented
+     */
+    public void startTransform(
+            float px,
+            float py,
+            float currentSx,
+            float currentSy,
+            float currentX,
+            float currentY,
+            float endSx,
+            float endSy,
+            float endX,
+            float endY,
+            long frameTimeNanos) {
+        if (!mFinished) {
+            advance(frameTimeNanos);
+        } else if (!mHasVelocity ||
+                frameTimeNanos - mVelocityTimeNanos > mVelocityRetentionNanos) {
+            for (int i = 0; i < CHANNEL_COUNT; i++) {
+                mVelocity[i] = 0.0;
+            }
+        }
+
+        // The velocity describes the view location of the old pivot. The location of any other
+        // image point is x + s * (p - px), so its velocity is vX + vS * (p - px).
+        mVelocity[CHANNEL_X] += mVelocity[CHANNEL_SX] * (px - mPx);
+        mVelocity[CHANNEL_Y] += mVelocity[CHANNEL_SY] * (py - mPy);
+
+        mPx = px;
+        mPy = py;
+        mCurrent[CHANNEL_SX] = currentSx;
+        mCurrent[CHANNEL_SY] = currentSy;
+        mCurrent[CHANNEL_X] = currentX;
+        mCurrent[CHANNEL_Y] = currentY;
+        mEnd[CHANNEL_SX] = endSx;
+        mEnd[CHANNEL_SY] = endSy;
+        mEnd[CHANNEL_X] = endX;
+        mEnd[CHANNEL_Y] = endY;
+        mFrameTimeNanos = frameTimeNanos;
+        mHasVelocity = false;
+        mFinished = false;
+    }
+
+    //endregion Methods
+
+    //region Private methods
+
+    /**
+     * Advances every channel from the previous frame time to {@code frameTimeNanos}.
+     */
+    private void advance(long frameTimeNanos) {
+        final long elapsedNanos = frameTimeNanos - mFrameTimeNanos;
+        if (elapsedNanos <= 0L) {
+            return;
+        }
+        mFrameTimeNanos = frameTimeNanos;
+
+        final double t = elapsedNanos / NANOS_PER_SECOND;
+        final double omega = Math.sqrt(mStiffness);
+        for (int i = 0; i < CHANNEL_COUNT; i++) {
+            solve(omega, mDampingRatio, mCurrent[i] - mEnd[i], mVelocity[i], t, mSolution);
+            mCurrent[i] = mEnd[i] + mSolution[0];
+            mVelocity[i] = mSolution[1];
+        }
+    }
+
+    private boolean isAtRest() {
+        for (int i = 0; i < CHANNEL_COUNT; i++) {
+            final double threshold = (i < CHANNEL_X ?
+                    SCALE_THRESHOLD_FRACTION * Math.abs(mEnd[i]) :
+                    POSITION_THRESHOLD);
+            if (Math.abs(mCurrent[i] - mEnd[i]) > threshold ||
+                    Math.abs(mVelocity[i]) * VELOCITY_THRESHOLD_SECONDS > threshold) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //endregion Private methods
+
+    //region Package-private methods
+
+    /**
+     * Solves the motion of a damped spring with unit mass.
+     *
+     * @param omega The spring's natural frequency, the square root of its stiffness
+     * @param zeta The spring's damping ratio
+     * @param x0 The initial displacement from the spring's rest position
+     * @param v0 The initial velocity
+     * @param t The elapsed time, in seconds
+     * @param out Receives the displacement and velocity at time {@code t}
+     */
+    static void solve(double omega, double zeta, double x0, double v0, double t, double[] out) {
+        if (zeta < 1.0) {
+            // Under-damped
+            final double omegaD = omega * Math.sqrt(1.0 - zeta * zeta);
+            final double decay = Math.exp(-zeta * omega * t);
+            final double a = x0;
+            final double b = (v0 + zeta * omega * x0) / omegaD;
+            final double cos = Math.cos(omegaD * t);
+            final double sin = Math.sin(omegaD * t);
+            out[0] = decay * (a * cos + b * sin);
+            out[1] = decay * ((b * omegaD - zeta * omega * a) * cos -
+                    (a * omegaD + zeta * omega * b) * sin);
+        } else if (zeta == 1.0) {
+            // Critically damped
+            final double decay = Math.exp(-omega * t);
+            final double a = x0;
+            final double b = v0 + omega * x0;
+            out[0] = (a + b * t) * decay;
+            out[1] = (b - omega * (a + b * t)) * decay;
+        } else {
+            // Over-damped
+            final double root = omega * Math.sqrt(zeta * zeta - 1.0);
+            final double r1 = -zeta * omega + root;
+            final double r2 = -zeta * omega - root;
+            final double c2 = (v0 - r1 * x0) / (r2 - r1);
+            final double c1 = x0 - c2;
+            final double e1 = Math.exp(r1 * t);
+            final double e2 = Math.exp(r2 * t);
+            out[0] = c1 * e1 + c2 * e2;
+            out[1] = c1 * r1 * e1 + c2 * r2 * e2;
+        }
+    }
+
+    //endregion Package-private methods
+}
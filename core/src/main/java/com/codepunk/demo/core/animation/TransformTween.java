@@ -0,0 +1,179 @@
+package com.codepunk.demo.core.animation;
+
+/**
+ * A fixed-duration, decelerating animation of a transform: a scale around an image pivot point
+ * together with the view location of that pivot. Time is supplied by the caller in nanoseconds,
+ * normally from a {@link FrameClock}, so that each frame shows the transform for the moment it
+ * will be presented.
+ */
+public class TransformTween {
+
+    //region Fields
+
+    /**
+     * The total animation duration, in nanoseconds.
+     */
+    private long mDurationNanos;
+
+    /**
+     * Whether or not the current transform has finished.
+     */
+    private boolean mFinished = true;
+
+    /**
+     * The time the transform started, in nanoseconds.
+     */
+    private long mStartTimeNanos;
+
+    private float mPx;
+    private float mPy;
+
+    private float mStartSx;
+    private float mStartSy;
+    private float mStartX;
+    private float mStartY;
+
+    private float mCurrentSx;
+    private float mCurrentSy;
+    private float mCurrentX;
+    private float mCurrentY;
+
+    private float mEndSx;
+    private float mEndSy;
+    private float mEndX;
+    private float mEndY;
+
+    //endregion Fields
+
+    //region Constructors
+
+    public TransformTween(long durationNanos) {
+        mDurationNanos = durationNanos;
+    }
+
+    //endregion Constructors
+
+    //region Methods
+
+    /**
+     * Aborts the animation, setting the current values to the ending values.
+     */
+    public void abortAnimation() {
+        mFinished = true;
+        mCurrentSx = mEndSx;
+        mCurrentSy = mEndSy;
+        mCurrentX = mEndX;
+        mCurrentY = mEndY;
+    }
+
+    /**
+     * Computes the transform for a frame presented at {@code frameTimeNanos}.
+     *
+     * @return true if the animation was active, false if it had already finished
+     */
+    public boolean computeTransform(long frameTimeNanos) {
+        if (mFinished) {
+            return false;
+        }
+
+        final long elapsedNanos = frameTimeNanos - mStartTimeNanos;
+        if (elapsedNanos >= mDurationNanos) {
+            abortAnimation();
+        } else {
+            final float fraction =
+                    (elapsedNanos <= 0L ? 0.0f : (float) elapsedNanos / mDurationNanos);
+            final float interpolation = decelerate(fraction);
+            mCurrentSx = mStartSx + (mEndSx - mStartSx) * interpolation;
+            mCurrentSy = mStartSy + (mEndSy - mStartSy) * interpolation;
+            mCurrentX = mStartX + (mEndX - mStartX) * interpolation;
+            mCurrentY = mStartY + (mEndY - mStartY) * interpolation;
+        }
+        return true;
+    }
+
+    /**
+     * Forces the finished state to the given value. Unlike {@link #abortAnimation()}, the current
+     * values aren't set to the ending values.
+     */
+    public void forceFinished(boolean finished) {
+        mFinished = finished;
+    }
+
+    public float getCurrentSx() {
+        return mCurrentSx;
+    }
+
+    public float getCurrentSy() {
+        return mCurrentSy;
+    }
+
+    public float getCurrentX() {
+        return mCurrentX;
+    }
+
+    public float getCurrentY() {
+        return mCurrentY;
+    }
+
+    public long getDurationNanos() {
+        return mDurationNanos;
+    }
+
+    public float getPx() {
+        return mPx;
+    }
+
+    public float getPy() {
+        return mPy;
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    public void setDurationNanos(long durationNanos) {
+        mDurationNanos = durationNanos;
+    }
+
+    /**
+     * Starts a transform from the supplied start values to the supplied end values.
+     *
+     * @param startTimeNanos The time at which the start values are (or would have been)
+     * presented
+     */
+    public void startTransform(
+            float px,
+            float py,
+            float startSx,
+            float startSy,
+            float startX,
+            float startY,
+            float endSx,
+            float endSy,
+            float endX,
+            float endY,
+            long startTimeNanos) {
+        mStartTimeNanos = startTimeNanos;
+        mPx = px;
+        mPy = py;
+        mCurrentSx = mStartSx = startSx;
+        mCurrentSy = mStartSy = startSy;
+        mCurrentX = mStartX = startX;
+        mCurrentY = mStartY = startY;
+        mEndSx = endSx;
+        mEndSy = endSy;
+        mEndX = endX;
+        mEndY = endY;
+        mFinished = false;
+    }
+
+    /**
+     * The curve of {@code android.view.animation.DecelerateInterpolator} with its default
+     * factor.
+     */
+    public static float decelerate(float fraction) {
+        return 1.0f - (1.0f - fraction) * (1.0f - fraction);
+    }
+
+    //endregion Methods
+}
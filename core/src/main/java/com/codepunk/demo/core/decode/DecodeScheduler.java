@@ -0,0 +1,440 @@
+package com.codepunk.demo.core.decode;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules background image work (decoding tiles, loading images) in priority order on a
+ * bounded number of threads. Work is submitted to a {@link Group}, normally one per image, which
+ * knows that image's viewport:
+ * <ul>
+ * <li>Tasks run in order of priority class ({@link #PRIORITY_VISIBLE}, then
+ * {@link #PRIORITY_PREFETCH}, then {@link #PRIORITY_IDLE}), then of distance from the center of
+ * their group's viewport relative to its size, then in the order they were submitted.</li>
+ * <li>When a group's viewport moves, its visible tasks whose regions have left the viewport are
+ * cancelled before they start.</li>
+ * <li>No more than a fixed number of tasks run at once, whatever the executor.</li>
+ * </ul>
+ * The threads are supplied by an {@link Executor}, to which the scheduler hands workers that
+ * each run queued tasks until there are none left. Any executor will do; tests can use one that
+ * runs workers only when told to.
+ */
+public class DecodeScheduler {
+
+    //region Nested classes
+
+    /**
+     * The tasks for one image, which share a viewport. Regions and viewports are in whatever
+     * coordinates the group's owner likes, typically image pixels.
+     */
+    public static class Group {
+
+        //region Fields
+
+        private final DecodeScheduler mScheduler;
+
+        private boolean mHasViewport;
+        private float mLeft;
+        private float mTop;
+        private float mRight;
+        private float mBottom;
+
+        //endregion Fields
+
+        //region Constructors
+
+        Group(DecodeScheduler scheduler) {
+            mScheduler = scheduler;
+        }
+
+        //endregion Constructors
+
+        //region Methods
+
+        /**
+         * Cancels every task in this group that has not started yet.
+         */
+        public void cancelAll() {
+            synchronized (mScheduler) {
+                final ArrayList<Task> pending = mScheduler.mPending;
+                for (int i = pending.size() - 1; i >= 0; i--) {
+                    final Task task = pending.get(i);
+                    if (task.mGroup == this) {
+                        task.mCancelled = true;
+                        mScheduler.removePending(i);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Sets the visible region, cancelling the {@link #PRIORITY_VISIBLE} tasks that have not
+         * started yet and whose regions no longer intersect it.
+         */
+        public void setViewport(float left, float top, float right, float bottom) {
+            synchronized (mScheduler) {
+                mHasViewport = true;
+                mLeft = left;
+                mTop = top;
+                mRight = right;
+                mBottom = bottom;
+                final ArrayList<Task> pending = mScheduler.mPending;
+                for (int i = pending.size() - 1; i >= 0; i--) {
+                    final Task task = pending.get(i);
+                    if (task.mGroup == this &&
+                            task.mPriority == PRIORITY_VISIBLE &&
+                            task.mHasRegion &&
+                            !intersectsViewport(task)) {
+                        task.mCancelled = true;
+                        mScheduler.removePending(i);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Queues {@code work} for the region of the image it concerns.
+         */
+        public Task submit(
+                int priority,
+                float left,
+                float top,
+                float right,
+                float bottom,
+                Runnable work) {
+            final Task task = new Task(this, priority, work);
+            task.mHasRegion = true;
+            task.mLeft = left;
+            task.mTop = top;
+            task.mRight = right;
+            task.mBottom = bottom;
+            mScheduler.enqueue(task);
+            return task;
+        }
+
+        /**
+         * Queues {@code work} that concerns the whole image. It is ordered as though it were at
+         * the center of the viewport, and is never cancelled by a change of viewport.
+         */
+        public Task submit(int priority, Runnable work) {
+            final Task task = new Task(this, priority, work);
+            mScheduler.enqueue(task);
+            return task;
+        }
+
+        //endregion Methods
+
+        //region Private methods
+
+        /**
+         * Returns the squared distance of the center of {@code task}'s region from the center of
+         * the viewport, in units of half the viewport's diagonal. Called with the scheduler
+         * locked.
+         */
+        private float getDistance(Task task) {
+            if (!mHasViewport || !task.mHasRegion) {
+                return 0.0f;
+            }
+            final float halfWidth = (mRight - mLeft) * 0.5f;
+            final float halfHeight = (mBottom - mTop) * 0.5f;
+            final float extent = halfWidth * halfWidth + halfHeight * halfHeight;
+            if (extent <= 0.0f) {
+                return 0.0f;
+            }
+            final float dx = (task.mLeft + task.mRight - mLeft - mRight) * 0.5f;
+            final float dy = (task.mTop + task.mBottom - mTop - mBottom) * 0.5f;
+            return (dx * dx + dy * dy) / extent;
+        }
+
+        private boolean intersectsViewport(Task task) {
+            return task.mLeft < mRight && mLeft < task.mRight &&
+                    task.mTop < mBottom && mTop < task.mBottom;
+        }
+
+        //endregion Private methods
+    }
+
+    /**
+     * A unit of work queued with a {@link Group}.
+     */
+    public static class Task {
+
+        //region Fields
+
+        private final Group mGroup;
+        private final Runnable mWork;
+        private final long mSequence;
+        private int mPriority;
+
+        private boolean mHasRegion;
+        private float mLeft;
+        private float mTop;
+        private float mRight;
+        private float mBottom;
+
+        private volatile boolean mCancelled;
+
+        //endregion Fields
+
+        //region Constructors
+
+        Task(Group group, int priority, Runnable work) {
+            mGroup = group;
+            mWork = work;
+            mPriority = priority;
+            mSequence = group.mScheduler.mNextSequence.getAndIncrement();
+        }
+
+        //endregion Constructors
+
+        //region Methods
+
+        /**
+         * Cancels the task. A task that has not started yet never runs; one that is running may
+         * poll {@link #isCancelled()} to stop early.
+         */
+        public void cancel() {
+            final DecodeScheduler scheduler = mGroup.mScheduler;
+            synchronized (scheduler) {
+                mCancelled = true;
+                final int index = scheduler.mPending.indexOf(this);
+                if (index >= 0) {
+                    scheduler.removePending(index);
+                }
+            }
+        }
+
+        public int getPriority() {
+            synchronized (mGroup.mScheduler) {
+                return mPriority;
+            }
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /**
+         * Moves the task to another priority class, if it has not started yet.
+         */
+        public void setPriority(int priority) {
+            synchronized (mGroup.mScheduler) {
+                mPriority = priority;
+            }
+        }
+
+        //endregion Methods
+    }
+
+    //endregion Nested classes
+
+    //region Constants
+
+    /**
+     * For work whose result is needed on screen now.
+     */
+    public static final int PRIORITY_VISIBLE = 0;
+
+    /**
+     * For work whose result is expected to be needed soon, such as the destination of a fling.
+     */
+    public static final int PRIORITY_PREFETCH = 1;
+
+    /**
+     * For work that might be needed eventually, done only when nothing else is waiting.
+     */
+    public static final int PRIORITY_IDLE = 2;
+
+    //endregion Constants
+
+    //region Fields
+
+    private static DecodeScheduler sDefault;
+
+    private final Executor mExecutor;
+    private final int mMaxConcurrency;
+
+    // Guarded by this
+    private final ArrayList<Task> mPending = new ArrayList<>();
+    private int mWorkerCount;
+
+    private final AtomicLong mNextSequence = new AtomicLong();
+
+    /**
+     * Runs tasks until none are left. Each worker holds one of the {@link #mMaxConcurrency}
+     * slots while it runs.
+     */
+    private final Runnable mWorker = new Runnable() {
+        @Override
+        public void run() {
+            boolean exhausted = false;
+            try {
+                Task task;
+                while ((task = takeNext()) != null) {
+                    task.mWork.run();
+                }
+                exhausted = true;
+            } finally {
+                if (!exhausted) {
+                    // The work threw; give up the slot and let another worker carry on
+                    synchronized (DecodeScheduler.this) {
+                        mWorkerCount--;
+                    }
+                    startWorker();
+                }
+            }
+        }
+    };
+
+    //endregion Fields
+
+    //region Constructors
+
+    /**
+     * @param executor Runs the scheduler's workers
+     * @param maxConcurrency The most tasks to run at once
+     */
+    public DecodeScheduler(Executor executor, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
+        mExecutor = executor;
+        mMaxConcurrency = maxConcurrency;
+    }
+
+    //endregion Constructors
+
+    //region Methods
+
+    public int getMaxConcurrency() {
+        return mMaxConcurrency;
+    }
+
+    /**
+     * Returns the number of tasks waiting to start.
+     */
+    public synchronized int getPendingCount() {
+        return mPending.size();
+    }
+
+    public Group newGroup() {
+        return new Group(this);
+    }
+
+    /**
+     * Returns the scheduler shared by every image viewer in the process, creating it if needed.
+     * Unless one was set with {@link #setDefault(DecodeScheduler)}, it runs tasks on background
+     * threads, at most {@link #getDefaultConcurrency()} at a time.
+     */
+    public static synchronized DecodeScheduler getDefault() {
+        if (sDefault == null) {
+            final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "Decode #" + mCount.incrementAndGet());
+                    thread.setDaemon(true);
+
+                    // Below the UI thread; on Android this maps to a background nice value
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+            sDefault = new DecodeScheduler(executor, getDefaultConcurrency());
+        }
+        return sDefault;
+    }
+
+    /**
+     * Returns the concurrency of the default scheduler: one task for each core, less one core
+     * left free for the UI thread.
+     */
+    public static int getDefaultConcurrency() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /**
+     * Replaces the scheduler returned by {@link #getDefault()}. Should be called before any
+     * image is displayed.
+     */
+    public static synchronized void setDefault(DecodeScheduler scheduler) {
+        sDefault = scheduler;
+    }
+
+    //endregion Methods
+
+    //region Private methods
+
+    private void enqueue(Task task) {
+        synchronized (this) {
+            mPending.add(task);
+        }
+        startWorker();
+    }
+
+    private void removePending(int index) {
+        // Order doesn't matter, since takeNext() searches the whole list
+        final int last = mPending.size() - 1;
+        mPending.set(index, mPending.get(last));
+        mPending.remove(last);
+    }
+
+    /**
+     * Hands the executor a worker if there is work waiting and a slot free.
+     */
+    private void startWorker() {
+        synchronized (this) {
+            if (mPending.isEmpty() || mWorkerCount >= mMaxConcurrency) {
+                return;
+            }
+            mWorkerCount++;
+        }
+        try {
+            mExecutor.execute(mWorker);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                mWorkerCount--;
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the task that should run next, or releases the calling worker's slot
+     * and returns null if there is none. The queue is searched in full, since priorities and
+     * viewports change while tasks wait and there are rarely more than a few hundred.
+     */
+    private synchronized Task takeNext() {
+        int bestIndex = -1;
+        Task best = null;
+        float bestDistance = 0.0f;
+        final int size = mPending.size();
+        for (int i = 0; i < size; i++) {
+            final Task task = mPending.get(i);
+            final float distance = task.mGroup.getDistance(task);
+            if (best == null || task.mPriority < best.mPriority ||
+                    (task.mPriority == best.mPriority &&
+                            (distance < bestDistance ||
+                                    (distance == bestDistance &&
+                                            task.mSequence < best.mSequence)))) {
+                bestIndex = i;
+                best = task;
+                bestDistance = distance;
+            }
+        }
+        if (best == null) {
+            mWorkerCount--;
+        } else {
+            removePending(bestIndex);
+        }
+        return best;
+    }
+
+    //endregion Private methods
+}
@@ -0,0 +1,358 @@
+package com.codepunk.demo.core.decode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Holds decoded results (typically tile bitmaps) between the thread that decoded them and the
+ * frame that first draws them, and releases them a frame's budget at a time. Drawing a bitmap
+ * for the first time uploads it to the GPU, so when a burst of decodes completes together,
+ * handing them all to the next frame makes for one long frame; a budget spreads them over the
+ * following frames instead.
+ * <ul>
+ * <li>Each {@link #poll(float, float, float, float, long, List)} releases items until the
+ * next one would take the frame past {@link #getMaxBytesPerFrame()} bytes or
+ * {@link #getMaxCountPerFrame()} items. A limit of 0 or less means no limit; the first item is
+ * released however large it is, so that every frame makes progress.</li>
+ * <li>Items are released in order of distance from the center of the viewport at the time of
+ * the poll, then in the order they were added.</li>
+ * <li>The time each item waited is recorded in {@link Stats}, both for the latest poll and in
+ * total.</li>
+ * </ul>
+ * Not thread-safe; all calls are expected on the thread that draws.
+ *
+ * @param <T> The type of item queued
+ */
+public class UploadQueue<T> {
+
+    //region Nested classes
+
+    /**
+     * Counts of the items released by one or more polls and how long they waited.
+     */
+    public static class Stats {
+
+        //region Fields
+
+        private int mCount;
+        private long mBytes;
+        private long mTotalWaitNanos;
+        private long mMaxWaitNanos;
+
+        //endregion Fields
+
+        //region Constructors
+
+        public Stats() {
+        }
+
+        public Stats(Stats src) {
+            set(src);
+        }
+
+        //endregion Constructors
+
+        //region Inherited methods
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "Stats[count=%d,bytes=%d,meanWaitNanos=%d,maxWaitNanos=%d]",
+                    mCount,
+                    mBytes,
+                    getMeanWaitNanos(),
+                    mMaxWaitNanos);
+        }
+
+        //endregion Inherited methods
+
+        //region Methods
+
+        /**
+         * Returns the total size, in bytes, of the items released.
+         */
+        public long getBytes() {
+            return mBytes;
+        }
+
+        /**
+         * Returns the number of items released.
+         */
+        public int getCount() {
+            return mCount;
+        }
+
+        /**
+         * Returns the longest time, in nanoseconds, that any item waited to be released.
+         */
+        public long getMaxWaitNanos() {
+            return mMaxWaitNanos;
+        }
+
+        /**
+         * Returns the mean time, in nanoseconds, that the items waited to be released.
+         */
+        public long getMeanWaitNanos() {
+            return (mCount == 0 ? 0L : mTotalWaitNanos / mCount);
+        }
+
+        /**
+         * Returns the sum of the times, in nanoseconds, that the items waited to be released.
+         */
+        public long getTotalWaitNanos() {
+            return mTotalWaitNanos;
+        }
+
+        public void reset() {
+            mCount = 0;
+            mBytes = 0L;
+            mTotalWaitNanos = 0L;
+            mMaxWaitNanos = 0L;
+        }
+
+        public void set(Stats src) {
+            mCount = src.mCount;
+            mBytes = src.mBytes;
+            mTotalWaitNanos = src.mTotalWaitNanos;
+            mMaxWaitNanos = src.mMaxWaitNanos;
+        }
+
+        //endregion Methods
+
+        //region Private methods
+
+        private void add(long bytes, long waitNanos) {
+            mCount++;
+            mBytes += bytes;
+            mTotalWaitNanos += waitNanos;
+            mMaxWaitNanos = Math.max(mMaxWaitNanos, waitNanos);
+        }
+
+        //endregion Private methods
+    }
+
+    /**
+     * An item waiting in the queue, along with its size and the region it covers.
+     */
+    private static class Entry<T> {
+
+        //region Fields
+
+        final T item;
+        final long bytes;
+        final float centerX;
+        final float centerY;
+        final long addedNanos;
+        final long sequence;
+        float distance;
+
+        //endregion Fields
+
+        //region Constructors
+
+        Entry(T item, long bytes, float centerX, float centerY, long addedNanos, long sequence) {
+            this.item = item;
+            this.bytes = bytes;
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.addedNanos = addedNanos;
+            this.sequence = sequence;
+        }
+
+        //endregion Constructors
+    }
+
+    //endregion Nested classes
+
+    //region Fields
+
+    private final ArrayList<Entry<T>> mEntries = new ArrayList<>();
+    private final Stats mLastStats = new Stats();
+    private final Stats mTotalStats = new Stats();
+    private long mNextSequence;
+
+    private long mMaxBytesPerFrame;
+    private int mMaxCountPerFrame;
+
+    private final Comparator<Entry<T>> mComparator = new Comparator<Entry<T>>() {
+        @Override
+        public int compare(Entry<T> lhs, Entry<T> rhs) {
+            final int result = Float.compare(lhs.distance, rhs.distance);
+            if (result != 0) {
+                return result;
+            }
+            return (lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1));
+        }
+    };
+
+    //endregion Fields
+
+    //region Constructors
+
+    /**
+     * @param maxBytesPerFrame The most bytes to release per poll, or 0 for no limit
+     * @param maxCountPerFrame The most items to release per poll, or 0 for no limit
+     */
+    public UploadQueue(long maxBytesPerFrame, int maxCountPerFrame) {
+        mMaxBytesPerFrame = maxBytesPerFrame;
+        mMaxCountPerFrame = maxCountPerFrame;
+    }
+
+    //endregion Constructors
+
+    //region Methods
+
+    /**
+     * Queues {@code item}, which is {@code bytes} in size and covers the given region, in
+     * whatever coordinates the viewport passed to
+     * {@link #poll(float, float, float, float, long, List)} uses.
+     *
+     * @param timeNanos The current time, in the same time base as later polls
+     */
+    public void add(
+            T item,
+            long bytes,
+            float left,
+            float top,
+            float right,
+            float bottom,
+            long timeNanos) {
+        mEntries.add(new Entry<>(
+                item,
+                bytes,
+                (left + right) * 0.5f,
+                (top + bottom) * 0.5f,
+                timeNanos,
+                mNextSequence++));
+    }
+
+    /**
+     * Removes every item without releasing it. The removed items are added to {@code out} if
+     * it is not null.
+     */
+    public void clear(List<? super T> out) {
+        if (out != null) {
+            for (final Entry<T> entry : mEntries) {
+                out.add(entry.item);
+            }
+        }
+        mEntries.clear();
+    }
+
+    /**
+     * Returns the statistics of the latest poll.
+     */
+    public Stats getLastStats() {
+        return mLastStats;
+    }
+
+    public long getMaxBytesPerFrame() {
+        return mMaxBytesPerFrame;
+    }
+
+    public int getMaxCountPerFrame() {
+        return mMaxCountPerFrame;
+    }
+
+    /**
+     * Returns the statistics of every poll since the queue was created or
+     * {@link #resetStats()} was called.
+     */
+    public Stats getTotalStats() {
+        return mTotalStats;
+    }
+
+    public boolean isEmpty() {
+        return mEntries.isEmpty();
+    }
+
+    /**
+     * Releases one frame's worth of items, nearest the center of the given viewport first,
+     * adding them to {@code out}.
+     *
+     * @param timeNanos The current time, in the same time base as {@code add}
+     * @return The number of items released
+     */
+    public int poll(
+            float left,
+            float top,
+            float right,
+            float bottom,
+            long timeNanos,
+            List<? super T> out) {
+        mLastStats.reset();
+        final int size = mEntries.size();
+        if (size == 0) {
+            return 0;
+        }
+
+        final float centerX = (left + right) * 0.5f;
+        final float centerY = (top + bottom) * 0.5f;
+        for (int i = 0; i < size; i++) {
+            final Entry<T> entry = mEntries.get(i);
+            final float dx = entry.centerX - centerX;
+            final float dy = entry.centerY - centerY;
+            entry.distance = dx * dx + dy * dy;
+        }
+        Collections.sort(mEntries, mComparator);
+
+        long bytes = 0L;
+        int count = 0;
+        while (count < size) {
+            final Entry<T> entry = mEntries.get(count);
+            if (count > 0 &&
+                    ((mMaxCountPerFrame > 0 && count >= mMaxCountPerFrame) ||
+                            (mMaxBytesPerFrame > 0L &&
+                                    bytes + entry.bytes > mMaxBytesPerFrame))) {
+                break;
+            }
+            bytes += entry.bytes;
+            count++;
+            final long waitNanos = Math.max(timeNanos - entry.addedNanos, 0L);
+            mLastStats.add(entry.bytes, waitNanos);
+            mTotalStats.add(entry.bytes, waitNanos);
+            out.add(entry.item);
+        }
+        mEntries.subList(0, count).clear();
+        return count;
+    }
+
+    /**
+     * Removes {@code item} without releasing it.
+     *
+     * @return Whether the item was queued
+     */
+    public boolean remove(T item) {
+        for (int i = mEntries.size() - 1; i >= 0; i--) {
+            if (mEntries.get(i).item == item) {
+                mEntries.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void resetStats() {
+        mLastStats.reset();
+        mTotalStats.reset();
+    }
+
+    /**
+     * Sets the per-poll budget.
+     *
+     * @param maxBytesPerFrame The most bytes to release per poll, or 0 for no limit
+     * @param maxCountPerFrame The most items to release per poll, or 0 for no limit
+     */
+    public void setBudget(long maxBytesPerFrame, int maxCountPerFrame) {
+        mMaxBytesPerFrame = maxBytesPerFrame;
+        mMaxCountPerFrame = maxCountPerFrame;
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    //endregion Methods
+}
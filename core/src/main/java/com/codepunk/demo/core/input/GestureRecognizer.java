@@ -0,0 +1,529 @@
+package com.codepunk.demo.core.input;
+
+import com.codepunk.demo.core.animation.FrameClock;
+
+/**
+ * Recognizes pan, pinch, fling, tap and double-tap gestures from a stream of
+ * {@link TouchEvent}s. Panning and pinching are treated as one transform gesture: each sample
+ * reduces every pointer to a focus point (their centroid) and a span (twice their RMS distance
+ * from the focus) in a single pass over the pointers, so the movement of the focus, the change
+ * in span and the drift of the focus while pinching are all reported together. Nothing is
+ * allocated while events are processed.
+ * <p>
+ * When the set of pointers changes, the focus and span are re-anchored to the new pointers so
+ * that the reported pan and scale don't jump. Focus and span samples, including the historical
+ * samples batched into each event, also feed {@link PointerPredictor}s, which supply the
+ * release velocities and, if a {@link FrameClock} is set, predict the focus and span at the time
+ * the frame that handles the event will be presented.
+ * </p>
+ */
+public class GestureRecognizer {
+
+    //region Nested classes
+
+    /**
+     * Receives the lifecycle of each gesture. Each gesture begins when the first pointer goes
+     * down and ends when the last pointer goes up (or the gesture is cancelled).
+     */
+    public interface Listener {
+
+        /**
+         * The first pointer went down.
+         */
+        void onGestureBegin(GestureRecognizer recognizer);
+
+        /**
+         * The pointers moved. Only called once the gesture is transforming, that is, once the
+         * focus has moved further than the touch slop or a second pointer went down. See
+         * {@link #getPanX()}, {@link #getPanY()} and {@link #getScaleFactor()}.
+         */
+        void onGestureUpdate(GestureRecognizer recognizer);
+
+        /**
+         * The last pointer went up, or the gesture was cancelled. See {@link #isCancelled()},
+         * {@link #isFling()} and {@link #getScaleVelocity()}.
+         */
+        void onGestureEnd(GestureRecognizer recognizer);
+
+        /**
+         * A single pointer went down and up without transforming. Called after
+         * {@link #onGestureEnd(GestureRecognizer)}.
+         */
+        void onTap(GestureRecognizer recognizer);
+
+        /**
+         * A pointer went down close to, and soon after, a tap. Called after
+         * {@link #onGestureBegin(GestureRecognizer)}; the rest of the gesture is ignored.
+         */
+        void onDoubleTap(GestureRecognizer recognizer);
+    }
+
+    //endregion Nested classes
+
+    //region Constants
+
+    /**
+     * The shortest time between a tap and the next down, in nanoseconds, that can make a double
+     * tap. Faster than this is more likely a bounce.
+     */
+    private static final long DOUBLE_TAP_MIN_TIME_NANOS = 40000000L;
+
+    /**
+     * How recently a pinch must have ended, in nanoseconds, for its scale velocity to be
+     * reported when the gesture ends.
+     */
+    private static final long MAX_SCALE_VELOCITY_AGE_NANOS = 100000000L;
+
+    //endregion Constants
+
+    //region Fields
+
+    private final Listener mListener;
+
+    private float mTouchSlop;
+    private float mDoubleTapSlop;
+    private long mDoubleTapTimeoutNanos;
+    private boolean mDoubleTapEnabled = true;
+    private float mMinSpan;
+    private float mMinFlingVelocity;
+    private float mMaxFlingVelocity = Float.MAX_VALUE;
+    private FrameClock mFrameClock;
+
+    private final PointerPredictor mFocusPredictor =
+            new PointerPredictor(PointerPredictor.MODE_NONE);
+    private final PointerPredictor mSpanPredictor =
+            new PointerPredictor(PointerPredictor.MODE_NONE);
+
+    private boolean mInGesture;
+    private boolean mTransforming;
+    private boolean mMultiTouch;
+    private boolean mConsumed;
+    private boolean mCancelled;
+    private int mPointerCount;
+
+    private float mDownFocusX;
+    private float mDownFocusY;
+    private float mFocusX;
+    private float mFocusY;
+    private float mLastFocusX;
+    private float mLastFocusY;
+    private float mSpan;
+    private float mLastSpan;
+    private float mPanX;
+    private float mPanY;
+    private float mScaleFactor = 1.0f;
+
+    private float mVelocityX;
+    private float mVelocityY;
+    private float mScaleVelocity;
+    private long mScaleVelocityTimeNanos;
+
+    private boolean mHasLastTap;
+    private long mLastTapTimeNanos;
+    private float mLastTapX;
+    private float mLastTapY;
+
+    // The result of the most recent sample
+    private float mSampleFocusX;
+    private float mSampleFocusY;
+    private float mSampleSpan;
+
+    //endregion Fields
+
+    //region Constructors
+
+    public GestureRecognizer(Listener listener) {
+        mListener = listener;
+    }
+
+    //endregion Constructors
+
+    //region Methods
+
+    /**
+     * Returns the focus point of the pointers in the x direction.
+     */
+    public float getFocusX() {
+        return mFocusX;
+    }
+
+    /**
+     * Returns the focus point of the pointers in the y direction.
+     */
+    public float getFocusY() {
+        return mFocusY;
+    }
+
+    /**
+     * Returns how far the focus point moved in the x direction since the previous update.
+     */
+    public float getPanX() {
+        return mPanX;
+    }
+
+    /**
+     * Returns how far the focus point moved in the y direction since the previous update.
+     */
+    public float getPanY() {
+        return mPanY;
+    }
+
+    public int getPointerCount() {
+        return mPointerCount;
+    }
+
+    public int getPredictionMode() {
+        return mFocusPredictor.getMode();
+    }
+
+    /**
+     * Returns the ratio of the current span to the span at the previous update, or 1 if fewer
+     * than two pointers are down (or they are closer together than the minimum span).
+     */
+    public float getScaleFactor() {
+        return mScaleFactor;
+    }
+
+    /**
+     * When a gesture ends, returns the rate at which the span was changing when the pinch that
+     * preceded it ended, as a fraction of the span per second, or 0 if there was no recent pinch.
+     */
+    public float getScaleVelocity() {
+        return mScaleVelocity;
+    }
+
+    public float getSpan() {
+        return mSpan;
+    }
+
+    /**
+     * When a gesture ends, returns the velocity of the focus point in the x direction, in pixels
+     * per second.
+     */
+    public float getVelocityX() {
+        return mVelocityX;
+    }
+
+    /**
+     * When a gesture ends, returns the velocity of the focus point in the y direction, in pixels
+     * per second.
+     */
+    public float getVelocityY() {
+        return mVelocityY;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * When a transforming gesture ends, returns whether the focus point was moving at least as
+     * fast as the minimum fling velocity.
+     */
+    public boolean isFling() {
+        return mTransforming &&
+                !mCancelled &&
+                Math.hypot(mVelocityX, mVelocityY) >= mMinFlingVelocity;
+    }
+
+    public boolean isInGesture() {
+        return mInGesture;
+    }
+
+    /**
+     * Returns whether the current (or most recent) gesture is transforming, that is, whether
+     * its focus has moved further than the touch slop or it has had more than one pointer.
+     */
+    public boolean isTransforming() {
+        return mTransforming;
+    }
+
+    /**
+     * Processes a touch event.
+     *
+     * @return true if the event belongs to a gesture
+     */
+    public boolean onTouchEvent(TouchEvent event) {
+        switch (event.getActionMasked()) {
+            case TouchEvent.ACTION_DOWN: {
+                final long timeNanos = event.getEventTimeNanos();
+                mInGesture = true;
+                mTransforming = false;
+                mMultiTouch = false;
+                mConsumed = false;
+                mCancelled = false;
+                mVelocityX = 0.0f;
+                mVelocityY = 0.0f;
+                mScaleVelocity = 0.0f;
+                mScaleVelocityTimeNanos = Long.MIN_VALUE;
+                anchor(event, -1);
+
+                final long sinceTapNanos = timeNanos - mLastTapTimeNanos;
+                final boolean doubleTap = mDoubleTapEnabled &&
+                        mHasLastTap &&
+                        sinceTapNanos >= DOUBLE_TAP_MIN_TIME_NANOS &&
+                        sinceTapNanos <= mDoubleTapTimeoutNanos &&
+                        Math.hypot(mFocusX - mLastTapX, mFocusY - mLastTapY) <= mDoubleTapSlop;
+                mHasLastTap = false;
+                mListener.onGestureBegin(this);
+                if (doubleTap) {
+                    mConsumed = true;
+                    mListener.onDoubleTap(this);
+                }
+                return true;
+            }
+            case TouchEvent.ACTION_POINTER_DOWN: {
+                if (!mInGesture) {
+                    return false;
+                }
+                mMultiTouch = true;
+                mTransforming = !mConsumed;
+                anchor(event, -1);
+                return true;
+            }
+            case TouchEvent.ACTION_POINTER_UP: {
+                if (!mInGesture) {
+                    return false;
+                }
+                addSamples(event, false);
+                if (mPointerCount > 1 && mSampleSpan >= mMinSpan && mSampleSpan > 0.0f) {
+                    // Remember how fast the pinch was going as it ended
+                    mScaleVelocity = mSpanPredictor.getVelocityX() / mSampleSpan;
+                    mScaleVelocityTimeNanos = event.getEventTimeNanos();
+                }
+                anchor(event, event.getActionIndex());
+                return true;
+            }
+            case TouchEvent.ACTION_MOVE: {
+                if (!mInGesture) {
+                    return false;
+                }
+                addSamples(event, true);
+                updateFocus();
+                if (!mTransforming && !mConsumed && Math.hypot(
+                        mSampleFocusX - mDownFocusX,
+                        mSampleFocusY - mDownFocusY) > mTouchSlop) {
+                    mTransforming = true;
+                }
+                if (mTransforming && !mConsumed) {
+                    mPanX = mFocusX - mLastFocusX;
+                    mPanY = mFocusY - mLastFocusY;
+                    mScaleFactor = (mPointerCount > 1 && mLastSpan >= mMinSpan &&
+                            mSpan >= mMinSpan && mLastSpan > 0.0f ? mSpan / mLastSpan : 1.0f);
+                    mListener.onGestureUpdate(this);
+                    mLastFocusX = mFocusX;
+                    mLastFocusY = mFocusY;
+                    mLastSpan = mSpan;
+                }
+                return true;
+            }
+            case TouchEvent.ACTION_UP: {
+                if (!mInGesture) {
+                    return false;
+                }
+                addSamples(event, false);
+                finish(event.getEventTimeNanos(), false);
+                return true;
+            }
+            case TouchEvent.ACTION_CANCEL: {
+                if (!mInGesture) {
+                    return false;
+                }
+                finish(event.getEventTimeNanos(), true);
+                return true;
+            }
+            default:
+                return mInGesture;
+        }
+    }
+
+    public void setDoubleTapEnabled(boolean doubleTapEnabled) {
+        mDoubleTapEnabled = doubleTapEnabled;
+    }
+
+    /**
+     * Sets how far, in pixels, the second down of a double tap may be from the first tap.
+     */
+    public void setDoubleTapSlop(float doubleTapSlop) {
+        mDoubleTapSlop = doubleTapSlop;
+    }
+
+    /**
+     * Sets how long, in nanoseconds, after a tap a down can still make a double tap.
+     */
+    public void setDoubleTapTimeoutNanos(long doubleTapTimeoutNanos) {
+        mDoubleTapTimeoutNanos = doubleTapTimeoutNanos;
+    }
+
+    /**
+     * Sets the minimum and maximum fling velocities, in pixels per second. Release velocities
+     * are clamped to the maximum.
+     */
+    public void setFlingVelocities(float minFlingVelocity, float maxFlingVelocity) {
+        mMinFlingVelocity = minFlingVelocity;
+        mMaxFlingVelocity = maxFlingVelocity;
+    }
+
+    /**
+     * Sets the clock whose frame time the focus and span are predicted for. Without a clock,
+     * the latest samples are reported as they are.
+     */
+    public void setFrameClock(FrameClock frameClock) {
+        mFrameClock = frameClock;
+    }
+
+    /**
+     * Sets the span, in pixels, below which a change in span isn't reported as scaling, since
+     * pointers that close together are too jittery to scale by.
+     */
+    public void setMinSpan(float minSpan) {
+        mMinSpan = minSpan;
+    }
+
+    /**
+     * Sets the {@link PointerPredictor} mode used to predict the focus and span.
+     */
+    public void setPredictionMode(int mode) {
+        mFocusPredictor.setMode(mode);
+        mSpanPredictor.setMode(mode);
+    }
+
+    /**
+     * Sets how far, in pixels, the focus must move before a gesture is transforming.
+     */
+    public void setTouchSlop(float touchSlop) {
+        mTouchSlop = touchSlop;
+    }
+
+    //endregion Methods
+
+    //region Private methods
+
+    /**
+     * Feeds the predictors with the event's historical samples (if requested) and its current
+     * sample.
+     */
+    private void addSamples(TouchEvent event, boolean includeHistory) {
+        if (includeHistory) {
+            final int historySize = event.getHistorySize();
+            for (int pos = 0; pos < historySize; pos++) {
+                sample(event, pos, -1);
+                addSample(event.getHistoricalEventTimeNanos(pos));
+            }
+        }
+        sample(event, -1, -1);
+        addSample(event.getEventTimeNanos());
+    }
+
+    private void addSample(long timeNanos) {
+        mFocusPredictor.addSample(timeNanos, mSampleFocusX, mSampleFocusY);
+        mSpanPredictor.addSample(timeNanos, mSampleSpan, 0.0f);
+    }
+
+    /**
+     * Starts tracking the event's pointers afresh, leaving out the pointer at
+     * {@code skipIndex}.
+     */
+    private void anchor(TouchEvent event, int skipIndex) {
+        sample(event, -1, skipIndex);
+        mPointerCount = event.getPointerCount() - (skipIndex >= 0 ? 1 : 0);
+        mFocusPredictor.clear();
+        mSpanPredictor.clear();
+        addSample(event.getEventTimeNanos());
+        mDownFocusX = mLastFocusX = mFocusX = mSampleFocusX;
+        mDownFocusY = mLastFocusY = mFocusY = mSampleFocusY;
+        mLastSpan = mSpan = mSampleSpan;
+        mPanX = 0.0f;
+        mPanY = 0.0f;
+        mScaleFactor = 1.0f;
+    }
+
+    private void finish(long timeNanos, boolean cancelled) {
+        mInGesture = false;
+        mCancelled = cancelled;
+        if (!cancelled && mTransforming) {
+            float velocityX = mFocusPredictor.getVelocityX();
+            float velocityY = mFocusPredictor.getVelocityY();
+            final float speed = (float) Math.hypot(velocityX, velocityY);
+            if (speed > mMaxFlingVelocity) {
+                velocityX *= mMaxFlingVelocity / speed;
+                velocityY *= mMaxFlingVelocity / speed;
+            }
+            mVelocityX = velocityX;
+            mVelocityY = velocityY;
+            if (timeNanos - mScaleVelocityTimeNanos > MAX_SCALE_VELOCITY_AGE_NANOS) {
+                mScaleVelocity = 0.0f;
+            }
+        } else {
+            mVelocityX = 0.0f;
+            mVelocityY = 0.0f;
+            mScaleVelocity = 0.0f;
+        }
+
+        mListener.onGestureEnd(this);
+
+        if (!cancelled && !mTransforming && !mMultiTouch && !mConsumed) {
+            mHasLastTap = true;
+            mLastTapTimeNanos = timeNanos;
+            mLastTapX = mFocusX;
+            mLastTapY = mFocusY;
+            mListener.onTap(this);
+        }
+    }
+
+    /**
+     * Reduces the pointers of a sample to their focus point and span in a single pass. The span
+     * is twice the RMS distance of the pointers from the focus, which for two pointers is the
+     * distance between them.
+     *
+     * @param pos The historical sample, or -1 for the current one
+     * @param skipIndex A pointer to leave out, or -1
+     */
+    private void sample(TouchEvent event, int pos, int skipIndex) {
+        final int pointerCount = event.getPointerCount();
+        int count = 0;
+        double sumX = 0.0;
+        double sumY = 0.0;
+        double sumSquares = 0.0;
+        for (int i = 0; i < pointerCount; i++) {
+            if (i != skipIndex) {
+                final double x = (pos < 0 ? event.getX(i) : event.getHistoricalX(i, pos));
+                final double y = (pos < 0 ? event.getY(i) : event.getHistoricalY(i, pos));
+                count++;
+                sumX += x;
+                sumY += y;
+                sumSquares += x * x + y * y;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        final double focusX = sumX / count;
+        final double focusY = sumY / count;
+        final double variance = sumSquares / count - focusX * focusX - focusY * focusY;
+        mSampleFocusX = (float) focusX;
+        mSampleFocusY = (float) focusY;
+        mSampleSpan = (count > 1 && variance > 0.0 ? (float) (2.0 * Math.sqrt(variance)) : 0.0f);
+    }
+
+    /**
+     * Updates the reported focus and span from the latest samples, predicted to the next frame
+     * if there is a frame clock.
+     */
+    private void updateFocus() {
+        if (mFrameClock != null) {
+            final long frameTimeNanos = mFrameClock.getFrameTimeNanos();
+            mFocusPredictor.predict(frameTimeNanos);
+            mSpanPredictor.predict(frameTimeNanos);
+            mFocusX = mFocusPredictor.getPredictedX();
+            mFocusY = mFocusPredictor.getPredictedY();
+            mSpan = mSpanPredictor.getPredictedX();
+        } else {
+            mFocusX = mSampleFocusX;
+            mFocusY = mSampleFocusY;
+            mSpan = mSampleSpan;
+        }
+    }
+
+    //endregion Private methods
+}
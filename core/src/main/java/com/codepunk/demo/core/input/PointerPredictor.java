@@ -0,0 +1,262 @@
+package com.codepunk.demo.core.input;
+
+/**
+ * Estimates where a pointer will be when the next frame is presented. Touch samples arrive
+ * batched once per frame, and by the time the frame that reacts to them is on screen the finger
+ * has moved on, so content that tracks the raw position always trails it by a frame or more.
+ * PointerPredictor fits a velocity to the recent samples (including the historical samples that
+ * are batched between events) and extrapolates the latest position to the presentation time.
+ * <p>
+ * Times are in nanoseconds in any monotonic time base, as long as samples and prediction targets
+ * share it.
+ * </p>
+ */
+public class PointerPredictor {
+
+    //region Constants
+
+    /**
+     * Prediction is disabled; the predicted position is always the latest sample.
+     */
+    public static final int MODE_NONE = 0;
+
+    /**
+     * The latest sample is extrapolated along a velocity fitted to the recent samples.
+     */
+    public static final int MODE_LINEAR = 1;
+
+    /**
+     * How far back, in nanoseconds, samples contribute to the velocity.
+     */
+    public static final long DEFAULT_HORIZON_NANOS = 50000000L;
+
+    /**
+     * How far ahead, in nanoseconds, a position is extrapolated at most: two frames at 60 Hz.
+     */
+    public static final long DEFAULT_MAX_PREDICTION_NANOS = 33333333L;
+
+    private static final int HISTORY_SIZE = 20;
+
+    private static final double NANOS_PER_SECOND = 1.0e9;
+
+    //endregion Constants
+
+    //region Fields
+
+    private int mMode;
+    private long mHorizonNanos = DEFAULT_HORIZON_NANOS;
+    private long mMaxPredictionNanos = DEFAULT_MAX_PREDICTION_NANOS;
+
+    private final long[] mTimes = new long[HISTORY_SIZE];
+    private final float[] mXs = new float[HISTORY_SIZE];
+    private final float[] mYs = new float[HISTORY_SIZE];
+
+    /**
+     * The index of the latest sample.
+     */
+    private int mIndex = -1;
+
+    /**
+     * The number of samples in the history.
+     */
+    private int mCount;
+
+    private float mVelocityX;
+    private float mVelocityY;
+    private boolean mVelocityValid;
+
+    private float mPredictedX;
+    private float mPredictedY;
+
+    //endregion Fields
+
+    //region Constructors
+
+    public PointerPredictor(int mode) {
+        setMode(mode);
+    }
+
+    //endregion Constructors
+
+    //region Methods
+
+    /**
+     * Adds a sample. Samples must be added in chronological order; a sample older than the
+     * latest one is ignored.
+     */
+    public void addSample(long timeNanos, float x, float y) {
+        if (mCount > 0 && timeNanos < mTimes[mIndex]) {
+            return;
+        }
+        mIndex = (mIndex + 1) % HISTORY_SIZE;
+        mTimes[mIndex] = timeNanos;
+        mXs[mIndex] = x;
+        mYs[mIndex] = y;
+        if (mCount < HISTORY_SIZE) {
+            mCount++;
+        }
+        mVelocityValid = false;
+    }
+
+    /**
+     * Clears the history, for example when the pointer goes down or up.
+     */
+    public void clear() {
+        mIndex = -1;
+        mCount = 0;
+        mVelocityX = 0.0f;
+        mVelocityY = 0.0f;
+        mVelocityValid = true;
+    }
+
+    public long getHorizonNanos() {
+        return mHorizonNanos;
+    }
+
+    public long getMaxPredictionNanos() {
+        return mMaxPredictionNanos;
+    }
+
+    public int getMode() {
+        return mMode;
+    }
+
+    public float getPredictedX() {
+        return mPredictedX;
+    }
+
+    public float getPredictedY() {
+        return mPredictedY;
+    }
+
+    /**
+     * Returns the velocity in the x direction, in units per second.
+     */
+    public float getVelocityX() {
+        computeVelocity();
+        return mVelocityX;
+    }
+
+    /**
+     * Returns the velocity in the y direction, in units per second.
+     */
+    public float getVelocityY() {
+        computeVelocity();
+        return mVelocityY;
+    }
+
+    /**
+     * Returns the x coordinate of the latest sample.
+     */
+    public float getX() {
+        return (mCount > 0 ? mXs[mIndex] : 0.0f);
+    }
+
+    /**
+     * Returns the y coordinate of the latest sample.
+     */
+    public float getY() {
+        return (mCount > 0 ? mYs[mIndex] : 0.0f);
+    }
+
+    public boolean hasSamples() {
+        return mCount > 0;
+    }
+
+    /**
+     * Predicts the pointer position at {@code targetTimeNanos}, which is then available from
+     * {@link #getPredictedX()} and {@link #getPredictedY()}.
+     *
+     * @return false if there are no samples, in which case the predicted position is unchanged
+     */
+    public boolean predict(long targetTimeNanos) {
+        if (mCount == 0) {
+            return false;
+        }
+
+        mPredictedX = mXs[mIndex];
+        mPredictedY = mYs[mIndex];
+        if (mMode == MODE_LINEAR) {
+            final long aheadNanos = Math.min(targetTimeNanos - mTimes[mIndex], mMaxPredictionNanos);
+            if (aheadNanos > 0L) {
+                computeVelocity();
+                final float seconds = (float) (aheadNanos / NANOS_PER_SECOND);
+                mPredictedX += mVelocityX * seconds;
+                mPredictedY += mVelocityY * seconds;
+            }
+        }
+        return true;
+    }
+
+    public void setHorizonNanos(long horizonNanos) {
+        mHorizonNanos = horizonNanos;
+        mVelocityValid = false;
+    }
+
+    public void setMaxPredictionNanos(long maxPredictionNanos) {
+        mMaxPredictionNanos = maxPredictionNanos;
+    }
+
+    public void setMode(int mode) {
+        switch (mode) {
+            case MODE_NONE:
+            case MODE_LINEAR:
+                mMode = mode;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown prediction mode: " + mode);
+        }
+    }
+
+    //endregion Methods
+
+    //region Private methods
+
+    /**
+     * Fits a line to the position of the samples within the horizon by least squares; the
+     * velocity is its slope. Fitting all the samples rather than differencing the last two
+     * keeps the jitter of individual samples out of the prediction.
+     */
+    private void computeVelocity() {
+        if (mVelocityValid) {
+            return;
+        }
+        mVelocityValid = true;
+        mVelocityX = 0.0f;
+        mVelocityY = 0.0f;
+
+        final long latestNanos = mTimes[mIndex];
+        int n = 0;
+        double sumT = 0.0;
+        double sumX = 0.0;
+        double sumY = 0.0;
+        double sumTT = 0.0;
+        double sumTX = 0.0;
+        double sumTY = 0.0;
+        for (int i = 0; i < mCount; i++) {
+            final int index = (mIndex - i + HISTORY_SIZE) % HISTORY_SIZE;
+            final long ageNanos = latestNanos - mTimes[index];
+            if (ageNanos > mHorizonNanos) {
+                break;
+            }
+            final double t = -ageNanos / NANOS_PER_SECOND;
+            final double x = mXs[index];
+            final double y = mYs[index];
+            n++;
+            sumT += t;
+            sumX += x;
+            sumY += y;
+            sumTT += t * t;
+            sumTX += t * x;
+            sumTY += t * y;
+        }
+
+        final double denominator = n * sumTT - sumT * sumT;
+        if (n >= 2 && denominator > 0.0) {
+            mVelocityX = (float) ((n * sumTX - sumT * sumX) / denominator);
+            mVelocityY = (float) ((n * sumTY - sumT * sumY) / denominator);
+        }
+    }
+
+    //endregion Private methods
+}
@@ -0,0 +1,48 @@
+package com.codepunk.demo.core.input;
+
+/**
+ * A read-only view of a touch event, modeled on {@code android.view.MotionEvent} so that a
+ * MotionEvent can be adapted without copying. Action constants share MotionEvent's values.
+ */
+public interface TouchEvent {
+
+    int ACTION_DOWN = 0;
+    int ACTION_UP = 1;
+    int ACTION_MOVE = 2;
+    int ACTION_CANCEL = 3;
+    int ACTION_POINTER_DOWN = 5;
+    int ACTION_POINTER_UP = 6;
+
+    int getActionMasked();
+
+    /**
+     * Returns the index of the pointer that went down or up, for {@link #ACTION_POINTER_DOWN}
+     * and {@link #ACTION_POINTER_UP}.
+     */
+    int getActionIndex();
+
+    /**
+     * Returns the time of the event, in nanoseconds.
+     */
+    long getEventTimeNanos();
+
+    /**
+     * Returns the time, in nanoseconds, of the historical sample at {@code pos}.
+     */
+    long getHistoricalEventTimeNanos(int pos);
+
+    float getHistoricalX(int pointerIndex, int pos);
+
+    float getHistoricalY(int pointerIndex, int pos);
+
+    /**
+     * Returns the number of historical samples batched into this event, older first.
+     */
+    int getHistorySize();
+
+    int getPointerCount();
+
+    float getX(int pointerIndex);
+
+    float getY(int pointerIndex);
+}
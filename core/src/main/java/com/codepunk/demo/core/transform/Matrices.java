@@ -0,0 +1,193 @@
+package com.codepunk.demo.core.transform;
+
+/**
+ * Static helpers for 3x3 affine matrices stored as primitive {@code float[9]} arrays, using the
+ * same value layout as {@code android.graphics.Matrix#getValues(float[])}. None of these methods
+ * allocate, so they are safe to call on every touch event.
+ */
+public class Matrices {
+
+    //region Constants
+
+    public static final int MSCALE_X = 0;
+    public static final int MSKEW_X = 1;
+    public static final int MTRANS_X = 2;
+    public static final int MSKEW_Y = 3;
+    public static final int MSCALE_Y = 4;
+    public static final int MTRANS_Y = 5;
+    public static final int MPERSP_0 = 6;
+    public static final int MPERSP_1 = 7;
+    public static final int MPERSP_2 = 8;
+
+    /**
+     * The number of values in a matrix.
+     */
+    public static final int SIZE = 9;
+
+    private static final float DETERMINANT_EPSILON = 1.0e-12f;
+
+    //endregion Constants
+
+    //region Constructors
+
+    /**
+     * Disallow instantiation.
+     */
+    private Matrices() {
+    }
+
+    //endregion Constructors
+
+    //region Methods
+
+    /**
+     * Returns a new identity matrix. Intended for setup code, not for hot paths.
+     */
+    public static float[] newMatrix() {
+        final float[] m = new float[SIZE];
+        reset(m);
+        return m;
+    }
+
+    /**
+     * Returns whether the two matrices are equal to within {@code epsilon}.
+     */
+    public static boolean almostEqual(float[] a, float[] b, float epsilon) {
+        for (int i = 0; i < SIZE; i++) {
+            if (Math.abs(a[i] - b[i]) >= epsilon) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Inverts an affine matrix.
+     *
+     * @return false if the matrix is not invertible, in which case {@code out} is unchanged
+     */
+    public static boolean invert(float[] m, float[] out) {
+        final float a = m[MSCALE_X];
+        final float b = m[MSKEW_X];
+        final float c = m[MTRANS_X];
+        final float d = m[MSKEW_Y];
+        final float e = m[MSCALE_Y];
+        final float f = m[MTRANS_Y];
+        final float det = a * e - b * d;
+        if (Math.abs(det) < DETERMINANT_EPSILON) {
+            return false;
+        }
+        final float invDet = 1.0f / det;
+        out[MSCALE_X] = e * invDet;
+        out[MSKEW_X] = -b * invDet;
+        out[MTRANS_X] = (b * f - c * e) * invDet;
+        out[MSKEW_Y] = -d * invDet;
+        out[MSCALE_Y] = a * invDet;
+        out[MTRANS_Y] = (c * d - a * f) * invDet;
+        out[MPERSP_0] = 0.0f;
+        out[MPERSP_1] = 0.0f;
+        out[MPERSP_2] = 1.0f;
+        return true;
+    }
+
+    /**
+     * Maps {@code count} points stored as consecutive x, y pairs in {@code pts}, starting at
+     * {@code offset}, in place.
+     */
+    public static void mapPoints(float[] m, float[] pts, int offset, int count) {
+        final float a = m[MSCALE_X];
+        final float b = m[MSKEW_X];
+        final float c = m[MTRANS_X];
+        final float d = m[MSKEW_Y];
+        final float e = m[MSCALE_Y];
+        final float f = m[MTRANS_Y];
+        final int end = offset + count * 2;
+        for (int i = offset; i < end; i += 2) {
+            final float x = pts[i];
+            final float y = pts[i + 1];
+            pts[i] = a * x + b * y + c;
+            pts[i + 1] = d * x + e * y + f;
+        }
+    }
+
+    /**
+     * Maps the rectangle {@code (left, top, right, bottom)} and stores the bounds of the result
+     * in {@code out} as {@code [left, top, right, bottom]}.
+     */
+    public static void mapRect(
+            float[] m,
+            float left,
+            float top,
+            float right,
+            float bottom,
+            float[] out) {
+        final float a = m[MSCALE_X];
+        final float b = m[MSKEW_X];
+        final float c = m[MTRANS_X];
+        final float d = m[MSKEW_Y];
+        final float e = m[MSCALE_Y];
+        final float f = m[MTRANS_Y];
+        final float x0 = a * left + b * top + c;
+        final float y0 = d * left + e * top + f;
+        final float x1 = a * right + b * top + c;
+        final float y1 = d * right + e * top + f;
+        final float x2 = a * left + b * bottom + c;
+        final float y2 = d * left + e * bottom + f;
+        final float x3 = a * right + b * bottom + c;
+        final float y3 = d * right + e * bottom + f;
+        out[0] = Math.min(Math.min(x0, x1), Math.min(x2, x3));
+        out[1] = Math.min(Math.min(y0, y1), Math.min(y2, y3));
+        out[2] = Math.max(Math.max(x0, x1), Math.max(x2, x3));
+        out[3] = Math.max(Math.max(y0, y1), Math.max(y2, y3));
+    }
+
+    /**
+     * Sets {@code m} to {@code m * S}, where S scales by {@code (sx, sy)} about the pivot
+     * {@code (px, py)}. Equivalent to {@code android.graphics.Matrix#preScale(float, float,
+     * float, float)}.
+     */
+    public static void preScale(float[] m, float sx, float sy, float px, float py) {
+        final float tx = px - sx * px;
+        final float ty = py - sy * py;
+        final float a = m[MSCALE_X];
+        final float b = m[MSKEW_X];
+        final float d = m[MSKEW_Y];
+        final float e = m[MSCALE_Y];
+        m[MTRANS_X] += a * tx + b * ty;
+        m[MTRANS_Y] += d * tx + e * ty;
+        m[MSCALE_X] = a * sx;
+        m[MSKEW_X] = b * sy;
+        m[MSKEW_Y] = d * sx;
+        m[MSCALE_Y] = e * sy;
+    }
+
+    /**
+     * Sets {@code m} to {@code T * m}, where T translates by {@code (dx, dy)}.
+     */
+    public static void postTranslate(float[] m, float dx, float dy) {
+        m[MTRANS_X] += dx;
+        m[MTRANS_Y] += dy;
+    }
+
+    public static void reset(float[] m) {
+        setScaleTranslate(m, 1.0f, 1.0f, 0.0f, 0.0f);
+    }
+
+    public static void set(float[] dst, float[] src) {
+        System.arraycopy(src, 0, dst, 0, SIZE);
+    }
+
+    public static void setScaleTranslate(float[] m, float sx, float sy, float tx, float ty) {
+        m[MSCALE_X] = sx;
+        m[MSKEW_X] = 0.0f;
+        m[MTRANS_X] = tx;
+        m[MSKEW_Y] = 0.0f;
+        m[MSCALE_Y] = sy;
+        m[MTRANS_Y] = ty;
+        m[MPERSP_0] = 0.0f;
+        m[MPERSP_1] = 0.0f;
+        m[MPERSP_2] = 1.0f;
+    }
+
+    //endregion Methods
+}
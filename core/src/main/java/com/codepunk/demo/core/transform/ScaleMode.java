@@ -0,0 +1,120 @@
+package com.codepunk.demo.core.transform;
+
+/**
+ * The scale types supported by ImageViewInteractinator, each able to produce the same baseline
+ * image matrix and alignment that ImageView would (see ImageView.configureBounds()). The
+ * constants have the same names as those of {@code ImageView.ScaleType}.
+ */
+public enum ScaleMode {
+
+    CENTER,
+    CENTER_CROP,
+    CENTER_INSIDE,
+    FIT_CENTER,
+    FIT_END,
+    FIT_START,
+    FIT_XY,
+    MATRIX;
+
+    //region Methods
+
+    /**
+     * Returns the horizontal alignment of an image that is narrower than the content area, for
+     * a left-to-right layout.
+     */
+    public int getAlignX() {
+        return getAlignY();
+    }
+
+    /**
+     * Returns the vertical alignment of an image that is shorter than the content area.
+     */
+    public int getAlignY() {
+        switch (this) {
+            case FIT_START:
+                return TransformEngine.ALIGN_START;
+            case FIT_END:
+                return TransformEngine.ALIGN_END;
+            default:
+                return TransformEngine.ALIGN_CENTER;
+        }
+    }
+
+    /**
+     * Stores in {@code out} the matrix that displays a {@code dwidth} x {@code dheight} image
+     * in a {@code vwidth} x {@code vheight} content area using this scale mode. For
+     * {@link #MATRIX}, whose baseline is whatever matrix the caller set, this is the identity.
+     * So is an image without a positive size, such as a shape drawable with no intrinsic size;
+     * ImageView stretches those to the content area without a matrix.
+     */
+    public void getBaselineMatrix(int dwidth, int dheight, int vwidth, int vheight, float[] out) {
+        final boolean fits = (vwidth == dwidth && vheight == dheight);
+        if (this == MATRIX || fits || dwidth <= 0 || dheight <= 0) {
+            Matrices.reset(out);
+            return;
+        }
+
+        final float scale;
+        final float dx;
+        final float dy;
+        switch (this) {
+            case CENTER:
+                // Center the image without scaling
+                scale = 1.0f;
+                dx = Math.round((vwidth - dwidth) * 0.5f);
+                dy = Math.round((vheight - dheight) * 0.5f);
+                break;
+            case CENTER_CROP:
+                if (dwidth * vheight > vwidth * dheight) {
+                    scale = (float) vheight / (float) dheight;
+                    dx = Math.round((vwidth - dwidth * scale) * 0.5f);
+                    dy = 0.0f;
+                } else {
+                    scale = (float) vwidth / (float) dwidth;
+                    dx = 0.0f;
+                    dy = Math.round((vheight - dheight * scale) * 0.5f);
+                }
+                break;
+            case CENTER_INSIDE:
+                if (dwidth <= vwidth && dheight <= vheight) {
+                    scale = 1.0f;
+                } else {
+                    scale = Math.min(
+                            (float) vwidth / (float) dwidth,
+                            (float) vheight / (float) dheight);
+                }
+                dx = Math.round((vwidth - dwidth * scale) * 0.5f);
+                dy = Math.round((vheight - dheight * scale) * 0.5f);
+                break;
+            case FIT_XY:
+                Matrices.setScaleTranslate(
+                        out,
+                        (float) vwidth / (float) dwidth,
+                        (float) vheight / (float) dheight,
+                        0.0f,
+                        0.0f);
+                return;
+            default: {
+                // As Matrix.setRectToRect() does for the other ScaleToFit values
+                scale = Math.min(
+                        (float) vwidth / (float) dwidth,
+                        (float) vheight / (float) dheight);
+                final float xDiff = vwidth - dwidth * scale;
+                final float yDiff = vheight - dheight * scale;
+                if (this == FIT_START) {
+                    dx = 0.0f;
+                    dy = 0.0f;
+                } else if (this == FIT_END) {
+                    dx = xDiff;
+                    dy = yDiff;
+                } else {
+                    dx = xDiff * 0.5f;
+                    dy = yDiff * 0.5f;
+                }
+            }
+        }
+        Matrices.setScaleTranslate(out, scale, scale, dx, dy);
+    }
+
+    //endregion Methods
+}
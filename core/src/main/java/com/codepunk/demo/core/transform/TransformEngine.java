@@ -0,0 +1,357 @@
+package com.codepunk.demo.core.transform;
+
+import static com.codepunk.demo.core.transform.Matrices.MSCALE_X;
+import static com.codepunk.demo.core.transform.Matrices.MSCALE_Y;
+import static com.codepunk.demo.core.transform.Matrices.MTRANS_X;
+import static com.codepunk.demo.core.transform.Matrices.MTRANS_Y;
+
+/**
+ * The platform-independent half of an interactive image view: converts between image and view
+ * coordinates, resolves and clamps {@link TransformValues}, and turns them into image matrices.
+ * The view describes its current geometry (drawable size, content area, alignment and scale
+ * limits) through the setters and passes its image matrix in as a {@code float[9]} (see
+ * {@link Matrices}).
+ * <p>
+ * No method allocates. A TransformEngine keeps scratch state between calls and is therefore not
+ * thread-safe; it is meant to be owned by a single view and used on its thread.
+ * </p>
+ */
+public class TransformEngine {
+
+    //region Constants
+
+    /**
+     * Aligns an image that is smaller than the content area with its left or top edge.
+     */
+    public static final int ALIGN_START = 0;
+
+    /**
+     * Centers an image that is smaller than the content area.
+     */
+    public static final int ALIGN_CENTER = 1;
+
+    /**
+     * Aligns an image that is smaller than the content area with its right or bottom edge.
+     */
+    public static final int ALIGN_END = 2;
+
+    /**
+     * Values closer together than this are considered equal.
+     */
+    public static final float FLOAT_EPSILON = 0.00025f;
+
+    //endregion Constants
+
+    //region Fields
+
+    private float mDrawableWidth;
+    private float mDrawableHeight;
+    private float mContentLeft;
+    private float mContentTop;
+    private float mContentWidth;
+    private float mContentHeight;
+    private boolean mCropToPadding;
+    private int mAlignX = ALIGN_CENTER;
+    private int mAlignY = ALIGN_CENTER;
+    private float mMinScaleX = 1.0f;
+    private float mMinScaleY = 1.0f;
+    private float mMaxScaleX = 1.0f;
+    private float mMaxScaleY = 1.0f;
+
+    // Avoid allocations...
+    private final float[] mTempMatrix = new float[Matrices.SIZE];
+    private final float[] mTempPts = new float[2];
+    private final float[] mTempRect = new float[4];
+
+    //endregion Fields
+
+    //region Methods
+
+    public float getContentCenterX() {
+        return mContentLeft + mContentWidth * 0.5f;
+    }
+
+    public float getContentCenterY() {
+        return mContentTop + mContentHeight * 0.5f;
+    }
+
+    /**
+     * Returns the translation limits of an image drawn with {@code matrix}, in {@code out[0]}
+     * (x) and {@code out[1]} (y). A negative value is the minimum translation allowed along that
+     * axis, i.e. the image is larger than the content area and can be scrolled between that
+     * value and 0. A non-negative value is the one translation allowed, i.e. the image fits
+     * and is aligned within the content area.
+     */
+    public void getScrollableInfo(float[] matrix, float[] out) {
+        if (!hasFunctionalDimensions()) {
+            out[0] = 0.0f;
+            out[1] = 0.0f;
+            return;
+        }
+
+        Matrices.mapRect(matrix, 0.0f, 0.0f, mDrawableWidth, mDrawableHeight, mTempRect);
+        final float xDiff = mContentWidth - (mTempRect[2] - mTempRect[0]);
+        out[0] = (Float.compare(xDiff, 0.0f) > 0 ? align(xDiff, mAlignX) : xDiff);
+        final float yDiff = mContentHeight - (mTempRect[3] - mTempRect[1]);
+        out[1] = (Float.compare(yDiff, 0.0f) > 0 ? align(yDiff, mAlignY) : yDiff);
+    }
+
+    public boolean hasFunctionalDimensions() {
+        return mDrawableWidth >= 1.0f && mDrawableHeight >= 1.0f;
+    }
+
+    /**
+     * Maps {@code count} image points, stored as x, y pairs in {@code pts} starting at
+     * {@code offset}, to view points in place.
+     */
+    public void imagePointsToViewPoints(float[] matrix, float[] pts, int offset, int count) {
+        Matrices.mapPoints(matrix, pts, offset, count);
+        if (mCropToPadding) {
+            offsetPoints(pts, offset, count, mContentLeft, mContentTop);
+        }
+    }
+
+    /**
+     * Maps {@code count} view points, stored as x, y pairs in {@code pts} starting at
+     * {@code offset}, to image points in place, using an inverse image matrix the caller has
+     * already computed (and can therefore cache across events).
+     */
+    public void mapViewPointsToImagePoints(
+            float[] inverseMatrix,
+            float[] pts,
+            int offset,
+            int count) {
+        if (mCropToPadding) {
+            offsetPoints(pts, offset, count, -mContentLeft, -mContentTop);
+        }
+        Matrices.mapPoints(inverseMatrix, pts, offset, count);
+    }
+
+    /**
+     * Replaces every default ({@link Float#NaN}) value in {@code t} with the corresponding value
+     * for an image currently drawn with {@code matrix}, and converts relative scales and moves
+     * into absolute ones. Afterwards {@link TransformValues#scaleRelative} and
+     * {@link TransformValues#moveRelative} no longer apply and are cleared.
+     */
+    public void resolve(float[] matrix, TransformValues t) {
+        if (Float.isNaN(t.px) || Float.isNaN(t.py)) {
+            mTempPts[0] = getContentCenterX();
+            mTempPts[1] = getContentCenterY();
+            viewPointsToImagePoints(matrix, mTempPts, 0, 1);
+            if (Float.isNaN(t.px)) {
+                t.px = mTempPts[0];
+            }
+            if (Float.isNaN(t.py)) {
+                t.py = mTempPts[1];
+            }
+        }
+
+        if (Float.isNaN(t.sx)) {
+            t.sx = matrix[MSCALE_X];
+        } else if (t.scaleRelative) {
+            t.sx *= matrix[MSCALE_X];
+        }
+        if (Float.isNaN(t.sy)) {
+            t.sy = matrix[MSCALE_Y];
+        } else if (t.scaleRelative) {
+            t.sy *= matrix[MSCALE_Y];
+        }
+
+        if (t.moveRelative) {
+            mTempPts[0] = t.px;
+            mTempPts[1] = t.py;
+            imagePointsToViewPoints(matrix, mTempPts, 0, 1);
+            t.x = mTempPts[0] + (Float.isNaN(t.x) ? 0.0f : t.x);
+            t.y = mTempPts[1] + (Float.isNaN(t.y) ? 0.0f : t.y);
+        } else {
+            if (Float.isNaN(t.x)) {
+                t.x = getContentCenterX();
+            }
+            if (Float.isNaN(t.y)) {
+                t.y = getContentCenterY();
+            }
+        }
+        t.scaleRelative = false;
+        t.moveRelative = false;
+    }
+
+    /**
+     * Sets how an image that is smaller than the content area is positioned along each axis.
+     *
+     * @param alignX One of {@link #ALIGN_START}, {@link #ALIGN_CENTER} or {@link #ALIGN_END}
+     * @param alignY One of {@link #ALIGN_START}, {@link #ALIGN_CENTER} or {@link #ALIGN_END}
+     */
+    public void setAlignment(int alignX, int alignY) {
+        mAlignX = alignX;
+        mAlignY = alignY;
+    }
+
+    /**
+     * Sets the content area of the view, i.e. its bounds minus padding.
+     */
+    public void setContentBounds(float left, float top, float width, float height) {
+        mContentLeft = left;
+        mContentTop = top;
+        mContentWidth = width;
+        mContentHeight = height;
+    }
+
+    /**
+     * Sets whether image matrices are relative to the content area (true) or to the view
+     * (false).
+     */
+    public void setCropToPadding(boolean cropToPadding) {
+        mCropToPadding = cropToPadding;
+    }
+
+    /**
+     * Sets the intrinsic size of the image. A size smaller than 1 in either dimension means the
+     * image has no functional dimensions and cannot be scrolled.
+     */
+    public void setDrawableSize(float width, float height) {
+        mDrawableWidth = width;
+        mDrawableHeight = height;
+    }
+
+    public void setScaleLimits(float minScaleX, float minScaleY, float maxScaleX, float maxScaleY) {
+        mMinScaleX = minScaleX;
+        mMinScaleY = minScaleY;
+        mMaxScaleX = maxScaleX;
+        mMaxScaleY = maxScaleY;
+    }
+
+    /**
+     * Stores in {@code outMatrix} the image matrix that results from applying the resolved
+     * transform {@code t} to an image currently drawn with {@code matrix}. The two arrays may be
+     * the same.
+     */
+    public void toMatrix(float[] matrix, TransformValues t, float[] outMatrix) {
+        if (outMatrix != matrix) {
+            Matrices.set(outMatrix, matrix);
+        }
+        Matrices.preScale(
+                outMatrix,
+                t.sx / outMatrix[MSCALE_X],
+                t.sy / outMatrix[MSCALE_Y],
+                t.px,
+                t.py);
+        mTempPts[0] = t.px;
+        mTempPts[1] = t.py;
+        imagePointsToViewPoints(outMatrix, mTempPts, 0, 1);
+        Matrices.postTranslate(outMatrix, t.x - mTempPts[0], t.y - mTempPts[1]);
+    }
+
+    /**
+     * Clamps the resolved transform {@code t} so that its scale lies within the scale limits and
+     * the image does not leave gaps at the edges of the content area.
+     *
+     * @return Whether any value in {@code t} was changed
+     */
+    public boolean verify(float[] matrix, TransformValues t) {
+        boolean clamped = false;
+        float clampedValue = clamp(t.sx, mMinScaleX, mMaxScaleX);
+        if (!almostEqual(t.sx, clampedValue)) {
+            t.sx = clampedValue;
+            clamped = true;
+        }
+        clampedValue = clamp(t.sy, mMinScaleY, mMaxScaleY);
+        if (!almostEqual(t.sy, clampedValue)) {
+            t.sy = clampedValue;
+            clamped = true;
+        }
+
+        final float[] scaled = mTempMatrix;
+        Matrices.set(scaled, matrix);
+        if (!almostEqual(t.sx, scaled[MSCALE_X]) || !almostEqual(t.sy, scaled[MSCALE_Y])) {
+            Matrices.preScale(
+                    scaled,
+                    t.sx / scaled[MSCALE_X],
+                    t.sy / scaled[MSCALE_Y],
+                    0.0f,
+                    0.0f);
+        }
+
+        mTempPts[0] = t.px;
+        mTempPts[1] = t.py;
+        imagePointsToViewPoints(scaled, mTempPts, 0, 1);
+        final float mappedPx = mTempPts[0] - scaled[MTRANS_X];
+        final float mappedPy = mTempPts[1] - scaled[MTRANS_Y];
+
+        getScrollableInfo(scaled, mTempPts);
+        clampedValue = clampTranslation(t.x, mappedPx, mTempPts[0]);
+        if (!almostEqual(t.x, clampedValue)) {
+            t.x = clampedValue;
+            clamped = true;
+        }
+        clampedValue = clampTranslation(t.y, mappedPy, mTempPts[1]);
+        if (!almostEqual(t.y, clampedValue)) {
+            t.y = clampedValue;
+            clamped = true;
+        }
+        return clamped;
+    }
+
+    /**
+     * Maps {@code count} view points, stored as x, y pairs in {@code pts} starting at
+     * {@code offset}, to image points in place.
+     *
+     * @return false if {@code matrix} is not invertible, in which case {@code pts} is unchanged
+     */
+    public boolean viewPointsToImagePoints(float[] matrix, float[] pts, int offset, int count) {
+        if (!Matrices.invert(matrix, mTempMatrix)) {
+            return false;
+        }
+        mapViewPointsToImagePoints(mTempMatrix, pts, offset, count);
+        return true;
+    }
+
+    public static boolean almostEqual(float a, float b) {
+        return Math.abs(a - b) < FLOAT_EPSILON;
+    }
+
+    public static float clamp(float value, float min, float max) {
+        if (value < min) {
+            return min;
+        } else if (value > max) {
+            return max;
+        }
+        return value;
+    }
+
+    //endregion Methods
+
+    //region Private methods
+
+    private static float align(float diff, int alignment) {
+        switch (alignment) {
+            case ALIGN_START:
+                return 0.0f;
+            case ALIGN_END:
+                return diff;
+            default:
+                return diff * 0.5f;
+        }
+    }
+
+    /**
+     * Returns the view coordinate at which a pivot located {@code mappedPivot} pixels from the
+     * image's origin may be placed, given the scrollable info for that axis.
+     */
+    private static float clampTranslation(float value, float mappedPivot, float scrollableInfo) {
+        if (Float.compare(scrollableInfo, 0.0f) < 0) {
+            return mappedPivot + clamp(value - mappedPivot, scrollableInfo, 0.0f);
+        } else {
+            return mappedPivot + scrollableInfo;
+        }
+    }
+
+    private static void offsetPoints(float[] pts, int offset, int count, float dx, float dy) {
+        final int end = offset + count * 2;
+        for (int i = offset; i < end; i += 2) {
+            pts[i] += dx;
+            pts[i + 1] += dy;
+        }
+    }
+
+    //endregion Private methods
+}
@@ -0,0 +1,159 @@
+package com.codepunk.demo.core.transform;
+
+import java.util.ArrayList;
+
+/**
+ * Collects transforms to be applied together, so that transforms requested many times per frame
+ * (from a seek bar, say) cost a single image matrix update. Transforms are merged as they are
+ * added:
+ * <ul>
+ * <li>A transform that does not depend on the current image matrix (an absolute pivot, an
+ * absolute scale and an absolute or default move) replaces everything queued before it.</li>
+ * <li>A transform that pivots around the same image point as the previous one is folded into it:
+ * absolute values overwrite the previous ones and relative values compose with them.</li>
+ * <li>Any other transform is queued after the previous one.</li>
+ * </ul>
+ * {@link #resolve(TransformEngine, float[], TransformValues)} then reduces the queue to a single
+ * resolved transform with the same result as resolving and applying the added transforms one
+ * after another, without verifying the intermediate results.
+ */
+public class TransformQueue {
+
+    //region Fields
+
+    /**
+     * The queued transforms. Entries at {@link #mSize} and above are kept for reuse.
+     */
+    private final ArrayList<TransformValues> mValues = new ArrayList<>();
+
+    private int mSize;
+
+    private final TransformValues mTempValues = new TransformValues();
+
+    private final float[] mTempMatrix = new float[Matrices.SIZE];
+
+    //endregion Fields
+
+    //region Methods
+
+    /**
+     * Adds a copy of {@code t}, merging it with the transforms already queued where possible.
+     */
+    public void add(TransformValues t) {
+        if (isIndependent(t)) {
+            mSize = 0;
+        } else if (mSize > 0) {
+            final TransformValues last = mValues.get(mSize - 1);
+            mTempValues.set(last);
+            if (fold(mTempValues, t)) {
+                last.set(mTempValues);
+                return;
+            }
+        }
+
+        if (mSize == mValues.size()) {
+            mValues.add(new TransformValues());
+        }
+        mValues.get(mSize++).set(t);
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Resolves the queued transforms one after another, starting from an image drawn with
+     * {@code matrix}, and stores in {@code out} a single resolved transform with the combined
+     * result. The result pivots around the pivot of the last queued transform.
+     *
+     * @return false if the queue is empty, in which case {@code out} is unchanged
+     */
+    public boolean resolve(TransformEngine engine, float[] matrix, TransformValues out) {
+        if (mSize == 0) {
+            return false;
+        }
+        Matrices.set(mTempMatrix, matrix);
+        for (int i = 0; i < mSize; i++) {
+            out.set(mValues.get(i));
+            engine.resolve(mTempMatrix, out);
+            if (i < mSize - 1) {
+                engine.toMatrix(mTempMatrix, out, mTempMatrix);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of transforms in the queue after merging.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    //endregion Methods
+
+    //region Private methods
+
+    /**
+     * Folds {@code t} into {@code last}, which must pivot around the same image point, so that
+     * {@code last} has the effect of both. {@code last} may be partially modified if this
+     * returns false.
+     *
+     * @return false if the two cannot be expressed as a single transform
+     */
+    private static boolean fold(TransformValues last, TransformValues t) {
+        if (Float.isNaN(t.px) || Float.isNaN(t.py) ||
+                Float.compare(last.px, t.px) != 0 || Float.compare(last.py, t.py) != 0) {
+            return false;
+        }
+
+        if (Float.isNaN(t.sx) && Float.isNaN(t.sy)) {
+            // The scale does not change
+        } else if (Float.isNaN(t.sx) || Float.isNaN(t.sy) ||
+                Float.isNaN(last.sx) || Float.isNaN(last.sy)) {
+            return false;
+        } else if (t.scaleRelative) {
+            last.sx *= t.sx;
+            last.sy *= t.sy;
+        } else {
+            last.sx = t.sx;
+            last.sy = t.sy;
+            last.scaleRelative = false;
+        }
+
+        if (!t.moveRelative) {
+            last.x = t.x;
+            last.y = t.y;
+        } else if (last.moveRelative) {
+            last.x = valueOrZero(last.x) + valueOrZero(t.x);
+            last.y = valueOrZero(last.y) + valueOrZero(t.y);
+        } else if (Float.isNaN(last.x) || Float.isNaN(last.y)) {
+            // The pivot moves relative to the center of the content, which we don't know here
+            return false;
+        } else {
+            last.x += valueOrZero(t.x);
+            last.y += valueOrZero(t.y);
+        }
+        last.moveRelative = t.moveRelative && last.moveRelative;
+        return true;
+    }
+
+    /**
+     * Returns whether the result of {@code t} is the same whatever the current image matrix.
+     */
+    private static boolean isIndependent(TransformValues t) {
+        return !t.scaleRelative && !t.moveRelative &&
+                !Float.isNaN(t.px) && !Float.isNaN(t.py) &&
+                !Float.isNaN(t.sx) && !Float.isNaN(t.sy);
+    }
+
+    private static float valueOrZero(float value) {
+        return (Float.isNaN(value) ? 0.0f : value);
+    }
+
+    //endregion Private methods
+}
@@ -0,0 +1,81 @@
+package com.codepunk.demo.core.transform;
+
+/**
+ * A mutable description of a transform: the image point {@code (px, py)} to pivot around, the
+ * scale to apply around it, and the view point {@code (x, y)} at which the pivot should end up.
+ * A value of {@link Float#NaN} means "use the default", which {@link TransformEngine#resolve}
+ * replaces with a value derived from the current image matrix.
+ * <p>
+ * Fields are public so that the engine can read and write them on the gesture hot path without
+ * accessor overhead.
+ * </p>
+ */
+public final class TransformValues {
+
+    //region Fields
+
+    public float px;
+    public float py;
+    public float sx;
+    public float sy;
+    public float x;
+    public float y;
+
+    /**
+     * Whether {@link #sx} and {@link #sy} are multipliers of the current scale rather than
+     * absolute scales.
+     */
+    public boolean scaleRelative;
+
+    /**
+     * Whether {@link #x} and {@link #y} are offsets from the pivot's current location rather
+     * than absolute view coordinates.
+     */
+    public boolean moveRelative;
+
+    //endregion Fields
+
+    //region Constructors
+
+    public TransformValues() {
+        reset();
+    }
+
+    //endregion Constructors
+
+    //region Inherited methods
+
+    @Override
+    public String toString() {
+        return "TransformValues[p=(" + px + "," + py + "),s=(" + sx + "," + sy + ")" +
+                (scaleRelative ? "r" : "") + ",t=(" + x + "," + y + ")" +
+                (moveRelative ? "r" : "") + "]";
+    }
+
+    //endregion Inherited methods
+
+    //region Methods
+
+    public void reset() {
+        set(Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN);
+        scaleRelative = false;
+        moveRelative = false;
+    }
+
+    public void set(float px, float py, float sx, float sy, float x, float y) {
+        this.px = px;
+        this.py = py;
+        this.sx = sx;
+        this.sy = sy;
+        this.x = x;
+        this.y = y;
+    }
+
+    public void set(TransformValues src) {
+        set(src.px, src.py, src.sx, src.sy, src.x, src.y);
+        scaleRelative = src.scaleRelative;
+        moveRelative = src.moveRelative;
+    }
+
+    //endregion Methods
+}
@@ -0,0 +1,106 @@
+package com.codepunk.demo.core.animation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests for {@link ScaleFling} driven by a {@link ManualFrameClock}.
+ */
+public class ScaleFlingTest {
+
+    private static final float DELTA = 0.0001f;
+
+    private ManualFrameClock mClock;
+    private ScaleFling mFling;
+
+    @Before
+    public void setUp() {
+        mClock = new ManualFrameClock(60.0f);
+        mClock.setFrameTimeNanos(1000000000L);
+        mFling = new ScaleFling();
+    }
+
+    @Test
+    public void slowReleaseDoesNotFling() {
+        assertFalse(fling(1.0f, 0.1f));
+        assertTrue(mFling.isFinished());
+        assertFalse(mFling.computeScale(mClock.advanceFrames(1)));
+    }
+
+    @Test
+    public void momentumDecaysToFinalScale() {
+        assertTrue(fling(1.0f, 2.0f));
+        final float finalSx = mFling.getFinalSx();
+        assertEquals(1.0f + 2.0f / ScaleFling.DEFAULT_FRICTION, finalSx, DELTA);
+
+        float lastSx = 1.0f;
+        int frames = 0;
+        while (mFling.computeScale(mClock.advanceFrames(1))) {
+            assertTrue(mFling.getCurrentSx() > lastSx);
+            assertFalse(mFling.isOverScaled());
+            lastSx = mFling.getCurrentSx();
+            assertTrue(++frames < 600);
+        }
+        assertEquals(finalSx, mFling.getCurrentSx(), 0.01f);
+    }
+
+    @Test
+    public void overshootsLimitAndSettles() {
+        assertTrue(fling(3.5f, 6.0f));
+        assertEquals(4.0f, mFling.getFinalSx(), DELTA);
+
+        boolean overScaled = false;
+        int frames = 0;
+        while (mFling.computeScale(mClock.advanceFrames(1))) {
+            overScaled |= mFling.isOverScaled();
+            assertTrue(++frames < 600);
+        }
+        assertTrue(overScaled);
+        assertFalse(mFling.isOverScaled());
+        assertEquals(4.0f, mFling.getCurrentSx(), DELTA);
+        assertEquals(4.0f, mFling.getCurrentSy(), DELTA);
+    }
+
+    @Test
+    public void zoomOutSettlesAtMinimum() {
+        assertTrue(fling(1.0f, -4.0f));
+        while (mFling.computeScale(mClock.advanceFrames(1))) {
+            assertTrue(mFling.getCurrentSx() > 0.0f);
+        }
+        assertEquals(0.5f, mFling.getCurrentSx(), DELTA);
+    }
+
+    @Test
+    public void isIndependentOfFrameRate() {
+        fling(3.5f, 6.0f);
+        final long startNanos = mClock.getFrameTimeNanos();
+        for (int i = 0; i < 20; i++) {
+            mFling.computeScale(mClock.advanceFrames(1));
+        }
+        final float sixtyHz = mFling.getCurrentSx();
+
+        mClock.setFrameTimeNanos(startNanos);
+        fling(3.5f, 6.0f);
+        mFling.computeScale(startNanos + 20 * mClock.getFrameIntervalNanos());
+        assertEquals(sixtyHz, mFling.getCurrentSx(), DELTA);
+    }
+
+    private boolean fling(float s, float v) {
+        return mFling.fling(
+                50.0f,
+                50.0f,
+                s,
+                s,
+                v,
+                v,
+                0.5f,
+                0.5f,
+                4.0f,
+                4.0f,
+                mClock.getFrameTimeNanos());
+    }
+}
@@ -0,0 +1,193 @@
+package com.codepunk.demo.core.animation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests for {@link TransformSpring} driven by a {@link ManualFrameClock}.
+ */
+public class TransformSpringTest {
+
+    private static final long RETENTION_NANOS = 300000000L;
+    private static final float DELTA = 0.0001f;
+
+    private ManualFrameClock mClock;
+    private TransformSpring mSpring;
+
+    @Before
+    public void setUp() {
+        mClock = new ManualFrameClock(60.0f);
+        mClock.setFrameTimeNanos(1000000000L);
+        mSpring = new TransformSpring(RETENTION_NANOS);
+    }
+
+    @Test
+    public void settlesAtEndValues() {
+        start(1.0f, 0.0f, 2.0f, 100.0f);
+        int frames = 0;
+        float lastSx = 1.0f;
+        while (mSpring.computeTransform(mClock.advanceFrames(1))) {
+            // A critically-damped spring approaches without overshooting
+            assertTrue(mSpring.getCurrentSx() >= lastSx - DELTA);
+            assertTrue(mSpring.getCurrentSx() <= 2.0f + DELTA);
+            lastSx = mSpring.getCurrentSx();
+            assertTrue(++frames < 120);
+        }
+        assertTrue(mSpring.isFinished());
+        assertEquals(2.0f, mSpring.getCurrentSx(), DELTA);
+        assertEquals(100.0f, mSpring.getCurrentX(), DELTA);
+        assertEquals(0.0f, mSpring.getVelocitySx(), DELTA);
+    }
+
+    @Test
+    public void isIndependentOfFrameRate() {
+        start(1.0f, 0.0f, 2.0f, 100.0f);
+        final long startNanos = mClock.getFrameTimeNanos();
+        for (int i = 0; i < 6; i++) {
+            mSpring.computeTransform(mClock.advanceFrames(1));
+        }
+        final float sixtyHz = mSpring.getCurrentX();
+
+        mSpring.abortAnimation();
+        mClock.setFrameTimeNanos(startNanos);
+        start(1.0f, 0.0f, 2.0f, 100.0f);
+        mSpring.computeTransform(startNanos + 6 * mClock.getFrameIntervalNanos());
+        assertEquals(sixtyHz, mSpring.getCurrentX(), 0.001f);
+    }
+
+    @Test
+    public void retargetingKeepsVelocity() {
+        start(1.0f, 0.0f, 2.0f, 100.0f);
+        mSpring.computeTransform(mClock.advanceFrames(5));
+        final float velocitySx = mSpring.getVelocitySx();
+        final float velocityX = mSpring.getVelocityX();
+        assertTrue(velocitySx > 0.0f);
+
+        // Retarget from where it is, around the same pivot
+        mSpring.startTransform(
+                50.0f,
+                50.0f,
+                mSpring.getCurrentSx(),
+                mSpring.getCurrentSy(),
+                mSpring.getCurrentX(),
+                mSpring.getCurrentY(),
+                4.0f,
+                4.0f,
+                200.0f,
+                200.0f,
+                mClock.getFrameTimeNanos());
+        assertEquals(velocitySx, mSpring.getVelocitySx(), DELTA);
+        assertEquals(velocityX, mSpring.getVelocityX(), DELTA);
+        assertFalse(mSpring.isFinished());
+    }
+
+    @Test
+    public void retargetingAroundNewPivotCarriesPointVelocity() {
+        start(1.0f, 0.0f, 2.0f, 100.0f);
+        mSpring.computeTransform(mClock.advanceFrames(5));
+        final float vSx = mSpring.getVelocitySx();
+        final float vX = mSpring.getVelocityX();
+        final float sx = mSpring.getCurrentSx();
+        final float x = mSpring.getCurrentX();
+
+        // Image point (150, 50) is 100 image pixels right of the old pivot
+        mSpring.startTransform(
+                150.0f,
+                50.0f,
+                sx,
+                sx,
+                x + sx * 100.0f,
+                x,
+                2.0f,
+                2.0f,
+                300.0f,
+                100.0f,
+                mClock.getFrameTimeNanos());
+        assertEquals(vX + vSx * 100.0f, mSpring.getVelocityX(), 0.01f);
+    }
+
+    @Test
+    public void interruptedVelocityIsRetainedBriefly() {
+        start(1.0f, 0.0f, 2.0f, 100.0f);
+        mSpring.computeTransform(mClock.advanceFrames(3));
+        mSpring.interrupt(mClock.advanceFrames(1));
+        assertTrue(mSpring.isFinished());
+        final float velocitySx = mSpring.getVelocitySx();
+        assertTrue(velocitySx > 0.0f);
+        assertFalse(mSpring.computeTransform(mClock.advanceFrames(1)));
+
+        // Within the retention period, a new transform continues the motion
+        start(mSpring.getCurrentSx(), mSpring.getCurrentX(), 1.0f, 0.0f);
+        assertEquals(velocitySx, mSpring.getVelocitySx(), DELTA);
+
+        // After it, a new transform starts from rest
+        mSpring.interrupt(mClock.advanceFrames(1));
+        mClock.setFrameTimeNanos(mClock.getFrameTimeNanos() + RETENTION_NANOS + 1L);
+        start(mSpring.getCurrentSx(), mSpring.getCurrentX(), 2.0f, 100.0f);
+        assertEquals(0.0f, mSpring.getVelocitySx(), DELTA);
+    }
+
+    @Test
+    public void handedOffVelocityStartsMotion() {
+        mSpring.setVelocity(50.0f, 50.0f, 3.0f, 3.0f, 0.0f, 0.0f, mClock.getFrameTimeNanos());
+        start(1.0f, 0.0f, 1.0f, 0.0f);
+        mSpring.computeTransform(mClock.advanceFrames(1));
+        assertTrue(mSpring.getCurrentSx() > 1.0f);
+        assertFalse(mSpring.isFinished());
+    }
+
+    @Test
+    public void underDampedSpringOvershoots() {
+        mSpring.setDampingRatio(0.5f);
+        start(1.0f, 0.0f, 2.0f, 100.0f);
+        float maxSx = 0.0f;
+        while (mSpring.computeTransform(mClock.advanceFrames(1))) {
+            maxSx = Math.max(maxSx, mSpring.getCurrentSx());
+        }
+        assertTrue(maxSx > 2.0f);
+        assertEquals(2.0f, mSpring.getCurrentSx(), DELTA);
+    }
+
+    @Test
+    public void holdingPausesTime() {
+        start(1.0f, 0.0f, 2.0f, 100.0f);
+        final long startNanos = mClock.getFrameTimeNanos();
+        mSpring.computeTransform(mClock.advanceFrames(3));
+        final float heldSx = mSpring.getCurrentSx();
+        final float heldVelocitySx = mSpring.getVelocitySx();
+        mSpring.hold(mClock.advanceFrames(1));
+        mSpring.hold(mClock.advanceFrames(1));
+        assertEquals(heldSx, mSpring.getCurrentSx(), DELTA);
+        assertEquals(heldVelocitySx, mSpring.getVelocitySx(), DELTA);
+        assertEquals(2.0f, mSpring.getEndSx(), DELTA);
+        mSpring.computeTransform(mClock.advanceFrames(3));
+        final float resumedX = mSpring.getCurrentX();
+
+        // The same spring, never held
+        mSpring.abortAnimation();
+        mClock.setFrameTimeNanos(startNanos);
+        start(1.0f, 0.0f, 2.0f, 100.0f);
+        mSpring.computeTransform(mClock.advanceFrames(3));
+        mSpring.computeTransform(mClock.advanceFrames(3));
+        assertEquals(mSpring.getCurrentX(), resumedX, 0.001f);
+    }
+
+    private void start(float sx, float x, float endSx, float endX) {
+        mSpring.startTransform(
+                50.0f,
+                50.0f,
+                sx,
+                sx,
+                x,
+                x,
+                endSx,
+                endSx,
+                endX,
+                endX,
+                mClock.getFrameTimeNanos());
+    }
+}
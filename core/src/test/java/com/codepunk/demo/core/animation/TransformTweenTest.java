@@ -0,0 +1,89 @@
+package com.codepunk.demo.core.animation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests for {@link TransformTween} driven by a {@link ManualFrameClock}.
+ */
+public class TransformTweenTest {
+
+    private static final long DURATION_NANOS = 400000000L;
+    private static final float DELTA = 0.0001f;
+
+    private ManualFrameClock mClock;
+    private TransformTween mTween;
+
+    @Before
+    public void setUp() {
+        mClock = new ManualFrameClock(120.0f);
+        mClock.setFrameTimeNanos(1000000000L);
+        mTween = new TransformTween(DURATION_NANOS);
+    }
+
+    @Test
+    public void finishesExactlyAtDuration() {
+        start();
+        final long intervalNanos = mClock.getFrameIntervalNanos();
+        final int frames = (int) ((DURATION_NANOS + intervalNanos - 1) / intervalNanos);
+        for (int i = 1; i < frames; i++) {
+            assertTrue(mTween.computeTransform(mClock.advanceFrames(1)));
+            assertFalse(mTween.isFinished());
+        }
+        assertTrue(mTween.computeTransform(mClock.advanceFrames(1)));
+        assertTrue(mTween.isFinished());
+        assertEquals(2.0f, mTween.getCurrentSx(), DELTA);
+        assertEquals(100.0f, mTween.getCurrentX(), DELTA);
+        assertFalse(mTween.computeTransform(mClock.advanceFrames(1)));
+    }
+
+    @Test
+    public void followsDecelerateCurveAtPresentationTime() {
+        start();
+        final long startNanos = mClock.getFrameTimeNanos();
+        for (int i = 0; i < 10; i++) {
+            final long frameTimeNanos = mClock.advanceFrames(1);
+            mTween.computeTransform(frameTimeNanos);
+            final float fraction = (float) (frameTimeNanos - startNanos) / DURATION_NANOS;
+            final float expected = TransformTween.decelerate(fraction);
+            assertEquals(1.0f + expected, mTween.getCurrentSx(), DELTA);
+            assertEquals(100.0f * expected, mTween.getCurrentX(), DELTA);
+        }
+    }
+
+    @Test
+    public void resolvesSubMillisecondTimes() {
+        start();
+        final long frameTimeNanos = mClock.advanceFrames(1);
+        mTween.computeTransform(frameTimeNanos);
+        final float first = mTween.getCurrentSx();
+        mTween.computeTransform(frameTimeNanos + 250000L);
+        assertTrue(mTween.getCurrentSx() > first);
+    }
+
+    @Test
+    public void framesBeforeStartShowStartValues() {
+        start();
+        mTween.computeTransform(mClock.getFrameTimeNanos() - mClock.getFrameIntervalNanos());
+        assertEquals(1.0f, mTween.getCurrentSx(), DELTA);
+    }
+
+    private void start() {
+        mTween.startTransform(
+                50.0f,
+                50.0f,
+                1.0f,
+                1.0f,
+                0.0f,
+                0.0f,
+                2.0f,
+                2.0f,
+                100.0f,
+                100.0f,
+                mClock.getFrameTimeNanos());
+    }
+}
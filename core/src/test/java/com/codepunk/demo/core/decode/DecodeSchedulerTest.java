@@ -0,0 +1,151 @@
+package com.codepunk.demo.core.decode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests for {@link DecodeScheduler}, run on an executor that only runs workers when told to.
+ */
+public class DecodeSchedulerTest {
+
+    /**
+     * Holds on to the workers it is given until {@link #runAll()}.
+     */
+    private static class ManualExecutor implements Executor {
+
+        final ArrayDeque<Runnable> workers = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            workers.add(command);
+        }
+
+        void runAll() {
+            Runnable worker;
+            while ((worker = workers.poll()) != null) {
+                worker.run();
+            }
+        }
+    }
+
+    private ManualExecutor mExecutor;
+    private DecodeScheduler mScheduler;
+    private DecodeScheduler.Group mGroup;
+    private ArrayList<String> mRan;
+
+    @Before
+    public void setUp() {
+        mExecutor = new ManualExecutor();
+        mScheduler = new DecodeScheduler(mExecutor, 1);
+        mGroup = mScheduler.newGroup();
+        mGroup.setViewport(0.0f, 0.0f, 1000.0f, 1000.0f);
+        mRan = new ArrayList<>();
+    }
+
+    @Test
+    public void runsByPriorityThenDistance() {
+        submit("idle", DecodeScheduler.PRIORITY_IDLE, 500.0f, 500.0f);
+        submit("prefetch", DecodeScheduler.PRIORITY_PREFETCH, 1500.0f, 500.0f);
+        submit("far", DecodeScheduler.PRIORITY_VISIBLE, 900.0f, 900.0f);
+        submit("near", DecodeScheduler.PRIORITY_VISIBLE, 600.0f, 400.0f);
+        submit("also near", DecodeScheduler.PRIORITY_VISIBLE, 600.0f, 400.0f);
+        mExecutor.runAll();
+        assertEquals(Arrays.asList("near", "also near", "far", "prefetch", "idle"), mRan);
+    }
+
+    @Test
+    public void movingViewportCancelsStaleVisibleTasks() {
+        final DecodeScheduler.Task stale =
+                submit("stale", DecodeScheduler.PRIORITY_VISIBLE, 100.0f, 100.0f);
+        submit("prefetch", DecodeScheduler.PRIORITY_PREFETCH, 100.0f, 100.0f);
+        submit("visible", DecodeScheduler.PRIORITY_VISIBLE, 1900.0f, 100.0f);
+        mGroup.setViewport(1000.0f, 0.0f, 2000.0f, 1000.0f);
+        assertTrue(stale.isCancelled());
+        assertEquals(2, mScheduler.getPendingCount());
+
+        // Whole-image work and other groups are unaffected
+        mGroup.submit(DecodeScheduler.PRIORITY_VISIBLE, record("whole"));
+        final DecodeScheduler.Group other = mScheduler.newGroup();
+        other.submit(DecodeScheduler.PRIORITY_VISIBLE, 0.0f, 0.0f, 10.0f, 10.0f, record("other"));
+        mGroup.setViewport(5000.0f, 5000.0f, 6000.0f, 6000.0f);
+        mExecutor.runAll();
+        assertEquals(Arrays.asList("whole", "other", "prefetch"), mRan);
+    }
+
+    @Test
+    public void cancelAndPromote() {
+        final DecodeScheduler.Task cancelled =
+                submit("cancelled", DecodeScheduler.PRIORITY_VISIBLE, 500.0f, 500.0f);
+        submit("visible", DecodeScheduler.PRIORITY_VISIBLE, 900.0f, 900.0f);
+        final DecodeScheduler.Task promoted =
+                submit("promoted", DecodeScheduler.PRIORITY_PREFETCH, 550.0f, 550.0f);
+        cancelled.cancel();
+        promoted.setPriority(DecodeScheduler.PRIORITY_VISIBLE);
+        mExecutor.runAll();
+        assertEquals(Arrays.asList("promoted", "visible"), mRan);
+        assertTrue(cancelled.isCancelled());
+        assertFalse(promoted.isCancelled());
+    }
+
+    @Test
+    public void concurrencyIsCapped() {
+        final DecodeScheduler scheduler = new DecodeScheduler(mExecutor, 2);
+        final DecodeScheduler.Group group = scheduler.newGroup();
+        for (int i = 0; i < 5; i++) {
+            group.submit(DecodeScheduler.PRIORITY_VISIBLE, record("task " + i));
+        }
+        assertEquals(2, mExecutor.workers.size());
+
+        // The workers between them run every task, after which new work starts a new worker
+        mExecutor.runAll();
+        assertEquals(5, mRan.size());
+        assertEquals(0, scheduler.getPendingCount());
+        group.submit(DecodeScheduler.PRIORITY_VISIBLE, record("later"));
+        assertEquals(1, mExecutor.workers.size());
+        mExecutor.runAll();
+        assertEquals("later", mRan.get(5));
+    }
+
+    @Test
+    public void failedTaskReleasesItsWorker() {
+        mGroup.submit(DecodeScheduler.PRIORITY_VISIBLE, new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+        });
+        submit("next", DecodeScheduler.PRIORITY_PREFETCH, 500.0f, 500.0f);
+        try {
+            mExecutor.runAll();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        mExecutor.runAll();
+        assertEquals(Arrays.asList("next"), mRan);
+    }
+
+    /**
+     * Submits a task for a 100x100 region centered on {@code x}, {@code y}.
+     */
+    private DecodeScheduler.Task submit(String name, int priority, float x, float y) {
+        return mGroup.submit(priority, x - 50.0f, y - 50.0f, x + 50.0f, y + 50.0f, record(name));
+    }
+
+    private Runnable record(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mRan.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,125 @@
+package com.codepunk.demo.core.decode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests for {@link UploadQueue}, with a 1000x1000 viewport at the origin and items that each
+ * cover a 100x100 region.
+ */
+public class UploadQueueTest {
+
+    private static final long ITEM_BYTES = 100L;
+
+    private UploadQueue<String> mQueue;
+    private ArrayList<String> mOut;
+
+    @Before
+    public void setUp() {
+        mQueue = new UploadQueue<>(0L, 0);
+        mOut = new ArrayList<>();
+    }
+
+    @Test
+    public void releasesNearestFirstWithinByteBudget() {
+        mQueue.setBudget(2 * ITEM_BYTES, 0);
+        add("corner", 50.0f, 50.0f, 0L);
+        add("center", 500.0f, 500.0f, 0L);
+        add("near", 600.0f, 500.0f, 0L);
+        add("also near", 500.0f, 600.0f, 0L);
+
+        assertEquals(2, poll(1000L));
+        assertEquals(Arrays.asList("center", "near"), mOut);
+        assertEquals(2 * ITEM_BYTES, mQueue.getLastStats().getBytes());
+        assertEquals(2, mQueue.size());
+
+        assertEquals(2, poll(2000L));
+        assertEquals(Arrays.asList("center", "near", "also near", "corner"), mOut);
+        assertTrue(mQueue.isEmpty());
+        assertEquals(0, poll(3000L));
+    }
+
+    @Test
+    public void countBudgetAndOversizedItems() {
+        mQueue.setBudget(ITEM_BYTES / 2, 0);
+        add("first", 500.0f, 500.0f, 0L);
+        add("second", 500.0f, 500.0f, 0L);
+
+        // Each frame takes at least one item, however large
+        assertEquals(1, poll(0L));
+        assertEquals(1, poll(0L));
+        assertEquals(Arrays.asList("first", "second"), mOut);
+
+        mQueue.setBudget(0L, 3);
+        for (int i = 0; i < 5; i++) {
+            add("item " + i, 500.0f, 500.0f, 0L);
+        }
+        assertEquals(3, poll(0L));
+        assertEquals(2, poll(0L));
+    }
+
+    @Test
+    public void viewportAtPollTimeDecidesOrder() {
+        mQueue.setBudget(0L, 1);
+        add("left", 100.0f, 500.0f, 0L);
+        add("right", 900.0f, 500.0f, 0L);
+        mQueue.poll(500.0f, 0.0f, 1500.0f, 1000.0f, 0L, mOut);
+        assertEquals(Arrays.asList("right"), mOut);
+    }
+
+    @Test
+    public void recordsWaitTimes() {
+        add("early", 500.0f, 500.0f, 1000L);
+        add("late", 900.0f, 900.0f, 4000L);
+        assertEquals(2, poll(5000L));
+
+        final UploadQueue.Stats last = mQueue.getLastStats();
+        assertEquals(2, last.getCount());
+        assertEquals(4000L, last.getMaxWaitNanos());
+        assertEquals(2500L, last.getMeanWaitNanos());
+
+        add("next", 500.0f, 500.0f, 6000L);
+        poll(7000L);
+        assertEquals(1000L, mQueue.getLastStats().getMaxWaitNanos());
+        final UploadQueue.Stats total = mQueue.getTotalStats();
+        assertEquals(3, total.getCount());
+        assertEquals(6000L, total.getTotalWaitNanos());
+        assertEquals(3 * ITEM_BYTES, total.getBytes());
+
+        mQueue.resetStats();
+        assertEquals(0, total.getCount());
+        assertEquals(0L, total.getMeanWaitNanos());
+    }
+
+    @Test
+    public void removeAndClear() {
+        add("removed", 500.0f, 500.0f, 0L);
+        add("kept", 900.0f, 900.0f, 0L);
+        assertTrue(mQueue.remove("removed"));
+        assertFalse(mQueue.remove("removed"));
+
+        final ArrayList<String> cleared = new ArrayList<>();
+        mQueue.clear(cleared);
+        assertEquals(Arrays.asList("kept"), cleared);
+        assertEquals(0, poll(0L));
+        assertEquals(0, mQueue.getTotalStats().getCount());
+    }
+
+    /**
+     * Adds an item for a 100x100 region centered on {@code x}, {@code y}.
+     */
+    private void add(String item, float x, float y, long timeNanos) {
+        mQueue.add(item, ITEM_BYTES, x - 50.0f, y - 50.0f, x + 50.0f, y + 50.0f, timeNanos);
+    }
+
+    private int poll(long timeNanos) {
+        return mQueue.poll(0.0f, 0.0f, 1000.0f, 1000.0f, timeNanos, mOut);
+    }
+}
@@ -0,0 +1,248 @@
+package com.codepunk.demo.core.input;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests for {@link GestureRecognizer}, fed with synthetic touch events.
+ */
+public class GestureRecognizerTest {
+
+    private static final float DELTA = 0.001f;
+    private static final long FRAME_NANOS = 16000000L;
+
+    /**
+     * A reusable touch event without historical samples.
+     */
+    private static class FakeTouchEvent implements TouchEvent {
+
+        int action;
+        int actionIndex;
+        long timeNanos;
+        int pointerCount;
+        final float[] xs = new float[4];
+        final float[] ys = new float[4];
+
+        @Override
+        public int getActionMasked() {
+            return action;
+        }
+
+        @Override
+        public int getActionIndex() {
+            return actionIndex;
+        }
+
+        @Override
+        public long getEventTimeNanos() {
+            return timeNanos;
+        }
+
+        @Override
+        public long getHistoricalEventTimeNanos(int pos) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        public float getHistoricalX(int pointerIndex, int pos) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        public float getHistoricalY(int pointerIndex, int pos) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        public int getHistorySize() {
+            return 0;
+        }
+
+        @Override
+        public int getPointerCount() {
+            return pointerCount;
+        }
+
+        @Override
+        public float getX(int pointerIndex) {
+            return xs[pointerIndex];
+        }
+
+        @Override
+        public float getY(int pointerIndex) {
+            return ys[pointerIndex];
+        }
+    }
+
+    /**
+     * Records the callbacks it receives.
+     */
+    private static class RecordingListener implements GestureRecognizer.Listener {
+
+        int begins;
+        int updates;
+        int ends;
+        int taps;
+        int doubleTaps;
+        float totalPanX;
+        float totalPanY;
+        float totalScale = 1.0f;
+
+        @Override
+        public void onGestureBegin(GestureRecognizer recognizer) {
+            begins++;
+        }
+
+        @Override
+        public void onGestureUpdate(GestureRecognizer recognizer) {
+            updates++;
+            totalPanX += recognizer.getPanX();
+            totalPanY += recognizer.getPanY();
+            totalScale *= recognizer.getScaleFactor();
+        }
+
+        @Override
+        public void onGestureEnd(GestureRecognizer recognizer) {
+            ends++;
+        }
+
+        @Override
+        public void onTap(GestureRecognizer recognizer) {
+            taps++;
+        }
+
+        @Override
+        public void onDoubleTap(GestureRecognizer recognizer) {
+            doubleTaps++;
+        }
+    }
+
+    private FakeTouchEvent mEvent;
+    private RecordingListener mListener;
+    private GestureRecognizer mRecognizer;
+    private long mTimeNanos;
+
+    @Before
+    public void setUp() {
+        mEvent = new FakeTouchEvent();
+        mListener = new RecordingListener();
+        mRecognizer = new GestureRecognizer(mListener);
+        mRecognizer.setTouchSlop(8.0f);
+        mRecognizer.setDoubleTapSlop(100.0f);
+        mRecognizer.setDoubleTapTimeoutNanos(300000000L);
+        mRecognizer.setFlingVelocities(50.0f, 8000.0f);
+        mTimeNanos = 1000000000L;
+    }
+
+    @Test
+    public void panStartsAfterTouchSlop() {
+        event(TouchEvent.ACTION_DOWN, 0, 100.0f, 100.0f);
+        event(TouchEvent.ACTION_MOVE, 0, 105.0f, 100.0f);
+        assertEquals(0, mListener.updates);
+        assertFalse(mRecognizer.isTransforming());
+
+        event(TouchEvent.ACTION_MOVE, 0, 120.0f, 110.0f);
+        assertEquals(1, mListener.updates);
+        event(TouchEvent.ACTION_MOVE, 0, 130.0f, 110.0f);
+        assertEquals(30.0f, mListener.totalPanX, DELTA);
+        assertEquals(10.0f, mListener.totalPanY, DELTA);
+        assertEquals(1.0f, mListener.totalScale, DELTA);
+        assertEquals(130.0f, mRecognizer.getFocusX(), DELTA);
+
+        event(TouchEvent.ACTION_UP, 0, 130.0f, 110.0f);
+        assertEquals(1, mListener.ends);
+        assertEquals(0, mListener.taps);
+    }
+
+    @Test
+    public void pinchReportsScaleAndFocusDriftTogether() {
+        event(TouchEvent.ACTION_DOWN, 0, 100.0f, 100.0f);
+        event(TouchEvent.ACTION_POINTER_DOWN, 1, 100.0f, 100.0f, 200.0f, 100.0f);
+        assertEquals(150.0f, mRecognizer.getFocusX(), DELTA);
+        assertEquals(100.0f, mRecognizer.getSpan(), DELTA);
+
+        // Spread to twice the span while the focus drifts 10px down
+        event(TouchEvent.ACTION_MOVE, 0, 75.0f, 110.0f, 225.0f, 110.0f);
+        event(TouchEvent.ACTION_MOVE, 0, 50.0f, 110.0f, 250.0f, 110.0f);
+        assertEquals(2, mListener.updates);
+        assertEquals(2.0f, mListener.totalScale, DELTA);
+        assertEquals(0.0f, mListener.totalPanX, DELTA);
+        assertEquals(10.0f, mListener.totalPanY, DELTA);
+    }
+
+    @Test
+    public void pointerChangesDoNotJump() {
+        event(TouchEvent.ACTION_DOWN, 0, 100.0f, 100.0f);
+        event(TouchEvent.ACTION_POINTER_DOWN, 1, 100.0f, 100.0f, 300.0f, 100.0f);
+        event(TouchEvent.ACTION_POINTER_UP, 0, 100.0f, 100.0f, 300.0f, 100.0f);
+        assertEquals(300.0f, mRecognizer.getFocusX(), DELTA);
+        assertEquals(1, mRecognizer.getPointerCount());
+
+        event(TouchEvent.ACTION_MOVE, 0, 310.0f, 100.0f);
+        assertEquals(10.0f, mListener.totalPanX, DELTA);
+        assertEquals(1.0f, mListener.totalScale, DELTA);
+    }
+
+    @Test
+    public void tapAndDoubleTap() {
+        event(TouchEvent.ACTION_DOWN, 0, 100.0f, 100.0f);
+        event(TouchEvent.ACTION_UP, 0, 102.0f, 100.0f);
+        assertEquals(1, mListener.taps);
+
+        mTimeNanos += 100000000L;
+        event(TouchEvent.ACTION_DOWN, 0, 120.0f, 110.0f);
+        assertEquals(1, mListener.doubleTaps);
+        event(TouchEvent.ACTION_MOVE, 0, 200.0f, 110.0f);
+        event(TouchEvent.ACTION_UP, 0, 200.0f, 110.0f);
+        assertEquals(0, mListener.updates);
+        assertEquals(1, mListener.taps);
+
+        // Too late for a double tap
+        event(TouchEvent.ACTION_DOWN, 0, 100.0f, 100.0f);
+        event(TouchEvent.ACTION_UP, 0, 100.0f, 100.0f);
+        mTimeNanos += 400000000L;
+        event(TouchEvent.ACTION_DOWN, 0, 100.0f, 100.0f);
+        assertEquals(1, mListener.doubleTaps);
+    }
+
+    @Test
+    public void releaseVelocities() {
+        event(TouchEvent.ACTION_DOWN, 0, 100.0f, 100.0f);
+        for (int i = 1; i <= 4; i++) {
+            event(TouchEvent.ACTION_MOVE, 0, 100.0f + 16.0f * i, 100.0f);
+        }
+        event(TouchEvent.ACTION_UP, 0, 100.0f + 16.0f * 5, 100.0f);
+        assertTrue(mRecognizer.isFling());
+        assertEquals(1000.0f, mRecognizer.getVelocityX(), 1.0f);
+        assertEquals(0.0f, mRecognizer.getVelocityY(), 1.0f);
+
+        // A pinch released while spreading
+        event(TouchEvent.ACTION_DOWN, 0, 100.0f, 100.0f);
+        event(TouchEvent.ACTION_POINTER_DOWN, 1, 100.0f, 100.0f, 200.0f, 100.0f);
+        for (int i = 1; i <= 4; i++) {
+            event(TouchEvent.ACTION_MOVE, 0, 100.0f - 8.0f * i, 100.0f, 200.0f + 8.0f * i, 100.0f);
+        }
+        event(TouchEvent.ACTION_POINTER_UP, 1, 60.0f, 100.0f, 240.0f, 100.0f);
+        event(TouchEvent.ACTION_UP, 0, 60.0f, 100.0f);
+        assertEquals(1000.0f / 180.0f, mRecognizer.getScaleVelocity(), 0.1f);
+    }
+
+    private void event(int action, int actionIndex, float... coords) {
+        if (action != TouchEvent.ACTION_DOWN) {
+            mTimeNanos += FRAME_NANOS;
+        }
+        mEvent.action = action;
+        mEvent.actionIndex = actionIndex;
+        mEvent.timeNanos = mTimeNanos;
+        mEvent.pointerCount = coords.length / 2;
+        for (int i = 0; i < mEvent.pointerCount; i++) {
+            mEvent.xs[i] = coords[i * 2];
+            mEvent.ys[i] = coords[i * 2 + 1];
+        }
+        mRecognizer.onTouchEvent(mEvent);
+    }
+}
@@ -0,0 +1,129 @@
+package com.codepunk.demo.core.input;
+
+import com.codepunk.demo.core.animation.ManualFrameClock;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests for {@link PointerPredictor}. The latency tests replay a synthetic drag the way the
+ * platform delivers it: the digitizer samples at 240 Hz, the samples are batched into one event
+ * per 60 Hz frame, and the frame that handles an event is presented one frame interval after its
+ * vsync. Each frame, the position the content was moved to is compared with where the finger
+ * really is when the frame appears.
+ */
+public class PointerPredictorTest {
+
+    private static final long SAMPLE_INTERVAL_NANOS = 4166667L;
+    private static final long START_NANOS = 1000000000L;
+    private static final long DURATION_NANOS = 2000000000L;
+    private static final float DELTA = 0.01f;
+
+    @Test
+    public void constantVelocityIsPredictedExactly() {
+        final PointerPredictor predictor = new PointerPredictor(PointerPredictor.MODE_LINEAR);
+        for (int i = 0; i < 10; i++) {
+            final long timeNanos = START_NANOS + i * SAMPLE_INTERVAL_NANOS;
+            predictor.addSample(timeNanos, 100.0f + 0.001f * (i * SAMPLE_INTERVAL_NANOS / 1000L),
+                    50.0f);
+        }
+        final long lastNanos = START_NANOS + 9 * SAMPLE_INTERVAL_NANOS;
+        assertEquals(1000.0f, predictor.getVelocityX(), 0.1f);
+        assertEquals(0.0f, predictor.getVelocityY(), 0.1f);
+        assertTrue(predictor.predict(lastNanos + 16000000L));
+        assertEquals(100.0f + 0.001f * (9 * SAMPLE_INTERVAL_NANOS + 16000000L) / 1000L,
+                predictor.getPredictedX(), 0.05f);
+        assertEquals(50.0f, predictor.getPredictedY(), DELTA);
+    }
+
+    @Test
+    public void predictionIsCappedAndStationaryPointerStaysPut() {
+        final PointerPredictor predictor = new PointerPredictor(PointerPredictor.MODE_LINEAR);
+        assertFalse(predictor.predict(START_NANOS));
+        predictor.addSample(START_NANOS, 0.0f, 0.0f);
+        predictor.addSample(START_NANOS + 10000000L, 10.0f, 0.0f);
+
+        // 1000 px/s, but never extrapolated further than the maximum
+        predictor.predict(START_NANOS + 10000000L + 1000000000L);
+        final float maxSeconds = PointerPredictor.DEFAULT_MAX_PREDICTION_NANOS / 1.0e9f;
+        assertEquals(10.0f + 1000.0f * maxSeconds, predictor.getPredictedX(), 0.1f);
+
+        predictor.clear();
+        for (int i = 0; i < 5; i++) {
+            predictor.addSample(START_NANOS + i * SAMPLE_INTERVAL_NANOS, 20.0f, 30.0f);
+        }
+        predictor.predict(START_NANOS + 100000000L);
+        assertEquals(20.0f, predictor.getPredictedX(), DELTA);
+        assertEquals(30.0f, predictor.getPredictedY(), DELTA);
+    }
+
+    @Test
+    public void noneModeReportsLatestSample() {
+        final PointerPredictor predictor = new PointerPredictor(PointerPredictor.MODE_NONE);
+        predictor.addSample(START_NANOS, 0.0f, 0.0f);
+        predictor.addSample(START_NANOS + 10000000L, 10.0f, 5.0f);
+        predictor.predict(START_NANOS + 30000000L);
+        assertEquals(10.0f, predictor.getPredictedX(), DELTA);
+        assertEquals(5.0f, predictor.getPredictedY(), DELTA);
+    }
+
+    @Test
+    public void predictionReducesLatencyOfReplayedDrag() {
+        final float noneError = replayDrag(PointerPredictor.MODE_NONE);
+        final float linearError = replayDrag(PointerPredictor.MODE_LINEAR);
+
+        // A steady 60 Hz drag trails the finger by well over a frame's worth of travel;
+        // extrapolating to the presentation time should remove more than half of that
+        assertTrue("none: " + noneError, noneError > 20.0f);
+        assertTrue("none: " + noneError + ", linear: " + linearError,
+                linearError < noneError * 0.5f);
+    }
+
+    /**
+     * Replays a drag along a 1.5 Hz, 250 px sinusoid and returns the mean distance, in pixels,
+     * between where each frame showed the content and where the finger was when it appeared.
+     */
+    private static float replayDrag(int mode) {
+        final PointerPredictor predictor = new PointerPredictor(mode);
+        final ManualFrameClock clock = new ManualFrameClock(60.0f);
+        clock.setFrameTimeNanos(START_NANOS);
+        final long intervalNanos = clock.getFrameIntervalNanos();
+
+        long nextSampleNanos = START_NANOS;
+        double totalError = 0.0;
+        int frames = 0;
+        while (clock.getFrameTimeNanos() < START_NANOS + DURATION_NANOS) {
+            final long vsyncNanos = clock.advanceFrames(1);
+
+            // Deliver the batch of samples taken since the previous frame
+            while (nextSampleNanos <= vsyncNanos) {
+                predictor.addSample(
+                        nextSampleNanos,
+                        fingerX(nextSampleNanos),
+                        fingerY(nextSampleNanos));
+                nextSampleNanos += SAMPLE_INTERVAL_NANOS;
+            }
+
+            final long presentNanos = vsyncNanos + intervalNanos;
+            predictor.predict(presentNanos);
+            final double dx = predictor.getPredictedX() - fingerX(presentNanos);
+            final double dy = predictor.getPredictedY() - fingerY(presentNanos);
+            totalError += Math.sqrt(dx * dx + dy * dy);
+            frames++;
+        }
+        return (float) (totalError / frames);
+    }
+
+    private static float fingerX(long timeNanos) {
+        final double t = (timeNanos - START_NANOS) / 1.0e9;
+        return (float) (500.0 + 250.0 * Math.sin(2.0 * Math.PI * 1.5 * t));
+    }
+
+    private static float fingerY(long timeNanos) {
+        final double t = (timeNanos - START_NANOS) / 1.0e9;
+        return (float) (800.0 + 100.0 * t);
+    }
+}
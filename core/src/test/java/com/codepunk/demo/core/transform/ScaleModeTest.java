@@ -0,0 +1,53 @@
+package com.codepunk.demo.core.transform;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * JVM tests for {@link ScaleMode}, displaying a 2000x1000 image in a 1000x1000 content area as
+ * ImageView would.
+ */
+public class ScaleModeTest {
+
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void fitModesAlignTheScaledImage() {
+        assertBaseline(ScaleMode.FIT_CENTER, 0.5f, 0.5f, 0.0f, 250.0f);
+        assertBaseline(ScaleMode.FIT_START, 0.5f, 0.5f, 0.0f, 0.0f);
+        assertBaseline(ScaleMode.FIT_END, 0.5f, 0.5f, 0.0f, 500.0f);
+        assertBaseline(ScaleMode.FIT_XY, 0.5f, 1.0f, 0.0f, 0.0f);
+    }
+
+    @Test
+    public void centerModesRoundTheTranslation() {
+        assertBaseline(ScaleMode.CENTER, 1.0f, 1.0f, -500.0f, 0.0f);
+        assertBaseline(ScaleMode.CENTER_CROP, 1.0f, 1.0f, -500.0f, 0.0f);
+        assertBaseline(ScaleMode.CENTER_INSIDE, 0.5f, 0.5f, 0.0f, 250.0f);
+        assertBaseline(ScaleMode.MATRIX, 1.0f, 1.0f, 0.0f, 0.0f);
+    }
+
+    @Test
+    public void imageWithoutSizeIsNotScaled() {
+        final float[] identity = Matrices.newMatrix();
+        final float[] actual = new float[Matrices.SIZE];
+        for (final ScaleMode scaleMode : ScaleMode.values()) {
+            scaleMode.getBaselineMatrix(0, 0, 1000, 1000, actual);
+            assertArrayEquals(identity, actual, DELTA);
+        }
+    }
+
+    private static void assertBaseline(
+            ScaleMode scaleMode,
+            float sx,
+            float sy,
+            float tx,
+            float ty) {
+        final float[] expected = Matrices.newMatrix();
+        Matrices.setScaleTranslate(expected, sx, sy, tx, ty);
+        final float[] actual = new float[Matrices.SIZE];
+        scaleMode.getBaselineMatrix(2000, 1000, 1000, 1000, actual);
+        assertArrayEquals(expected, actual, DELTA);
+    }
+}
@@ -0,0 +1,171 @@
+package com.codepunk.demo.core.transform;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests for {@link TransformEngine}, using a 2000x1000 image in a 1000x1000 content area.
+ */
+public class TransformEngineTest {
+
+    private static final float DELTA = 0.001f;
+
+    private TransformEngine mEngine;
+    private float[] mMatrix;
+
+    @Before
+    public void setUp() {
+        mEngine = new TransformEngine();
+        mEngine.setDrawableSize(2000.0f, 1000.0f);
+        mEngine.setContentBounds(0.0f, 0.0f, 1000.0f, 1000.0f);
+        mEngine.setScaleLimits(0.5f, 0.5f, 4.0f, 4.0f);
+
+        // FIT_CENTER: scaled to 1000x500 and centered vertically
+        mMatrix = Matrices.newMatrix();
+        Matrices.setScaleTranslate(mMatrix, 0.5f, 0.5f, 0.0f, 250.0f);
+    }
+
+    @Test
+    public void invertRoundTrips() {
+        final float[] inverse = new float[Matrices.SIZE];
+        assertTrue(Matrices.invert(mMatrix, inverse));
+        assertArrayEquals(Matrices.newMatrix(), multiply(mMatrix, inverse), DELTA);
+        assertArrayEquals(Matrices.newMatrix(), multiply(inverse, mMatrix), DELTA);
+        final float[] pts = {123.0f, 456.0f};
+        Matrices.mapPoints(mMatrix, pts, 0, 1);
+        Matrices.mapPoints(inverse, pts, 0, 1);
+        assertArrayEquals(new float[] {123.0f, 456.0f}, pts, DELTA);
+        assertFalse(Matrices.invert(new float[Matrices.SIZE], inverse));
+    }
+
+    @Test
+    public void viewAndImagePointsRoundTrip() {
+        mEngine.setContentBounds(10.0f, 20.0f, 1000.0f, 1000.0f);
+        mEngine.setCropToPadding(true);
+        final float[] pts = {0.0f, 0.0f, 2000.0f, 1000.0f};
+        mEngine.imagePointsToViewPoints(mMatrix, pts, 0, 2);
+        assertArrayEquals(new float[] {10.0f, 270.0f, 1010.0f, 770.0f}, pts, DELTA);
+        assertTrue(mEngine.viewPointsToImagePoints(mMatrix, pts, 0, 2));
+        assertArrayEquals(new float[] {0.0f, 0.0f, 2000.0f, 1000.0f}, pts, DELTA);
+    }
+
+    @Test
+    public void precomputedInverseMatchesInversion() {
+        mEngine.setContentBounds(10.0f, 20.0f, 1000.0f, 1000.0f);
+        mEngine.setCropToPadding(true);
+        final float[] inverse = new float[Matrices.SIZE];
+        assertTrue(Matrices.invert(mMatrix, inverse));
+        final float[] expected = {10.0f, 270.0f, 510.0f, 520.0f};
+        final float[] actual = expected.clone();
+        assertTrue(mEngine.viewPointsToImagePoints(mMatrix, expected, 0, 2));
+        mEngine.mapViewPointsToImagePoints(inverse, actual, 0, 2);
+        assertArrayEquals(expected, actual, DELTA);
+    }
+
+    @Test
+    public void resolveFillsDefaults() {
+        final TransformValues t = new TransformValues();
+        mEngine.resolve(mMatrix, t);
+        assertEquals(1000.0f, t.px, DELTA);
+        assertEquals(500.0f, t.py, DELTA);
+        assertEquals(0.5f, t.sx, DELTA);
+        assertEquals(0.5f, t.sy, DELTA);
+        assertEquals(500.0f, t.x, DELTA);
+        assertEquals(500.0f, t.y, DELTA);
+    }
+
+    @Test
+    public void resolveAppliesRelativeValues() {
+        final TransformValues t = new TransformValues();
+        t.set(0.0f, 0.0f, 2.0f, 2.0f, 10.0f, -10.0f);
+        t.scaleRelative = true;
+        t.moveRelative = true;
+        mEngine.resolve(mMatrix, t);
+        assertEquals(1.0f, t.sx, DELTA);
+        assertEquals(1.0f, t.sy, DELTA);
+        assertEquals(10.0f, t.x, DELTA);
+        assertEquals(240.0f, t.y, DELTA);
+        assertFalse(t.scaleRelative);
+        assertFalse(t.moveRelative);
+    }
+
+    @Test
+    public void scrollableInfoAlignsSmallImages() {
+        final float[] out = new float[2];
+        mEngine.getScrollableInfo(mMatrix, out);
+        assertEquals(0.0f, out[0], DELTA);
+        assertEquals(250.0f, out[1], DELTA);
+
+        mEngine.setAlignment(TransformEngine.ALIGN_END, TransformEngine.ALIGN_START);
+        mEngine.getScrollableInfo(mMatrix, out);
+        assertEquals(0.0f, out[1], DELTA);
+
+        Matrices.setScaleTranslate(mMatrix, 2.0f, 2.0f, 0.0f, 0.0f);
+        mEngine.getScrollableInfo(mMatrix, out);
+        assertEquals(-3000.0f, out[0], DELTA);
+        assertEquals(-1000.0f, out[1], DELTA);
+    }
+
+    @Test
+    public void verifyClampsScale() {
+        final TransformValues t = new TransformValues();
+        t.sx = 10.0f;
+        t.sy = 0.1f;
+        mEngine.resolve(mMatrix, t);
+        assertTrue(mEngine.verify(mMatrix, t));
+        assertEquals(4.0f, t.sx, DELTA);
+        assertEquals(0.5f, t.sy, DELTA);
+    }
+
+    @Test
+    public void verifyKeepsImageEdgesInsideContent() {
+        // Zoom to 1:1 around the image's top-left corner and try to drag it into the view
+        final TransformValues t = new TransformValues();
+        t.set(0.0f, 0.0f, 1.0f, 1.0f, 100.0f, 100.0f);
+        mEngine.resolve(mMatrix, t);
+        assertTrue(mEngine.verify(mMatrix, t));
+        assertEquals(0.0f, t.x, DELTA);
+        assertEquals(0.0f, t.y, DELTA);
+
+        // A valid transform is left alone
+        t.set(1000.0f, 500.0f, 1.0f, 1.0f, 500.0f, 500.0f);
+        assertFalse(mEngine.verify(mMatrix, t));
+    }
+
+    @Test
+    public void toMatrixPlacesPivot() {
+        final TransformValues t = new TransformValues();
+        t.set(1000.0f, 500.0f, 1.0f, 1.0f, 500.0f, 500.0f);
+        final float[] out = new float[Matrices.SIZE];
+        mEngine.toMatrix(mMatrix, t, out);
+        final float[] expected = Matrices.newMatrix();
+        Matrices.setScaleTranslate(expected, 1.0f, 1.0f, -500.0f, 0.0f);
+        assertArrayEquals(expected, out, DELTA);
+
+        // In place
+        mEngine.toMatrix(mMatrix, t, mMatrix);
+        assertArrayEquals(expected, mMatrix, DELTA);
+    }
+
+    /**
+     * Returns the row-major product {@code a} &times; {@code b} of two 3x3 matrices.
+     */
+    private static float[] multiply(float[] a, float[] b) {
+        final float[] out = new float[Matrices.SIZE];
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 3; column++) {
+                float sum = 0.0f;
+                for (int i = 0; i < 3; i++) {
+                    sum += a[row * 3 + i] * b[i * 3 + column];
+                }
+                out[row * 3 + column] = sum;
+            }
+        }
+        return out;
+    }
+}
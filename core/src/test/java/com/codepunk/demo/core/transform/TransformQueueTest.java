@@ -0,0 +1,119 @@
+package com.codepunk.demo.core.transform;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JVM tests for {@link TransformQueue}, using the same 2000x1000 image in a 1000x1000 content
+ * area as {@link TransformEngineTest}. Each test checks that the merged queue has the same result
+ * as applying its transforms one after another.
+ */
+public class TransformQueueTest {
+
+    private static final float DELTA = 0.001f;
+
+    private TransformEngine mEngine;
+    private float[] mMatrix;
+    private TransformQueue mQueue;
+
+    /**
+     * The matrix that results from applying each added transform in turn.
+     */
+    private float[] mExpected;
+
+    @Before
+    public void setUp() {
+        mEngine = new TransformEngine();
+        mEngine.setDrawableSize(2000.0f, 1000.0f);
+        mEngine.setContentBounds(0.0f, 0.0f, 1000.0f, 1000.0f);
+        mEngine.setScaleLimits(0.5f, 0.5f, 4.0f, 4.0f);
+
+        mMatrix = Matrices.newMatrix();
+        Matrices.setScaleTranslate(mMatrix, 0.5f, 0.5f, 0.0f, 250.0f);
+        mExpected = mMatrix.clone();
+        mQueue = new TransformQueue();
+    }
+
+    @Test
+    public void absoluteTransformReplacesQueue() {
+        add(values(100.0f, 100.0f, 2.0f, 2.0f, false, 10.0f, 10.0f, true));
+        add(values(300.0f, 200.0f, 1.5f, 1.5f, true, Float.NaN, Float.NaN, false));
+        assertEquals(2, mQueue.size());
+
+        add(values(500.0f, 400.0f, 3.0f, 2.0f, false, 250.0f, Float.NaN, false));
+        assertEquals(1, mQueue.size());
+        assertResolvesToExpected();
+    }
+
+    @Test
+    public void samePivotFoldsRelativeValues() {
+        // A seek bar dragging the scale around a fixed pivot
+        add(values(800.0f, 600.0f, 1.1f, 1.1f, true, Float.NaN, Float.NaN, true));
+        add(values(800.0f, 600.0f, 1.2f, 0.9f, true, 5.0f, -5.0f, true));
+        add(values(800.0f, 600.0f, Float.NaN, Float.NaN, false, 20.0f, 0.0f, true));
+        assertEquals(1, mQueue.size());
+        assertResolvesToExpected();
+
+        // An absolute scale and move, then relative ones on top
+        add(values(800.0f, 600.0f, 2.0f, 2.0f, false, 400.0f, 300.0f, false));
+        add(values(800.0f, 600.0f, 1.5f, 1.5f, true, -50.0f, 25.0f, true));
+        assertEquals(1, mQueue.size());
+        assertResolvesToExpected();
+    }
+
+    @Test
+    public void differentPivotsAreQueued() {
+        add(values(100.0f, 100.0f, 1.5f, 1.5f, true, 10.0f, 10.0f, true));
+        add(values(1500.0f, 900.0f, 0.8f, 0.8f, true, -30.0f, 0.0f, true));
+        add(values(Float.NaN, Float.NaN, 1.25f, 1.25f, true, Float.NaN, Float.NaN, true));
+        assertEquals(3, mQueue.size());
+        assertResolvesToExpected();
+    }
+
+    @Test
+    public void emptyQueueDoesNotResolve() {
+        final TransformValues out = new TransformValues();
+        assertTrue(mQueue.isEmpty());
+        assertFalse(mQueue.resolve(mEngine, mMatrix, out));
+        add(values(100.0f, 100.0f, 2.0f, 2.0f, false, 10.0f, 10.0f, false));
+        mQueue.clear();
+        assertTrue(mQueue.isEmpty());
+    }
+
+    private void add(TransformValues t) {
+        mQueue.add(t);
+        final TransformValues resolved = new TransformValues();
+        resolved.set(t);
+        mEngine.resolve(mExpected, resolved);
+        mEngine.toMatrix(mExpected, resolved, mExpected);
+    }
+
+    private void assertResolvesToExpected() {
+        final TransformValues out = new TransformValues();
+        assertTrue(mQueue.resolve(mEngine, mMatrix, out));
+        final float[] actual = new float[Matrices.SIZE];
+        mEngine.toMatrix(mMatrix, out, actual);
+        assertArrayEquals(mExpected, actual, DELTA);
+    }
+
+    private static TransformValues values(
+            float px,
+            float py,
+            float sx,
+            float sy,
+            boolean scaleRelative,
+            float x,
+            float y,
+            boolean moveRelative) {
+        final TransformValues t = new TransformValues();
+        t.set(px, py, sx, sy, x, y);
+        t.scaleRelative = scaleRelative;
+        t.moveRelative = moveRelative;
+        return t;
+    }
+}